@@ -0,0 +1,82 @@
+package jFaaS.benchmarks;
+
+import jFaaS.Gateway;
+import jFaaS.invokers.OpenWhiskInvoker;
+import jFaaS.routing.ResolvedFunction;
+import jFaaS.routing.SimpleFunctionProvider;
+import jFaaS.utils.PairResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of the Gateway: resolving functions to providers, and a full invocation routed through the
+ * Gateway compared to calling the invoker directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GatewayBenchmark {
+
+    @Param({
+            "https://eu-gb.functions.appdomain.cloud/api/v1/web/ns/default/hello",
+            "https://europe-west1-project.cloudfunctions.net/hello",
+            "https://app.azurewebsites.net/api/hello",
+            "https://123456.eu-central-1.fc.aliyuncs.com/2016-08-15/proxy/service/hello/",
+            "unknown-function"
+    })
+    public String function;
+
+    private Gateway gateway;
+    private StubProviders stub;
+    private OpenWhiskInvoker stubInvoker;
+    private String stubFunction;
+    private Map<String, Object> functionInputs;
+
+    @Setup
+    public void setup() throws IOException {
+        stub = new StubProviders(64);
+        stubFunction = stub.getBaseUrl() + "/openwhisk/default/benchmark.json";
+        stubInvoker = new OpenWhiskInvoker("dXNlcjpwYXNzd29yZA==");
+        gateway = new Gateway();
+        gateway.registerProvider(new SimpleFunctionProvider("stub",
+                f -> f.startsWith(stub.getBaseUrl()), () -> new OpenWhiskInvoker("dXNlcjpwYXNzd29yZA==")));
+        functionInputs = new HashMap<>();
+        functionInputs.put("name", "benchmark");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        gateway.close();
+        stubInvoker.close();
+        stub.close();
+    }
+
+    @Benchmark
+    public ResolvedFunction resolve() {
+        return gateway.getProviderRegistry().resolve(function);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public PairResult<String, Long> invokeThroughGateway() throws IOException {
+        return gateway.invokeFunction(stubFunction, functionInputs);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public PairResult<String, Long> invokeDirectly() throws IOException {
+        return stubInvoker.invokeFunction(stubFunction, functionInputs);
+    }
+}
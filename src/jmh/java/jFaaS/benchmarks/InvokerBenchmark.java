@@ -0,0 +1,96 @@
+package jFaaS.benchmarks;
+
+import com.amazonaws.client.builder.AwsClientBuilder;
+import jFaaS.invokers.AzureInvoker;
+import jFaaS.invokers.FaaSInvoker;
+import jFaaS.invokers.GoogleFunctionInvoker;
+import jFaaS.invokers.HTTPGETInvoker;
+import jFaaS.invokers.LambdaInvoker;
+import jFaaS.invokers.OpenWhiskInvoker;
+import jFaaS.utils.PairResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the request build, round trip and response parse path of each invoker against the local stub server.
+ *
+ * The round trip over the loopback interface is part of the measurement, so compare results of the same provider
+ * across revisions rather than across providers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InvokerBenchmark {
+
+    @Param({"openwhisk", "google", "azure", "alibaba", "lambda"})
+    public String provider;
+
+    /**
+     * Approximate size of the function response in bytes.
+     */
+    @Param({"64", "16384"})
+    public int responseSize;
+
+    private StubProviders stub;
+    private FaaSInvoker invoker;
+    private String function;
+    private Map<String, Object> functionInputs;
+
+    @Setup
+    public void setup() throws IOException {
+        stub = new StubProviders(responseSize);
+        String baseUrl = stub.getBaseUrl();
+        switch (provider) {
+            case "openwhisk":
+                invoker = new OpenWhiskInvoker("dXNlcjpwYXNzd29yZA==");
+                function = baseUrl + "/openwhisk/default/benchmark.json";
+                break;
+            case "google":
+                invoker = new GoogleFunctionInvoker("token=benchmark,", "token");
+                function = baseUrl + "/google/benchmark";
+                break;
+            case "azure":
+                invoker = new AzureInvoker("benchmark");
+                function = baseUrl + "/azure/api/benchmark";
+                break;
+            case "alibaba":
+                invoker = new HTTPGETInvoker();
+                function = baseUrl + "/alibaba/benchmark";
+                break;
+            case "lambda":
+                invoker = new LambdaInvoker("benchmark", "benchmark", null,
+                        new AwsClientBuilder.EndpointConfiguration(baseUrl, "us-east-1"));
+                function = "benchmark";
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown provider " + provider);
+        }
+        functionInputs = new HashMap<>();
+        functionInputs.put("name", "benchmark");
+        functionInputs.put("count", 42);
+        functionInputs.put("factor", 1.5);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        invoker.close();
+        stub.close();
+    }
+
+    @Benchmark
+    public PairResult<String, Long> invokeFunction() throws IOException {
+        return invoker.invokeFunction(function, functionInputs);
+    }
+}
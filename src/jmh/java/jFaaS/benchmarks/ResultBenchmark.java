@@ -0,0 +1,58 @@
+package jFaaS.benchmarks;
+
+import jFaaS.utils.PairResult;
+import jFaaS.utils.ResponseReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading and validating a response body and creating the PairResult, without any network I/O.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ResultBenchmark {
+
+    /**
+     * Approximate size of the function response in bytes.
+     */
+    @Param({"64", "16384", "1048576"})
+    public int responseSize;
+
+    private byte[] response;
+    private String json;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder("{\"result\":\"ok\",\"values\":[0");
+        for (int i = 1; builder.length() < responseSize; i++) {
+            builder.append(',').append(i);
+        }
+        builder.append("]}");
+        json = builder.toString();
+        response = json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public PairResult<String, Long> createPairResult() {
+        return new PairResult<>(json, 42L);
+    }
+
+    @Benchmark
+    public PairResult<String, Long> readAndValidate() throws IOException {
+        long start = System.currentTimeMillis();
+        String result = ResponseReader.readJsonObject(new ByteArrayInputStream(response), true);
+        return new PairResult<>(result, System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,73 @@
+package jFaaS.benchmarks;
+
+import com.google.gson.Gson;
+import jFaaS.utils.Serializers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares serializing function inputs with a new Gson instance and an intermediate string against the shared
+ * serializer writing UTF-8 bytes directly.
+ *
+ * Run with {@code gradle jmh} or {@code mvn -P jmh package && java -jar target/benchmarks.jar}. Allocation rates are
+ * reported with the gc profiler, e.g. {@code java -jar target/benchmarks.jar Serialization -prof gc}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    /**
+     * Number of entries in the function inputs.
+     */
+    @Param({"4", "64", "1024"})
+    public int entries;
+
+    private Map<String, Object> functionInputs;
+
+    @Setup
+    public void setup() {
+        functionInputs = new HashMap<>();
+        for (int i = 0; i < entries; i++) {
+            if (i % 3 == 0) {
+                List<Integer> values = new ArrayList<>();
+                for (int j = 0; j < 8; j++) {
+                    values.add(i * j);
+                }
+                functionInputs.put("array" + i, values);
+            } else if (i % 3 == 1) {
+                functionInputs.put("number" + i, i * 1.5);
+            } else {
+                functionInputs.put("string" + i, "value-\u00e4\u00f6\u00fc-" + i);
+            }
+        }
+    }
+
+    @Benchmark
+    public byte[] newGsonPerCall() {
+        return new Gson().toJson(functionInputs).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] sharedGsonString() {
+        return Serializers.gson().toJson(functionInputs).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] sharedGsonBytes() {
+        return Serializers.toJsonBytes(functionInputs);
+    }
+}
@@ -0,0 +1,85 @@
+package jFaaS.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jFaaS.utils.ResponseReader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process HTTP server answering like the supported providers with a fixed JSON object, so the overhead of jFaaS
+ * can be measured without cloud latency.
+ *
+ * Paths:
+ * <ul>
+ *     <li>/openwhisk/ - POST, like an IBM Cloud Functions web action</li>
+ *     <li>/google/ - POST, like a Google Cloud Function HTTP trigger</li>
+ *     <li>/azure/ - POST, like an Azure Function HTTP trigger</li>
+ *     <li>/alibaba/ - GET with the inputs as query parameters, like an Alibaba Function Compute HTTP trigger</li>
+ *     <li>/2015-03-31/functions/ - POST, like the AWS Lambda invoke API</li>
+ * </ul>
+ */
+class StubProviders implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] response;
+
+    /**
+     * Start the stub server on a free local port.
+     *
+     * @param responseSize approximate size of the JSON object returned by all functions in bytes
+     *
+     * @throws IOException if the server cannot be started
+     */
+    StubProviders(int responseSize) throws IOException {
+        this.response = createResponse(responseSize);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
+        for (String path : new String[]{"/openwhisk/", "/google/", "/azure/", "/alibaba/", "/2015-03-31/functions/"}) {
+            server.createContext(path, this::respond);
+        }
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Returns the base URL of the server, e.g. http://127.0.0.1:12345
+     *
+     * @return the base URL without trailing slash
+     */
+    String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        // consume the request like a real function would
+        ResponseReader.readBytes(exchange.getRequestBody());
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(response);
+        }
+    }
+
+    private static byte[] createResponse(int responseSize) {
+        StringBuilder json = new StringBuilder("{\"result\":\"ok\",\"values\":[0");
+        for (int i = 1; json.length() < responseSize; i++) {
+            json.append(',').append(i);
+        }
+        json.append("]}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,413 @@
+package VMInvokerResources;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
+import jFaaS.utils.InvocationFuture;
+import jFaaS.utils.ResponseReader;
+import jFaaS.utils.Serializers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Provisions the script and meta data files of a task on a VM, uploading only artifacts the VM does not hold yet.
+ *
+ * Artifacts are identified by the SHA-256 of their content. Each VM keeps a manifest in its home directory with one
+ * {@code <sha256>  <name>} line per artifact (the format of sha256sum), and the deployer remembers the manifest of each
+ * host, so invoking a task on a warm VM needs no transfer at all. Missing or changed artifacts are uploaded over
+ * several SFTP channels in parallel, or as one gzipped tar archive which is extracted on the VM.
+ */
+public class ArtifactDeployer {
+
+    /**
+     * Name of the manifest in the home directory of the VM.
+     */
+    public static final String MANIFEST = ".jfaas-manifest";
+
+    private static final String ARCHIVE = ".jfaas-artifacts.tar.gz";
+
+    private final Map<String, HostRecord> hosts = new ConcurrentHashMap<>();
+    private final Map<Path, LocalHash> localHashes = new ConcurrentHashMap<>();
+    private volatile int parallelUploads = 4;
+    private volatile boolean archive;
+    private volatile Executor executor = InvocationFuture.sharedExecutor();
+
+    /**
+     * Set the number of SFTP channels uploading artifacts at the same time. With a pooled session fewer channels are
+     * used if the session has no channels left, see {@link #deploy(Session, TaskInfo, SSHSessionPool)}.
+     *
+     * @param parallelUploads maximum number of channels
+     *
+     * @return this deployer
+     */
+    public ArtifactDeployer withParallelUploads(int parallelUploads) {
+        this.parallelUploads = Math.max(1, parallelUploads);
+        return this;
+    }
+
+    /**
+     * Upload several missing artifacts as one gzipped tar archive, which is faster for many small files or slow
+     * links. Requires tar and gzip on the VM.
+     *
+     * @param archive whether to upload an archive
+     *
+     * @return this deployer
+     */
+    public ArtifactDeployer withArchive(boolean archive) {
+        this.archive = archive;
+        return this;
+    }
+
+    /**
+     * Set the executor running the parallel uploads.
+     *
+     * @param executor running the uploads, a shared cached thread pool by default
+     *
+     * @return this deployer
+     */
+    public ArtifactDeployer withExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Make sure the VM holds the current script and meta data files of the task. Concurrent deployments to the same
+     * VM are serialized.
+     *
+     * @param session connected to the VM
+     * @param task    whose artifacts are deployed
+     *
+     * @return the number of uploaded artifacts, 0 if the VM held all of them
+     *
+     * @throws IOException if an artifact cannot be read or uploaded
+     */
+    public int deploy(Session session, TaskInfo task) throws IOException {
+        return deploy(session, task, null);
+    }
+
+    /**
+     * Make sure the VM holds the current script and meta data files of the task. Concurrent deployments to the same
+     * VM are serialized. The lease of the session covers one SFTP channel, parallel uploads lease their additional
+     * channels from the pool, so they do not exceed the channels the SSH server allows per session.
+     *
+     * @param session     connected to the VM
+     * @param task        whose artifacts are deployed
+     * @param sessionPool the session was leased from, null if it is not pooled
+     *
+     * @return the number of uploaded artifacts, 0 if the VM held all of them
+     *
+     * @throws IOException if an artifact cannot be read or uploaded
+     */
+    public int deploy(Session session, TaskInfo task, SSHSessionPool sessionPool) throws IOException {
+        Map<String, Path> files = artifactsOf(task);
+        Map<String, String> artifacts = hashArtifacts(files);
+        HostRecord host = hosts.computeIfAbsent(hostKey(session), key -> new HostRecord());
+        synchronized (host) {
+            if (host.manifest == null) {
+                host.manifest = readManifest(session);
+            }
+            Map<String, Path> missing = new TreeMap<>();
+            for (Map.Entry<String, String> artifact : artifacts.entrySet()) {
+                if (!artifact.getValue().equals(host.manifest.get(artifact.getKey()))) {
+                    missing.put(artifact.getKey(), files.get(artifact.getKey()));
+                }
+            }
+            if (missing.isEmpty()) {
+                return 0;
+            }
+            System.out.println("Deploying " + missing.keySet() + " to instance with IP " + session.getHost() + " ...");
+            Map<String, String> manifest = new TreeMap<>(host.manifest);
+            if (manifest.keySet().removeAll(missing.keySet())) {
+                // changed artifacts are overwritten, a failed upload must not leave their old hashes in the manifest
+                writeManifest(session, manifest);
+                host.manifest = manifest;
+                manifest = new TreeMap<>(manifest);
+            }
+            List<String> commands = new ArrayList<>();
+            if (archive && missing.size() > 1) {
+                uploadArchive(session, missing);
+                commands.add("tar -xzf " + ARCHIVE + " && rm -f " + ARCHIVE);
+            } else {
+                uploadParallel(session, missing, sessionPool);
+            }
+            commands.addAll(postProcessing(missing.keySet()));
+            for (String name : missing.keySet()) {
+                manifest.put(name, artifacts.get(name));
+            }
+            // the manifest is only written once the artifacts are in place
+            if (!commands.isEmpty()) {
+                CommandResult result = SSHClient.executeCommand(String.join(" && ", commands), session.getHost(), session,
+                        null, null, SSHClient.MAX_CAPTURED_BYTES, null);
+                if (result.getExitStatus() != 0) {
+                    throw new IOException("Could not prepare the artifacts on " + session.getHost() + ": " + result.getError());
+                }
+            }
+            writeManifest(session, manifest);
+            host.manifest = manifest;
+            System.out.println("*** " + missing.size() + " artifacts deployed to instance with IP " + session.getHost() + " ***");
+            return missing.size();
+        }
+    }
+
+    /**
+     * Forget what a VM holds, e.g. because it was recreated. Its manifest is read again on the next deployment.
+     *
+     * @param session connected to the VM
+     */
+    public void forget(Session session) {
+        hosts.remove(hostKey(session));
+    }
+
+    /**
+     * Returns the artifacts a VM holds as far as known.
+     *
+     * @param session connected to the VM
+     *
+     * @return the SHA-256 of the artifacts by name, empty if nothing was deployed to the VM yet
+     */
+    public Map<String, String> getDeployed(Session session) {
+        HostRecord host = hosts.get(hostKey(session));
+        if (host == null) {
+            return Collections.emptyMap();
+        }
+        synchronized (host) {
+            return host.manifest != null ? Collections.unmodifiableMap(new TreeMap<>(host.manifest)) : Collections.emptyMap();
+        }
+    }
+
+    private static String hostKey(Session session) {
+        return session.getUserName() + "@" + session.getHost() + ":" + session.getPort();
+    }
+
+    private static Map<String, Path> artifactsOf(TaskInfo task) throws IOException {
+        Map<String, Path> artifacts = new HashMap<>();
+        artifacts.put(task.getTaskName(), Paths.get(task.getTaskFilePath()));
+        List<String> names = task.getMetaDataNames() != null ? task.getMetaDataNames() : Collections.emptyList();
+        List<String> paths = task.getMetaDataFilePaths() != null ? task.getMetaDataFilePaths() : Collections.emptyList();
+        if (names.size() != paths.size()) {
+            throw new IOException("Task " + task.getId() + " has " + names.size() + " meta data names but " + paths.size() + " file paths");
+        }
+        for (int i = 0; i < names.size(); i++) {
+            artifacts.put(names.get(i), Paths.get(paths.get(i)));
+        }
+        for (String name : artifacts.keySet()) {
+            if (name.isEmpty() || name.startsWith("/") || name.contains("..") || name.contains("'")) {
+                throw new IOException("Invalid artifact name " + name + " of task " + task.getId());
+            }
+        }
+        return artifacts;
+    }
+
+    /**
+     * Files are only hashed again if their size or modification time changed.
+     */
+    private Map<String, String> hashArtifacts(Map<String, Path> artifacts) throws IOException {
+        Map<String, String> hashes = new HashMap<>();
+        for (Map.Entry<String, Path> artifact : artifacts.entrySet()) {
+            Path file = artifact.getValue();
+            long size = Files.size(file);
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            LocalHash hash = localHashes.get(file);
+            if (hash == null || hash.size != size || hash.modified != modified) {
+                hash = new LocalHash(size, modified, Serializers.sha256Hex(Files.newInputStream(file)));
+                localHashes.put(file, hash);
+            }
+            hashes.put(artifact.getKey(), hash.sha256);
+        }
+        return hashes;
+    }
+
+    private void uploadParallel(Session session, Map<String, Path> missing, SSHSessionPool sessionPool) throws IOException {
+        int channels = Math.min(parallelUploads, missing.size());
+        int additional = sessionPool != null ? sessionPool.tryAcquireChannels(session, channels - 1) : channels - 1;
+        try {
+            uploadParallel(session, missing, 1 + additional);
+        } finally {
+            if (sessionPool != null) {
+                sessionPool.releaseChannels(session, additional);
+            }
+        }
+    }
+
+    private void uploadParallel(Session session, Map<String, Path> missing, int channels) throws IOException {
+        List<List<Map.Entry<String, Path>>> batches = new ArrayList<>();
+        for (int i = 0; i < channels; i++) {
+            batches.add(new ArrayList<>());
+        }
+        int next = 0;
+        for (Map.Entry<String, Path> artifact : missing.entrySet()) {
+            batches.get(next++ % channels).add(artifact);
+        }
+        if (channels == 1) {
+            upload(session, batches.get(0));
+            return;
+        }
+        List<CompletableFuture<Void>> uploads = new ArrayList<>();
+        for (List<Map.Entry<String, Path>> batch : batches) {
+            uploads.add(CompletableFuture.runAsync(() -> {
+                try {
+                    upload(session, batch);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+        try {
+            CompletableFuture.allOf(uploads.toArray(new CompletableFuture<?>[0])).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while uploading artifacts to " + session.getHost(), e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Upload the artifacts over one SFTP channel.
+     */
+    private static void upload(Session session, List<Map.Entry<String, Path>> artifacts) throws IOException {
+        ChannelSftp sftp = openSftp(session);
+        try {
+            for (Map.Entry<String, Path> artifact : artifacts) {
+                try (InputStream input = Files.newInputStream(artifact.getValue())) {
+                    sftp.put(input, artifact.getKey());
+                }
+            }
+        } catch (SftpException e) {
+            throw new IOException("Could not upload artifacts to " + session.getHost(), e);
+        } finally {
+            sftp.disconnect();
+        }
+    }
+
+    /**
+     * The archive is streamed into the SFTP channel without a local temporary file.
+     */
+    private static void uploadArchive(Session session, Map<String, Path> missing) throws IOException {
+        ChannelSftp sftp = openSftp(session);
+        try {
+            try (OutputStream remote = sftp.put(ARCHIVE);
+                 TarGzWriter tar = new TarGzWriter(remote)) {
+                for (Map.Entry<String, Path> artifact : missing.entrySet()) {
+                    tar.addFile(artifact.getKey(), artifact.getValue(), artifact.getKey().endsWith(".pem") ? 0600 : 0644);
+                }
+            }
+        } catch (SftpException e) {
+            throw new IOException("Could not upload artifacts to " + session.getHost(), e);
+        } finally {
+            sftp.disconnect();
+        }
+    }
+
+    /**
+     * Scripts get Unix line endings and keys are only readable by the owner, as with {@link SSHClient#sendFile}.
+     */
+    private static List<String> postProcessing(Iterable<String> names) {
+        List<String> scripts = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (String name : names) {
+            if (name.endsWith(".sh")) {
+                scripts.add("'" + name + "'");
+            } else if (name.endsWith(".pem")) {
+                keys.add("'" + name + "'");
+            }
+        }
+        List<String> commands = new ArrayList<>();
+        if (!scripts.isEmpty()) {
+            commands.add("sed -i 's/\\r$//' " + String.join(" ", scripts));
+        }
+        if (!keys.isEmpty()) {
+            commands.add("chmod 600 " + String.join(" ", keys));
+        }
+        return commands;
+    }
+
+    private static Map<String, String> readManifest(Session session) throws IOException {
+        Map<String, String> manifest = new HashMap<>();
+        ChannelSftp sftp = openSftp(session);
+        String content;
+        try {
+            content = ResponseReader.readString(sftp.get(MANIFEST));
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                return manifest;
+            }
+            throw new IOException("Could not read the manifest of " + session.getHost(), e);
+        } finally {
+            sftp.disconnect();
+        }
+        for (String line : content.split("\n")) {
+            int separator = line.indexOf("  ");
+            if (separator > 0) {
+                manifest.put(line.substring(separator + 2).trim(), line.substring(0, separator));
+            }
+        }
+        return manifest;
+    }
+
+    private static void writeManifest(Session session, Map<String, String> manifest) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, String> artifact : manifest.entrySet()) {
+            content.append(artifact.getValue()).append("  ").append(artifact.getKey()).append('\n');
+        }
+        ChannelSftp sftp = openSftp(session);
+        try {
+            sftp.put(new ByteArrayInputStream(content.toString().getBytes(StandardCharsets.UTF_8)), MANIFEST);
+        } catch (SftpException e) {
+            throw new IOException("Could not write the manifest of " + session.getHost(), e);
+        } finally {
+            sftp.disconnect();
+        }
+    }
+
+    private static ChannelSftp openSftp(Session session) throws IOException {
+        try {
+            ChannelSftp sftp = (ChannelSftp) session.openChannel("sftp");
+            sftp.connect();
+            return sftp;
+        } catch (JSchException e) {
+            throw new IOException("Could not open an SFTP channel to " + session.getHost(), e);
+        }
+    }
+
+    /**
+     * Artifacts a VM holds, null until its manifest was read.
+     */
+    private static class HostRecord {
+        private Map<String, String> manifest;
+    }
+
+    /**
+     * Hash of a local file with the size and modification time it was computed for.
+     */
+    private static class LocalHash {
+        private final long size;
+        private final long modified;
+        private final String sha256;
+
+        private LocalHash(long size, long modified, String sha256) {
+            this.size = size;
+            this.modified = modified;
+            this.sha256 = sha256;
+        }
+    }
+}
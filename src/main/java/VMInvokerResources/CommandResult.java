@@ -0,0 +1,135 @@
+package VMInvokerResources;
+
+import com.google.gson.JsonObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Exit status and captured output of a command executed over SSH. At most a fixed number of bytes of each output is
+ * captured, the rest is only passed to the sinks of the caller.
+ */
+public class CommandResult {
+
+    private final int exitStatus;
+    private final String output;
+    private final String error;
+    private final boolean truncated;
+
+    /**
+     * Create a command result.
+     *
+     * @param exitStatus of the command, -1 if the channel was closed without exit status
+     * @param output     captured standard output
+     * @param error      captured standard error
+     * @param truncated  whether an output exceeded the capture limit
+     */
+    public CommandResult(int exitStatus, String output, String error, boolean truncated) {
+        this.exitStatus = exitStatus;
+        this.output = output;
+        this.error = error;
+        this.truncated = truncated;
+    }
+
+    public int getExitStatus() {
+        return exitStatus;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Returns the result as JSON object with the members exitStatus, stdout, stderr and truncated.
+     *
+     * @return the JSON object
+     */
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("exitStatus", exitStatus);
+        json.addProperty("stdout", output);
+        json.addProperty("stderr", error);
+        json.addProperty("truncated", truncated);
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return "Exit status: " + exitStatus + "\nOutput: " + output + "\nError or warning: " + error;
+    }
+
+    /**
+     * Output stream passing the output to a sink and capturing its beginning. Written by the reading thread (standard
+     * output) or the session thread of JSch (standard error).
+     */
+    static class Capture extends OutputStream {
+        private final OutputStream sink;
+        private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        private final int maxCapturedBytes;
+        private boolean truncated;
+
+        Capture(OutputStream sink, int maxCapturedBytes) {
+            this.sink = sink;
+            this.maxCapturedBytes = maxCapturedBytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            int capture = Math.min(len, maxCapturedBytes - captured.size());
+            if (capture > 0) {
+                captured.write(b, off, capture);
+            }
+            truncated |= capture < len;
+            if (sink != null) {
+                sink.write(b, off, len);
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (sink != null) {
+                sink.flush();
+            }
+        }
+
+        /**
+         * Decoded once at the end, so multi-byte characters split between two chunks stay intact. A character cut
+         * off by the capture limit is dropped.
+         */
+        synchronized String getCaptured() {
+            byte[] bytes = captured.toByteArray();
+            int length = bytes.length;
+            if (truncated && length > 0) {
+                int lead = length - 1;
+                while (lead > 0 && lead > length - 4 && (bytes[lead] & 0xC0) == 0x80) {
+                    lead--;
+                }
+                int expected = (bytes[lead] & 0xE0) == 0xC0 ? 2 : (bytes[lead] & 0xF0) == 0xE0 ? 3
+                        : (bytes[lead] & 0xF8) == 0xF0 ? 4 : 1;
+                if (length - lead < expected) {
+                    length = lead;
+                }
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        synchronized boolean isTruncated() {
+            return truncated;
+        }
+    }
+}
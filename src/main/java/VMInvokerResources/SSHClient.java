@@ -3,33 +3,64 @@ package VMInvokerResources;
 import com.jcraft.jsch.*;
 
 import java.io.*;
+import java.util.function.Consumer;
 
 public abstract class SSHClient {
 
+    private static final int CONNECT_ATTEMPTS = 10;
+    private static final long CONNECT_RETRY_DELAY_MILLIS = 3000;
+    public static final int MAX_CAPTURED_BYTES = 1024 * 1024;
+    private static final long EXIT_STATUS_WAIT_MILLIS = 5000;
+
     /**
-     * This method connects to the instance with the given IP and the given SSH key
+     * This method connects to the instance with the given IP and the given SSH key, retrying up to 10 times with
+     * 3 seconds in between, e.g. while the instance boots
      *
      * @param publicIP
      * @param port
      * @param username
      * @param keyFilePath
-     * @return
+     * @return the connected session or null if the instance could not be reached
      */
     public static Session createSession(String publicIP, int port, String username, String keyFilePath) {
+        return createSession(publicIP, port, username, keyFilePath, CONNECT_ATTEMPTS, CONNECT_RETRY_DELAY_MILLIS);
+    }
+
+    /**
+     * This method connects to the instance with the given IP and the given SSH key
+     *
+     * @param publicIP
+     * @param port
+     * @param username
+     * @param keyFilePath
+     * @param maxAttempts      number of connection attempts
+     * @param retryDelayMillis time between two attempts
+     * @return the connected session or null if the instance could not be reached
+     */
+    public static Session createSession(String publicIP, int port, String username, String keyFilePath,
+                                        int maxAttempts, long retryDelayMillis) {
         JSch jSch = new JSch();
-        Session session = null;
         try {
             jSch.addIdentity(keyFilePath);
-            session = jSch.getSession(username, publicIP, port);
-            session.setConfig("StrictHostKeyChecking", "no");
-            do {
+            for (int attempt = 1; attempt <= maxAttempts; attempt++) {
                 System.out.println("Trying to connect to instance with IP " + publicIP + " and username " + username + " ...");
-            } while(!connectToSession(session));
-            System.out.println("*** Session connected to instance " + username + "@" + publicIP + ": " + port + " ***");
+                Session session = jSch.getSession(username, publicIP, port);
+                session.setConfig("StrictHostKeyChecking", "no");
+                if (connectToSession(session)) {
+                    System.out.println("*** Session connected to instance " + username + "@" + publicIP + ": " + port + " ***");
+                    return session;
+                }
+                if (attempt < maxAttempts) {
+                    Thread.sleep(retryDelayMillis);
+                }
+            }
+            System.err.println("Could not connect to instance " + username + "@" + publicIP + ": " + port + " after " + maxAttempts + " attempts");
         } catch (JSchException e) {
             e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        return session;
+        return null;
     }
 
     private static boolean connectToSession(Session session) {
@@ -43,65 +74,93 @@ public abstract class SSHClient {
     }
 
     /**
-     * This method executes the given command on the instance with the given IP
+     * This method executes the given command on the instance with the given IP and prints its output
+     *
+     * @param command
+     * @param publicIP
+     * @param session
+     * @return exit status and captured output, null if the command could not be executed
+     */
+    public static CommandResult executeCommand(String command, String publicIP, Session session) {
+        try {
+            CommandResult result = executeCommand(command, publicIP, session, null, null, MAX_CAPTURED_BYTES, null);
+            if (result.getOutput().length() > 0) {
+                System.out.println("Output: " + result.getOutput());
+            }
+            if (result.getError().length() > 0) {
+                System.out.println("Error or warning: " + result.getError());
+            }
+            return result;
+        } catch (IOException e) {
+            System.err.println("Something went wrong with executing the command " + command + " on instance with IP " + publicIP);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * This method executes the given command on the instance with the given IP. The standard output is read blocking
+     * on the calling thread and the session thread of JSch writes the standard error as it arrives, so the output is
+     * passed to the sinks without delay. The sinks are written by the session thread, which is shared with the other
+     * channels of the session, so they should not block.
      *
      * @param command
      * @param publicIP
      * @param session
+     * @param outputSink       receiving the standard output as it arrives, may be null
+     * @param errorSink        receiving the standard error as it arrives, may be null
+     * @param maxCapturedBytes of each output captured in the result
+     * @param channelListener  called with the exec channel before it is connected, e.g. to disconnect it on abort,
+     *                         may be null
+     * @return exit status and captured output
+     * @throws IOException if the session is not connected or the command could not be executed
      */
-    public static void executeCommand(String command, String publicIP, Session session) {
+    public static CommandResult executeCommand(String command, String publicIP, Session session, OutputStream outputSink,
+                                               OutputStream errorSink, int maxCapturedBytes,
+                                               Consumer<Channel> channelListener) throws IOException {
         if (!session.isConnected()) {
-            System.out.println("Connect to instance with IP " + publicIP + " first before sending command");
-            return;
+            throw new IOException("Connect to instance with IP " + publicIP + " first before sending command");
         }
+        CommandResult.Capture output = new CommandResult.Capture(outputSink, maxCapturedBytes);
+        CommandResult.Capture error = new CommandResult.Capture(errorSink, maxCapturedBytes);
         ChannelExec channel = null;
         try {
             System.out.println("Sending command " + command + " to instance with IP " + publicIP + " ...");
             channel = (ChannelExec) session.openChannel("exec");
             channel.setCommand(command);
             channel.setInputStream(null);
+            channel.setErrStream(error, true);
             InputStream in = channel.getInputStream();
-            InputStream err = channel.getErrStream();
+            if (channelListener != null) {
+                channelListener.accept(channel);
+            }
             channel.connect();
-            StringBuilder outputBuffer = new StringBuilder();
-            StringBuilder errorBuffer = new StringBuilder();
-            int exitStatus = -1;
-            byte[] buffer = new byte[1024];
-            while (true) {
-                while (in.available() > 0) {
-                    int i = in.read(buffer, 0, 1024);
-                    if (i < 0)
-                        break;
-                    outputBuffer.append(new String(buffer, 0, i));
-                }
-                while (err.available() > 0) {
-                    int i = err.read(buffer, 0, 1024);
-                    if (i < 0)
-                        break;
-                    errorBuffer.append(new String(buffer, 0, i));
-                }
-                if (channel.isClosed()) {
-                    if ((in.available() > 0) || (err.available() > 0))
-                        continue;
-                    exitStatus = channel.getExitStatus();
-                    System.out.println("Channel exit status on instance with IP " + publicIP + ": " + exitStatus);
-                    break;
-                }
-                try { Thread.sleep(200); } catch (Exception e) {}
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                output.write(buffer, 0, read);
             }
-            String outputMessages = outputBuffer.toString();
-            if (outputMessages.length() > 0) {
-                System.out.println("Output: " + outputMessages);
+            output.flush();
+            error.flush();
+            // the exit status and the close of the channel follow the end of the output within milliseconds
+            long deadline = System.currentTimeMillis() + EXIT_STATUS_WAIT_MILLIS;
+            while (!channel.isClosed() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
             }
-            String errorMessages = errorBuffer.toString();
-            if (errorMessages.length() > 0) {
-                System.out.println("Error or warning: " + errorMessages);
+            int exitStatus = channel.getExitStatus();
+            System.out.println("Channel exit status on instance with IP " + publicIP + ": " + exitStatus);
+            return new CommandResult(exitStatus, output.getCaptured(), error.getCaptured(),
+                    output.isTruncated() || error.isTruncated());
+        } catch (JSchException e) {
+            throw new IOException("Could not execute the command " + command + " on instance with IP " + publicIP, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while executing the command " + command + " on instance with IP " + publicIP, e);
+        } finally {
+            if (channel != null) {
+                channel.disconnect();
             }
-        } catch (JSchException | IOException e) {
-            System.err.println("Something went wrong with executing the command " + command + " on instance with IP " + publicIP);
-            e.printStackTrace();
         }
-        channel.disconnect();
     }
 
     /**
@@ -0,0 +1,380 @@
+package VMInvokerResources;
+
+import com.jcraft.jsch.Session;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of authenticated SSH sessions, keyed by host, port, user and key file, so repeated tasks on the same machine
+ * do not pay the TCP connect, key exchange and authentication each time.
+ *
+ * A session carries several exec and SFTP channels at once (OpenSSH allows 10 per connection by default), so a
+ * leased session may be shared by concurrent tasks, and a task needing more than one channel leases the additional ones
+ * from the same budget. A new session is only opened if all sessions of the host carry the
+ * maximum number of channels, up to the maximum number of sessions per host; further callers wait. Sessions which
+ * have been idle for a while are checked with a keepalive before they are reused, sessions idle for longer than the
+ * idle timeout are closed.
+ */
+public class SSHSessionPool implements AutoCloseable {
+
+    private final static Logger LOGGER = Logger.getLogger(SSHSessionPool.class.getName());
+    private static final long HEALTH_CHECK_AFTER_MILLIS = 30 * 1000;
+    private static final int SERVER_ALIVE_INTERVAL_MILLIS = 30 * 1000;
+
+    private final int maxSessionsPerHost;
+    private final int maxChannelsPerSession;
+    private final long idleTimeoutMillis;
+    private final long acquireTimeoutMillis;
+    private final Map<String, HostPool> hosts = new ConcurrentHashMap<>();
+    private final Map<Session, PooledSession> pooledSessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reaper;
+    private volatile boolean closed;
+
+    /**
+     * Create a pool with at most 4 sessions per host, 8 channels per session, an idle timeout of 5 minutes and
+     * waiting at most 10 minutes for a session.
+     */
+    public SSHSessionPool() {
+        this(4, 8, 5 * 60 * 1000, 10 * 60 * 1000);
+    }
+
+    /**
+     * Create a pool.
+     *
+     * @param maxSessionsPerHost    maximum number of open sessions per host, user and key
+     * @param maxChannelsPerSession maximum number of concurrent leases of a session
+     * @param idleTimeoutMillis     time after which an unused session is closed
+     * @param acquireTimeoutMillis  time to wait for a session if the host has no capacity left
+     */
+    public SSHSessionPool(int maxSessionsPerHost, int maxChannelsPerSession, long idleTimeoutMillis, long acquireTimeoutMillis) {
+        if (maxSessionsPerHost < 1 || maxChannelsPerSession < 1) {
+            throw new IllegalArgumentException("A host needs at least one session with one channel");
+        }
+        this.maxSessionsPerHost = maxSessionsPerHost;
+        this.maxChannelsPerSession = maxChannelsPerSession;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jFaaS-ssh-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1000, idleTimeoutMillis / 2);
+        reaper.scheduleWithFixedDelay(this::evictIdle, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lease a connected session to the host, which has to be returned with {@link #release(Session)}, or with
+     * {@link #invalidate(Session)} if it is broken.
+     *
+     * @param publicIP    of the host
+     * @param port        of the SSH server
+     * @param username    to log in
+     * @param keyFilePath of the private key
+     *
+     * @return the session
+     *
+     * @throws IOException if no session could be connected or none became available within the acquire timeout
+     */
+    public Session acquire(String publicIP, int port, String username, String keyFilePath) throws IOException {
+        if (closed) {
+            throw new IOException("SSH session pool is closed");
+        }
+        String key = username + "@" + publicIP + ":" + port + "/" + keyFilePath;
+        HostPool host = hosts.computeIfAbsent(key, k -> new HostPool());
+        long deadline = System.currentTimeMillis() + acquireTimeoutMillis;
+        while (true) {
+            PooledSession pooled = host.lease(deadline, publicIP);
+            if (pooled == null) {
+                // capacity reserved, connect outside the lock
+                Session session = null;
+                try {
+                    session = connect(publicIP, port, username, keyFilePath);
+                    if (session == null || !session.isConnected()) {
+                        throw new IOException("Could not connect to " + username + "@" + publicIP + ":" + port);
+                    }
+                    try {
+                        session.setServerAliveInterval(SERVER_ALIVE_INTERVAL_MILLIS);
+                    } catch (Exception e) {
+                        LOGGER.log(Level.WARNING, "Could not set the keepalive interval of the session to "
+                                + publicIP + ".", e);
+                    }
+                    pooled = host.add(session);
+                } catch (IOException | RuntimeException | Error e) {
+                    // the reservation would otherwise block a session slot of the host forever
+                    host.cancelReservation();
+                    if (session != null) {
+                        session.disconnect();
+                    }
+                    throw e;
+                }
+            } else if (!isHealthy(pooled)) {
+                host.remove(pooled);
+                continue;
+            }
+            return pooled.session;
+        }
+    }
+
+    /**
+     * Return a leased session to the pool.
+     *
+     * @param session returned by {@link #acquire(String, int, String, String)}
+     */
+    public void release(Session session) {
+        PooledSession pooled = pooledSessions.get(session);
+        if (pooled != null) {
+            pooled.host.release(pooled);
+        }
+    }
+
+    /**
+     * Return a broken session, which is disconnected once no other task uses it and not leased again.
+     *
+     * @param session returned by {@link #acquire(String, int, String, String)}
+     */
+    public void invalidate(Session session) {
+        PooledSession pooled = pooledSessions.get(session);
+        if (pooled != null) {
+            pooled.host.remove(pooled);
+        } else {
+            session.disconnect();
+        }
+    }
+
+    /**
+     * Lease additional channels of a leased session without waiting, e.g. for parallel transfers. Fewer channels are
+     * leased if the session does not have enough capacity left.
+     *
+     * @param session  leased with {@link #acquire(String, int, String, String)}
+     * @param channels number of additional channels wanted
+     *
+     * @return the number of leased channels, to be returned with {@link #releaseChannels(Session, int)}
+     */
+    public int tryAcquireChannels(Session session, int channels) {
+        PooledSession pooled = pooledSessions.get(session);
+        return pooled != null ? pooled.host.leaseChannels(pooled, channels) : 0;
+    }
+
+    /**
+     * Return channels leased with {@link #tryAcquireChannels(Session, int)}.
+     *
+     * @param session  the channels belong to
+     * @param channels number of leased channels
+     */
+    public void releaseChannels(Session session, int channels) {
+        PooledSession pooled = pooledSessions.get(session);
+        if (pooled != null) {
+            for (int i = 0; i < channels; i++) {
+                pooled.host.release(pooled);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of open sessions of all hosts.
+     *
+     * @return the number of sessions
+     */
+    public int getSessionCount() {
+        int count = 0;
+        for (HostPool host : hosts.values()) {
+            count += host.size();
+        }
+        return count;
+    }
+
+    /**
+     * Close the sessions which have not been used within the idle timeout.
+     */
+    public void evictIdle() {
+        long idleSince = System.currentTimeMillis() - idleTimeoutMillis;
+        for (HostPool host : hosts.values()) {
+            host.evictIdle(idleSince);
+        }
+    }
+
+    /**
+     * Disconnect all sessions. Leased sessions are disconnected as well.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        reaper.shutdownNow();
+        for (HostPool host : hosts.values()) {
+            host.evictIdle(Long.MAX_VALUE);
+        }
+        for (PooledSession pooled : pooledSessions.values()) {
+            pooled.session.disconnect();
+        }
+        hosts.clear();
+        pooledSessions.clear();
+    }
+
+    /**
+     * Connect a new session, overridden in tests.
+     */
+    Session connect(String publicIP, int port, String username, String keyFilePath) {
+        return SSHClient.createSession(publicIP, port, username, keyFilePath);
+    }
+
+    private boolean isHealthy(PooledSession pooled) {
+        if (!pooled.session.isConnected()) {
+            return false;
+        }
+        if (System.currentTimeMillis() - pooled.lastUsed < HEALTH_CHECK_AFTER_MILLIS) {
+            return true;
+        }
+        try {
+            pooled.session.sendKeepAliveMsg();
+            return pooled.session.isConnected();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sessions of one host, user and key.
+     */
+    private class HostPool {
+        private final List<PooledSession> sessions = new ArrayList<>();
+        private int connecting;
+
+        /**
+         * Returns the connected session with the fewest leases, or null if the caller has to connect a new session,
+         * for which the capacity is reserved.
+         */
+        private synchronized PooledSession lease(long deadline, String publicIP) throws IOException {
+            while (true) {
+                PooledSession best = null;
+                Iterator<PooledSession> iterator = sessions.iterator();
+                while (iterator.hasNext()) {
+                    PooledSession pooled = iterator.next();
+                    if (pooled.leases == 0 && !pooled.session.isConnected()) {
+                        iterator.remove();
+                        pooledSessions.remove(pooled.session);
+                    } else if (pooled.leases < maxChannelsPerSession && !pooled.broken
+                            && (best == null || pooled.leases < best.leases)) {
+                        best = pooled;
+                    }
+                }
+                // a new session if all are busy, an idle session is preferred to a shared one
+                if (best != null && (best.leases == 0 || sessions.size() + connecting >= maxSessionsPerHost)) {
+                    best.leases++;
+                    return best;
+                }
+                if (sessions.size() + connecting < maxSessionsPerHost) {
+                    connecting++;
+                    return null;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || closed) {
+                    throw new IOException("No SSH session to " + publicIP + " available within " + acquireTimeoutMillis + " ms");
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for an SSH session to " + publicIP, e);
+                }
+            }
+        }
+
+        private synchronized int leaseChannels(PooledSession pooled, int channels) {
+            if (pooled.broken || !sessions.contains(pooled)) {
+                return 0;
+            }
+            int leased = Math.max(0, Math.min(channels, maxChannelsPerSession - pooled.leases));
+            pooled.leases += leased;
+            return leased;
+        }
+
+        private synchronized PooledSession add(Session session) {
+            PooledSession pooled = new PooledSession(this, session);
+            pooled.leases = 1;
+            sessions.add(pooled);
+            pooledSessions.put(session, pooled);
+            // only turned into a session once added, a failure before cancels the reservation instead
+            connecting--;
+            return pooled;
+        }
+
+        private synchronized void cancelReservation() {
+            connecting--;
+            notifyAll();
+        }
+
+        private synchronized void release(PooledSession pooled) {
+            pooled.leases--;
+            pooled.lastUsed = System.currentTimeMillis();
+            if (pooled.broken && pooled.leases == 0) {
+                dispose(pooled);
+            }
+            notifyAll();
+        }
+
+        /**
+         * Give up the lease of a broken session, which is disconnected once other tasks stopped using it.
+         */
+        private synchronized void remove(PooledSession pooled) {
+            pooled.leases--;
+            pooled.broken = true;
+            if (pooled.leases == 0) {
+                dispose(pooled);
+            }
+            notifyAll();
+        }
+
+        /**
+         * Remove and disconnect a session without leases.
+         */
+        private void dispose(PooledSession pooled) {
+            sessions.remove(pooled);
+            pooledSessions.remove(pooled.session);
+            pooled.session.disconnect();
+        }
+
+        private synchronized void evictIdle(long idleSince) {
+            Iterator<PooledSession> iterator = sessions.iterator();
+            while (iterator.hasNext()) {
+                PooledSession pooled = iterator.next();
+                if (pooled.leases == 0 && pooled.lastUsed <= idleSince) {
+                    iterator.remove();
+                    pooledSessions.remove(pooled.session);
+                    pooled.session.disconnect();
+                }
+            }
+            notifyAll();
+        }
+
+        private synchronized int size() {
+            return sessions.size();
+        }
+    }
+
+    /**
+     * Session with its number of leases.
+     */
+    private static class PooledSession {
+        private final HostPool host;
+        private final Session session;
+        private int leases;
+        private volatile long lastUsed = System.currentTimeMillis();
+        private boolean broken;
+
+        private PooledSession(HostPool host, Session session) {
+            this.host = host;
+            this.session = session;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package VMInvokerResources;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Minimal writer of gzipped ustar archives with regular files, which is all {@link ArtifactDeployer} needs to ship
+ * several artifacts in one transfer.
+ */
+class TarGzWriter implements Closeable {
+
+    private static final int BLOCK_SIZE = 512;
+
+    private final OutputStream output;
+    private final byte[] buffer = new byte[8192];
+
+    /**
+     * Create a writer.
+     *
+     * @param output receiving the archive, closed with the writer
+     *
+     * @throws IOException on failure
+     */
+    TarGzWriter(OutputStream output) throws IOException {
+        this.output = new GZIPOutputStream(output, 8192);
+    }
+
+    /**
+     * Append a regular file.
+     *
+     * @param name of the file in the archive, at most 100 bytes
+     * @param file to append
+     * @param mode permissions, e.g. 0644
+     *
+     * @throws IOException on failure
+     */
+    void addFile(String name, Path file, int mode) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > 100) {
+            throw new IOException("File name " + name + " is too long for a tar archive");
+        }
+        long size = Files.size(file);
+        byte[] header = new byte[BLOCK_SIZE];
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        octal(header, 100, 8, mode);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, Files.getLastModifiedTime(file).toMillis() / 1000);
+        header[156] = '0';
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+        // the checksum is computed with its own field filled with spaces
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        octal(header, 148, 7, checksum);
+        output.write(header);
+
+        long written = 0;
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                output.write(buffer, 0, read);
+                written += read;
+            }
+        }
+        if (written != size) {
+            throw new IOException("File " + file + " changed while it was archived");
+        }
+        pad(written);
+    }
+
+    /**
+     * Write the end of the archive and close the output.
+     */
+    @Override
+    public void close() throws IOException {
+        output.write(new byte[2 * BLOCK_SIZE]);
+        output.close();
+    }
+
+    private void pad(long written) throws IOException {
+        int remainder = (int) (written % BLOCK_SIZE);
+        if (remainder != 0) {
+            output.write(new byte[BLOCK_SIZE - remainder]);
+        }
+    }
+
+    /**
+     * Writes the value as zero padded octal number terminated by NUL.
+     */
+    private static void octal(byte[] header, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        if (digits.length() > length - 1) {
+            throw new IllegalArgumentException("Value " + value + " does not fit into the tar header");
+        }
+        int start = offset + length - 1 - digits.length();
+        for (int i = offset; i < start; i++) {
+            header[i] = '0';
+        }
+        for (int i = 0; i < digits.length(); i++) {
+            header[start + i] = (byte) digits.charAt(i);
+        }
+        header[offset + length - 1] = 0;
+    }
+}
@@ -0,0 +1,153 @@
+package VMInvokerResources;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import jFaaS.utils.Serializers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Task catalogue read from a YAML file with a list of {@link TaskInfo}s, indexed by task ID. The file is parsed once
+ * and reloaded when its modification time changed, which is checked at most once per second. If the changed file
+ * cannot be read, or has disappeared, the previous tasks are kept. Of tasks with the same ID the first one is used.
+ * Lookups are lock-free and can be shared by all threads.
+ */
+public class TaskCatalogue {
+
+    private final static Logger LOGGER = Logger.getLogger(TaskCatalogue.class.getName());
+
+    /**
+     * Default location of the catalogue.
+     */
+    public static final String DEFAULT_PATH = "src/main/resources/resourceFiles/Tasks.yaml";
+
+    private static final long CHECK_INTERVAL_MILLIS = 1000;
+
+    private final Path path;
+    private volatile Snapshot snapshot;
+
+    /**
+     * Create the catalogue of the default file.
+     */
+    public TaskCatalogue() {
+        this(Paths.get(DEFAULT_PATH));
+    }
+
+    /**
+     * Create the catalogue of a file, which is read on first use.
+     *
+     * @param path of the YAML file
+     */
+    public TaskCatalogue(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Returns the task with the ID.
+     *
+     * @param id of the task
+     *
+     * @return the task, null if the catalogue has no task with the ID
+     *
+     * @throws IOException if the catalogue cannot be read
+     */
+    public TaskInfo getTask(int id) throws IOException {
+        return current().tasks.get(id);
+    }
+
+    /**
+     * Returns all tasks.
+     *
+     * @return the unmodifiable tasks
+     *
+     * @throws IOException if the catalogue cannot be read
+     */
+    public Collection<TaskInfo> getTasks() throws IOException {
+        return current().tasks.values();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    private Snapshot current() throws IOException {
+        Snapshot current = snapshot;
+        long now = System.currentTimeMillis();
+        if (current != null && now - current.checkedAt < CHECK_INTERVAL_MILLIS) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current != null && now - current.checkedAt < CHECK_INTERVAL_MILLIS) {
+                return current;
+            }
+            FileTime modified;
+            try {
+                modified = Files.getLastModifiedTime(path);
+            } catch (IOException e) {
+                if (current == null) {
+                    throw e;
+                }
+                // e.g. while the file is replaced, the previous tasks are kept until it is back
+                LOGGER.log(Level.WARNING, "Could not check the task catalogue " + path
+                        + ", keeping the previous tasks.", e);
+                current = new Snapshot(current.tasks, current.modified, now);
+                snapshot = current;
+                return current;
+            }
+            if (current == null) {
+                current = load(modified, now);
+            } else if (!modified.equals(current.modified)) {
+                try {
+                    current = load(modified, now);
+                } catch (IOException e) {
+                    // e.g. while the file is written, the previous tasks are kept until it can be read
+                    LOGGER.log(Level.WARNING, "Could not reload the task catalogue " + path
+                            + ", keeping the previous tasks.", e);
+                    current = new Snapshot(current.tasks, current.modified, now);
+                }
+            } else {
+                current = new Snapshot(current.tasks, modified, now);
+            }
+            snapshot = current;
+            return current;
+        }
+    }
+
+    private Snapshot load(FileTime modified, long now) throws IOException {
+        List<TaskInfo> tasks = Serializers.yamlMapper().readValue(path.toFile(), new TypeReference<List<TaskInfo>>() {});
+        Map<Integer, TaskInfo> byId = new HashMap<>();
+        for (TaskInfo task : tasks) {
+            if (byId.putIfAbsent(task.getId(), task) != null) {
+                LOGGER.log(Level.WARNING, "Duplicate task ID " + task.getId() + " in " + path
+                        + ", using the first task.");
+            }
+        }
+        return new Snapshot(Collections.unmodifiableMap(byId), modified, now);
+    }
+
+    /**
+     * Parsed tasks with the modification time of the file they were read from.
+     */
+    private static class Snapshot {
+        private final Map<Integer, TaskInfo> tasks;
+        private final FileTime modified;
+        private final long checkedAt;
+
+        private Snapshot(Map<Integer, TaskInfo> tasks, FileTime modified, long checkedAt) {
+            this.tasks = tasks;
+            this.modified = modified;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package VMInvokerResources;
+
+import jFaaS.utils.InvocationFuture;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Thread-safe scheduler of tasks on VMs. Each VM has a number of slots, e.g. its cores, and runs at most that many
+ * tasks at once. A task either targets a specific VM or any VM with a given operating system, in which case it is
+ * dispatched to the least loaded one. Tasks without a free slot on an eligible VM wait in a queue and are dispatched
+ * in submission order as slots become free; a task waiting for a busy VM does not hold back tasks for other VMs.
+ *
+ * VMs which are targeted before they were added are added with the default number of slots.
+ */
+public class VMScheduler {
+
+    private final int defaultSlots;
+    private final Map<String, VMHost> hosts = new LinkedHashMap<>();
+    private final LinkedList<Pending<?>> queue = new LinkedList<>();
+
+    /**
+     * Task running on the VM it was dispatched to.
+     *
+     * @param <T> type of the task result
+     */
+    @FunctionalInterface
+    public interface HostTask<T> {
+
+        /**
+         * Run the task, the slot is held until it returns.
+         *
+         * @param host   the task was dispatched to
+         * @param future of the running task, used to register abort actions
+         *
+         * @return the task result
+         *
+         * @throws Exception on failure
+         */
+        T run(VMHost host, InvocationFuture<T> future) throws Exception;
+    }
+
+    /**
+     * Create a scheduler adding unknown VMs with 4 slots.
+     */
+    public VMScheduler() {
+        this(4);
+    }
+
+    /**
+     * Create a scheduler.
+     *
+     * @param defaultSlots of VMs which are targeted before they were added
+     */
+    public VMScheduler(int defaultSlots) {
+        if (defaultSlots < 1) {
+            throw new IllegalArgumentException("A VM needs at least one slot");
+        }
+        this.defaultSlots = defaultSlots;
+    }
+
+    /**
+     * Add a VM or change its number of slots. Running tasks are not affected. If the operating system changes, tasks
+     * waiting for this VM with its previous operating system fail.
+     *
+     * @param publicIP        of the VM
+     * @param operatingSystem of the VM, which determines the user name
+     * @param slots           number of tasks running at once, e.g. the number of cores
+     */
+    public void addHost(String publicIP, OperatingSystem operatingSystem, int slots) {
+        if (slots < 1) {
+            throw new IllegalArgumentException("A VM needs at least one slot");
+        }
+        List<Runnable> dispatches;
+        List<Pending<?>> stranded;
+        synchronized (this) {
+            VMHost host = hosts.computeIfAbsent(publicIP, ip -> new VMHost(ip, operatingSystem));
+            host.operatingSystem = operatingSystem;
+            host.slots = slots;
+            dispatches = drain(host);
+            // the VM may have been the last one with its previous operating system
+            stranded = removeStranded();
+        }
+        dispatches.forEach(Runnable::run);
+        failStranded(stranded, publicIP + " changed its operating system");
+    }
+
+    /**
+     * Remove a VM. Running tasks finish, tasks waiting for this VM fail, as do tasks waiting for any VM with its
+     * operating system if no such VM is left. If the VM is added again, its slots are counted from zero.
+     *
+     * @param publicIP of the VM
+     */
+    public void removeHost(String publicIP) {
+        List<Pending<?>> stranded;
+        synchronized (this) {
+            if (hosts.remove(publicIP) == null) {
+                return;
+            }
+            stranded = removeStranded();
+        }
+        failStranded(stranded, publicIP + " was removed");
+    }
+
+    /**
+     * Submit a task.
+     *
+     * @param publicIP        of the VM to run on, null for any VM with the operating system
+     * @param operatingSystem of the VM, which has to match the operating system a targeted VM was added with
+     * @param executor        running the task
+     * @param task            to run
+     * @param <T>             type of the task result
+     *
+     * @return future of the task result, cancelling it removes a waiting task from the queue or aborts a running one
+     */
+    public <T> CompletableFuture<T> submit(String publicIP, OperatingSystem operatingSystem, Executor executor, HostTask<T> task) {
+        Pending<T> pending = new Pending<>(publicIP, operatingSystem, executor, task);
+        Runnable dispatch;
+        synchronized (this) {
+            VMHost target = publicIP != null ? hosts.get(publicIP) : null;
+            if (publicIP != null && target == null) {
+                target = new VMHost(publicIP, operatingSystem);
+                target.slots = defaultSlots;
+                hosts.put(publicIP, target);
+            } else if (target != null && target.operatingSystem != operatingSystem) {
+                // the user name of the session depends on the operating system the VM was added with
+                pending.result.completeExceptionally(new IOException("VM " + publicIP
+                        + " was added with operating system " + target.operatingSystem + ", not " + operatingSystem));
+                return pending.result;
+            }
+            VMHost host = leastLoaded(pending);
+            if (host == null && publicIP == null && hosts.values().stream().noneMatch(pending::isEligible)) {
+                pending.result.completeExceptionally(new IOException("No VM with operating system " + operatingSystem + " added"));
+                return pending.result;
+            }
+            if (host != null) {
+                dispatch = dispatch(pending, host);
+            } else {
+                queue.add(pending);
+                dispatch = null;
+            }
+        }
+        pending.result.whenComplete((result, failure) -> {
+            if (pending.result.isCancelled()) {
+                synchronized (this) {
+                    queue.remove(pending);
+                }
+            }
+        });
+        if (dispatch != null) {
+            dispatch.run();
+        }
+        return pending.result;
+    }
+
+    /**
+     * Returns the VMs.
+     *
+     * @return snapshot of the VMs in the order they were added
+     */
+    public synchronized List<VMHost> getHosts() {
+        return new ArrayList<>(hosts.values());
+    }
+
+    /**
+     * Returns the number of tasks waiting for a free slot.
+     *
+     * @return the number of queued tasks
+     */
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the eligible VM with the lowest share of occupied slots, null if all are busy.
+     */
+    private VMHost leastLoaded(Pending<?> pending) {
+        VMHost best = null;
+        for (VMHost host : hosts.values()) {
+            if (host.running < host.slots && pending.isEligible(host)
+                    && (best == null || (long) host.running * best.slots < (long) best.running * host.slots)) {
+                best = host;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Occupies a slot of the VM and returns the action starting the task, which has to run outside the lock.
+     */
+    private <T> Runnable dispatch(Pending<T> pending, VMHost host) {
+        host.running++;
+        return () -> {
+            InvocationFuture<T> running;
+            try {
+                running = InvocationFuture.run(pending.executor, future -> pending.task.run(host, future));
+            } catch (RuntimeException e) {
+                release(host);
+                pending.result.completeExceptionally(e);
+                return;
+            }
+            pending.result.onAbort(() -> running.cancel(true));
+            running.whenComplete((result, failure) -> {
+                release(host);
+                if (failure != null) {
+                    pending.result.completeExceptionally(failure);
+                } else {
+                    pending.result.complete(result);
+                }
+            });
+        };
+    }
+
+    private void release(VMHost host) {
+        List<Runnable> dispatches;
+        synchronized (this) {
+            host.running--;
+            if (hosts.get(host.publicIP) != host) {
+                // removed while the task ran
+                return;
+            }
+            dispatches = drain(host);
+        }
+        dispatches.forEach(Runnable::run);
+    }
+
+    /**
+     * Removes the queued tasks no VM can run anymore: tasks for the removed VM and tasks for any VM with an operating
+     * system no VM has.
+     */
+    private List<Pending<?>> removeStranded() {
+        List<Pending<?>> stranded = new ArrayList<>();
+        Iterator<Pending<?>> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            Pending<?> pending = iterator.next();
+            if (hosts.values().stream().noneMatch(pending::isEligible)) {
+                iterator.remove();
+                stranded.add(pending);
+            }
+        }
+        return stranded;
+    }
+
+    private static void failStranded(List<Pending<?>> stranded, String reason) {
+        for (Pending<?> pending : stranded) {
+            pending.result.completeExceptionally(new IOException(pending.publicIP != null ? "VM " + reason
+                    : "VM " + reason + " and no VM with operating system " + pending.operatingSystem + " is left"));
+        }
+    }
+
+    /**
+     * Dispatches queued tasks to the free slots of the VM in submission order.
+     */
+    private List<Runnable> drain(VMHost host) {
+        List<Runnable> dispatches = new ArrayList<>();
+        Iterator<Pending<?>> iterator = queue.iterator();
+        while (host.running < host.slots && iterator.hasNext()) {
+            Pending<?> pending = iterator.next();
+            if (pending.isEligible(host)) {
+                iterator.remove();
+                dispatches.add(dispatch(pending, host));
+            }
+        }
+        return dispatches;
+    }
+
+    /**
+     * VM with its slots. The counters are guarded by the scheduler.
+     */
+    public static class VMHost {
+        private final String publicIP;
+        private volatile OperatingSystem operatingSystem;
+        private volatile int slots;
+        private volatile int running;
+
+        private VMHost(String publicIP, OperatingSystem operatingSystem) {
+            this.publicIP = publicIP;
+            this.operatingSystem = operatingSystem;
+        }
+
+        public String getPublicIP() {
+            return publicIP;
+        }
+
+        public OperatingSystem getOperatingSystem() {
+            return operatingSystem;
+        }
+
+        /**
+         * Returns the user name to log in, derived from the operating system.
+         *
+         * @return the user name
+         */
+        public String getUsername() {
+            return operatingSystem.toString().toLowerCase();
+        }
+
+        public int getSlots() {
+            return slots;
+        }
+
+        public int getRunning() {
+            return running;
+        }
+
+        @Override
+        public String toString() {
+            return publicIP + " (" + operatingSystem + ", " + running + "/" + slots + " slots)";
+        }
+    }
+
+    /**
+     * Task waiting for a slot.
+     */
+    private static class Pending<T> {
+        private final String publicIP;
+        private final OperatingSystem operatingSystem;
+        private final Executor executor;
+        private final HostTask<T> task;
+        private final InvocationFuture<T> result = new InvocationFuture<>();
+
+        private Pending(String publicIP, OperatingSystem operatingSystem, Executor executor, HostTask<T> task) {
+            this.publicIP = publicIP;
+            this.operatingSystem = operatingSystem;
+            this.executor = executor;
+            this.task = task;
+        }
+
+        private boolean isEligible(VMHost host) {
+            return (publicIP == null || publicIP.equals(host.publicIP)) && operatingSystem == host.operatingSystem;
+        }
+    }
+}
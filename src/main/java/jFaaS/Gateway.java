@@ -1,33 +1,91 @@
 package jFaaS;
 
-import com.amazonaws.regions.Regions;
+import VMInvokerResources.SSHSessionPool;
+import VMInvokerResources.TaskCatalogue;
+import VMInvokerResources.VMScheduler;
+import jFaaS.cache.ResultCache;
+import jFaaS.completion.CompletionChannel;
 import jFaaS.invokers.*;
+import jFaaS.metrics.InMemoryMetrics;
+import jFaaS.metrics.MeteredInvoker;
+import jFaaS.metrics.MetricsRecorder;
+import jFaaS.metrics.NoopMetrics;
+import jFaaS.payload.PayloadCodec;
+import jFaaS.payload.PayloadInvoker;
+import jFaaS.resilience.AdaptiveLimiter;
+import jFaaS.resilience.CircuitBreaker;
+import jFaaS.resilience.CircuitBreakerConfig;
+import jFaaS.resilience.CircuitBreakerInvoker;
+import jFaaS.resilience.CircuitBreakerRegistry;
+import jFaaS.resilience.LimitedInvoker;
+import jFaaS.resilience.ResilientInvoker;
+import jFaaS.resilience.RetryEngine;
+import jFaaS.resilience.RetryPolicy;
+import jFaaS.routing.FunctionAlias;
+import jFaaS.routing.FunctionProvider;
+import jFaaS.routing.LambdaProvider;
+import jFaaS.routing.ProviderRegistry;
+import jFaaS.routing.ResolvedFunction;
+import jFaaS.routing.SimpleFunctionProvider;
+import jFaaS.utils.FanOutScheduler;
+import jFaaS.utils.InvocationFuture;
+import jFaaS.utils.InvocationOutcome;
+import jFaaS.utils.InvocationRequest;
+import jFaaS.utils.InvocationTimings;
+import jFaaS.utils.InvocationTimings.Phase;
 import jFaaS.utils.PairResult;
+import jFaaS.utils.Serializers;
+import jFaaS.utils.SingleFlight;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class Gateway implements FaaSInvoker {
 
     private final static Logger LOGGER = Logger.getLogger(Gateway.class.getName());
-    private FaaSInvoker lambdaInvoker;
+    private static final int DEFAULT_BATCH_CONCURRENCY = 1000;
+    private final ProviderRegistry providerRegistry = new ProviderRegistry();
+    private LambdaProvider lambdaProvider;
     private String awsAccessKey;
     private String awsSecretKey;
     private String awsSessionToken;
-    private Regions currentRegion;
-    private FaaSInvoker openWhiskInvoker;
     private String openWhiskKey;
-    private FaaSInvoker googleFunctionInvoker;
     private String googleServiceAccountKey;
     private String googleToken;
-    private FaaSInvoker azureInvoker;
     private String azureKey;
-    private FaaSInvoker httpGETInvoker;
-    private VMInvoker vmInvoker;
+    private volatile Executor executor = InvocationFuture.sharedExecutor();
+    private final FanOutScheduler batchScheduler = new FanOutScheduler(DEFAULT_BATCH_CONCURRENCY);
+    private volatile MetricsRecorder metrics = NoopMetrics.INSTANCE;
+    private volatile RetryEngine retryEngine;
+    private volatile boolean adaptiveConcurrency;
+    private final Map<String, AdaptiveLimiter> limiters = new ConcurrentHashMap<>();
+    private volatile CircuitBreakerRegistry circuitBreakers;
+    private final Map<String, FunctionAlias> aliases = new ConcurrentHashMap<>();
+    private volatile ResultCache resultCache;
+    private final Map<String, PayloadCodec> payloadCodecs = new ConcurrentHashMap<>();
+    private volatile boolean coalescing;
+    private final SingleFlight<String, PairResult<String, Long>> inFlight = new SingleFlight<>(PairResult::copy);
+    private final VMScheduler vmScheduler = new VMScheduler();
+    private final Set<FaaSInvoker> gaugesRegistered = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
 
     /**
      * Gateway.
@@ -65,7 +123,7 @@ public class Gateway implements FaaSInvoker {
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Could not load credentials file.");
         }
-        httpGETInvoker = new HTTPGETInvoker();
+        registerDefaultProviders();
 
     }
 
@@ -74,30 +132,59 @@ public class Gateway implements FaaSInvoker {
      * Gateway.
      */
     public Gateway() {
-        httpGETInvoker = new HTTPGETInvoker();
+        registerDefaultProviders();
     }
 
     /**
-     * Detect aws lambda region
+     * Register the providers supported by jFaaS. Providers requiring credentials are only registered if the
+     * credentials are available.
+     */
+    private void registerDefaultProviders() {
+        if (awsSecretKey != null && awsAccessKey != null) {
+            lambdaProvider = new LambdaProvider(awsAccessKey, awsSecretKey, awsSessionToken);
+            providerRegistry.register(lambdaProvider);
+        }
+        providerRegistry.register(new SimpleFunctionProvider("ibm",
+                function -> function.contains("functions.appdomain.cloud") || function.contains("functions.cloud.ibm"),
+                function -> function.endsWith(".json") ? function : function + ".json",
+                () -> new OpenWhiskInvoker(openWhiskKey != null ? openWhiskKey : "")));
+        providerRegistry.register(new SimpleFunctionProvider("google",
+                function -> function.contains("cloudfunctions.net"),
+                () -> {
+                    if (googleServiceAccountKey != null) {
+                        return new GoogleFunctionInvoker(googleServiceAccountKey, "serviceAccount");
+                    } else if (googleToken != null) {
+                        return new GoogleFunctionInvoker(googleToken, "token");
+                    }
+                    return new GoogleFunctionInvoker();
+                }));
+        providerRegistry.register(new SimpleFunctionProvider("azure",
+                function -> function.contains("azurewebsites.net"),
+                () -> azureKey != null ? new AzureInvoker(azureKey) : new AzureInvoker()));
+        // TODO check for alibaba authentication. Currently no authentication is assumed
+        providerRegistry.register(new SimpleFunctionProvider("alibaba",
+                function -> function.contains("fc.aliyuncs.com"), HTTPGETInvoker::new));
+        providerRegistry.register(new SimpleFunctionProvider("vm",
+                function -> function.contains(":VM:"),
+                () -> new VMInvoker(new SSHSessionPool(), new TaskCatalogue(), vmScheduler)));
+    }
+
+    /**
+     * Register a provider which takes precedence over all previously registered providers.
      *
-     * @param function arn
+     * @param provider to register
+     */
+    public void registerProvider(FunctionProvider provider) {
+        providerRegistry.registerFirst(provider);
+    }
+
+    /**
+     * Returns the registry routing functions to their providers.
      *
-     * @return region
+     * @return the provider registry
      */
-    private static Regions detectRegion(String function) {
-        String regionName;
-        int searchIndex = function.indexOf("lambda:");
-        if (searchIndex != -1) {
-            regionName = function.substring(searchIndex + "lambda:".length());
-            regionName = regionName.split(":")[0];
-            try {
-                return Regions.fromName(regionName);
-            } catch (Exception e) {
-                return null;
-            }
-        } else {
-            return null;
-        }
+    public ProviderRegistry getProviderRegistry() {
+        return providerRegistry;
     }
 
     /**
@@ -112,71 +199,744 @@ public class Gateway implements FaaSInvoker {
      */
     @Override
     public PairResult<String, Long> invokeFunction(String function, Map<String, Object> functionInputs) throws IOException {
-        if (function.contains("arn:") && awsSecretKey != null && awsAccessKey != null) {
-            Regions tmpRegion = detectRegion(function);
-/*            if(lambdaInvoker == null || tmpRegion != currentRegion){
-                currentRegion = tmpRegion;
-                lambdaInvoker = new LambdaInvoker(awsAccessKey, awsSecretKey, awsSessionToken, currentRegion);
+        ResultCache resultCache = this.resultCache;
+        if (resultCache != null && resultCache.isCacheable(function)) {
+            return resultCache.get(function, functionInputs, () -> invokeFunctionUncached(function, functionInputs));
+        }
+        if (coalescing) {
+            return inFlight.execute(coalescingKey(function, functionInputs), () -> invokeFunctionUncached(function, functionInputs));
+        }
+        return invokeFunctionUncached(function, functionInputs);
+    }
+
+    /**
+     * Returns the key identifying identical invocations.
+     *
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     *
+     * @return the function identifier and the canonical hash of the inputs
+     */
+    private static String coalescingKey(String function, Map<String, Object> functionInputs) {
+        return function + '#' + Serializers.canonicalHash(functionInputs);
+    }
+
+    /**
+     * Invoke a cloud function without looking up the result cache.
+     *
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     *
+     * @return json result
+     *
+     * @throws IOException on failure
+     */
+    private PairResult<String, Long> invokeFunctionUncached(String function, Map<String, Object> functionInputs) throws IOException {
+        FunctionAlias alias = aliases.get(function);
+        if (alias != null) {
+            return invokeAlias(alias, deployment -> invokeFunctionUncached(deployment, functionInputs));
+        }
+        long routingStart = System.nanoTime();
+        ResolvedFunction resolved = providerRegistry.resolve(function);
+        if (resolved == null) {
+            metrics.functionUnresolved(function);
+            return null;
+        }
+        FaaSInvoker invoker = invokerOf(resolved);
+        long routingNanos = System.nanoTime() - routingStart;
+        return addRoutingTime(invoker.invokeFunction(resolved.getTarget(), functionInputs), routingNanos);
+    }
+
+    /**
+     * Invoke a cloud function and return its result as raw bytes.
+     *
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     *
+     * @return raw result or null if no provider matches the function
+     *
+     * @throws IOException on failure
+     */
+    @Override
+    public PairResult<byte[], Long> invokeFunctionRaw(String function, Map<String, Object> functionInputs) throws IOException {
+        FunctionAlias alias = aliases.get(function);
+        if (alias != null) {
+            return invokeAlias(alias, deployment -> invokeFunctionRaw(deployment, functionInputs));
+        }
+        long routingStart = System.nanoTime();
+        ResolvedFunction resolved = providerRegistry.resolve(function);
+        if (resolved == null) {
+            metrics.functionUnresolved(function);
+            return null;
+        }
+        FaaSInvoker invoker = invokerOf(resolved);
+        long routingNanos = System.nanoTime() - routingStart;
+        return addRoutingTime(invoker.invokeFunctionRaw(resolved.getTarget(), functionInputs), routingNanos);
+    }
+
+    /**
+     * Invoke a cloud function and return its result as stream, which has to be closed by the caller.
+     *
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     *
+     * @return result stream or null if no provider matches the function
+     *
+     * @throws IOException on failure
+     */
+    @Override
+    public PairResult<InputStream, Long> invokeFunctionStream(String function, Map<String, Object> functionInputs) throws IOException {
+        FunctionAlias alias = aliases.get(function);
+        if (alias != null) {
+            return invokeAlias(alias, deployment -> invokeFunctionStream(deployment, functionInputs));
+        }
+        long routingStart = System.nanoTime();
+        ResolvedFunction resolved = providerRegistry.resolve(function);
+        if (resolved == null) {
+            metrics.functionUnresolved(function);
+            return null;
+        }
+        FaaSInvoker invoker = invokerOf(resolved);
+        long routingNanos = System.nanoTime() - routingStart;
+        return addRoutingTime(invoker.invokeFunctionStream(resolved.getTarget(), functionInputs), routingNanos);
+    }
+
+    /**
+     * Invoke a cloud function asynchronously on the executor of the gateway.
+     *
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     *
+     * @return future of the json result, completed with null if no provider matches the function
+     */
+    @Override
+    public CompletableFuture<PairResult<String, Long>> invokeFunctionAsync(String function, Map<String, Object> functionInputs) {
+        return invokeFunctionAsync(function, functionInputs, executor);
+    }
+
+    /**
+     * Invoke a cloud function asynchronously.
+     *
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     * @param executor       executing the invocation
+     *
+     * @return future of the json result, completed with null if no provider matches the function
+     */
+    @Override
+    public CompletableFuture<PairResult<String, Long>> invokeFunctionAsync(String function, Map<String, Object> functionInputs, Executor executor) {
+        ResultCache resultCache = this.resultCache;
+        if (resultCache != null && resultCache.isCacheable(function)) {
+            return resultCache.getAsync(function, functionInputs, () -> invokeFunctionAsyncUncached(function, functionInputs, executor));
+        }
+        if (coalescing) {
+            return inFlight.executeAsync(coalescingKey(function, functionInputs),
+                    () -> invokeFunctionAsyncUncached(function, functionInputs, executor));
+        }
+        return invokeFunctionAsyncUncached(function, functionInputs, executor);
+    }
+
+    /**
+     * Invoke a cloud function asynchronously without looking up the result cache.
+     *
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     * @param executor       executing the invocation
+     *
+     * @return future of the json result, completed with null if no provider matches the function
+     */
+    private CompletableFuture<PairResult<String, Long>> invokeFunctionAsyncUncached(String function, Map<String, Object> functionInputs, Executor executor) {
+        FunctionAlias alias = aliases.get(function);
+        if (alias != null) {
+            CompletableFuture<PairResult<String, Long>> result = new CompletableFuture<>();
+            attemptAlias(alias, alias.candidates(this::isAvailable).iterator(), functionInputs, executor, result, null);
+            return result;
+        }
+        long routingStart = System.nanoTime();
+        ResolvedFunction resolved = providerRegistry.resolve(function);
+        if (resolved == null) {
+            metrics.functionUnresolved(function);
+            return CompletableFuture.completedFuture(null);
+        }
+        FaaSInvoker invoker = invokerOf(resolved);
+        long routingNanos = System.nanoTime() - routingStart;
+        CompletableFuture<PairResult<String, Long>> invocation = invoker.invokeFunctionAsync(resolved.getTarget(), functionInputs, executor);
+        CompletableFuture<PairResult<String, Long>> result = invocation.thenApply(r -> addRoutingTime(r, routingNanos));
+        result.whenComplete((r, failure) -> {
+            if (result.isCancelled()) {
+                invocation.cancel(true);
             }
-*/
-            lambdaInvoker = new LambdaInvoker(awsAccessKey, awsSecretKey, awsSessionToken, tmpRegion);
-            return lambdaInvoker.invokeFunction(function, functionInputs);
-
-        } else if (function.contains("functions.appdomain.cloud") || function.contains("functions.cloud.ibm")) {
-            if (openWhiskKey != null) {
-                if (openWhiskInvoker == null) {
-                    openWhiskInvoker = new OpenWhiskInvoker(openWhiskKey);
-                }
-            } else {
-                if (openWhiskInvoker == null) {
-                    openWhiskInvoker = new OpenWhiskInvoker("");
+        });
+        return result;
+    }
+
+    /**
+     * Invoke the deployments of an alias in the order of its strategy until one succeeds.
+     *
+     * @param alias      to invoke
+     * @param invocation of a deployment
+     *
+     * @return the result of the first successful deployment, null if no deployment returned a result
+     *
+     * @throws IOException the failure of the last deployment, a runtime exception of the last deployment is rethrown
+     *                     as is
+     */
+    private <T> PairResult<T, Long> invokeAlias(FunctionAlias alias, AliasInvocation<T> invocation) throws IOException {
+        Exception failure = null;
+        for (String deployment : alias.candidates(this::isAvailable)) {
+            try {
+                PairResult<T, Long> result = invocation.invoke(deployment);
+                if (result != null) {
+                    alias.recordSuccess(deployment, result.getRTT());
+                    return result;
                 }
+            } catch (IOException | RuntimeException e) {
+                // e.g. an AmazonServiceException of the Lambda client, fail over like the asynchronous invocation
+                failure = e;
             }
-            return openWhiskInvoker.invokeFunction(function.endsWith(".json") ? function : function + ".json", functionInputs);
-        } else if (function.contains("cloudfunctions.net")) {
-            if (googleServiceAccountKey != null) {
-                if (googleFunctionInvoker == null) {
-                    googleFunctionInvoker = new GoogleFunctionInvoker(googleServiceAccountKey, "serviceAccount");
-                }
-            } else if (googleToken != null) {
-                if (googleFunctionInvoker == null) {
-                    googleFunctionInvoker = new GoogleFunctionInvoker(googleToken, "token");
-                }
+            alias.recordFailure(deployment);
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+        return null;
+    }
+
+    /**
+     * Invoke the next deployment of an alias asynchronously, failing over to the following deployments on error.
+     *
+     * @param alias          to invoke
+     * @param candidates     remaining deployments
+     * @param functionInputs input parameters
+     * @param executor       executing the invocations
+     * @param result         completed with the result of the first successful deployment
+     * @param lastFailure    failure of the previous deployment or null
+     */
+    private void attemptAlias(FunctionAlias alias, Iterator<String> candidates, Map<String, Object> functionInputs,
+                              Executor executor, CompletableFuture<PairResult<String, Long>> result, Throwable lastFailure) {
+        if (result.isDone()) {
+            return;
+        }
+        if (!candidates.hasNext()) {
+            if (lastFailure != null) {
+                result.completeExceptionally(lastFailure);
             } else {
-                if (googleFunctionInvoker == null) {
-                googleFunctionInvoker = new GoogleFunctionInvoker();
-                }
+                result.complete(null);
+            }
+            return;
+        }
+        String deployment = candidates.next();
+        CompletableFuture<PairResult<String, Long>> invocation;
+        try {
+            invocation = invokeFunctionAsyncUncached(deployment, functionInputs, executor);
+        } catch (RuntimeException e) {
+            invocation = new CompletableFuture<>();
+            invocation.completeExceptionally(e);
+        }
+        CompletableFuture<PairResult<String, Long>> running = invocation;
+        result.whenComplete((r, failure) -> {
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+        running.whenComplete((r, failure) -> {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            if (cause == null && r != null) {
+                alias.recordSuccess(deployment, r.getRTT());
+                result.complete(r);
+                return;
+            }
+            if (cause instanceof CancellationException) {
+                result.completeExceptionally(cause);
+                return;
             }
-            return googleFunctionInvoker.invokeFunction(function, functionInputs);
+            alias.recordFailure(deployment);
+            attemptAlias(alias, candidates, functionInputs, executor, result, cause != null ? cause : lastFailure);
+        });
+    }
 
-        } else if (function.contains("azurewebsites.net")) {
-            if (azureKey != null) {
-                if (azureInvoker == null) {
-                    azureInvoker = new AzureInvoker(azureKey);
-                }
-                
-            } else{
-            
-                if(azureInvoker == null){
+    /**
+     * Returns whether a function is available, i.e. its circuit breaker is not open.
+     *
+     * @param function identifier of the function
+     *
+     * @return false if the circuit breaker of the function is open
+     */
+    private boolean isAvailable(String function) {
+        return circuitBreakers == null || getCircuitState(function) != CircuitBreaker.State.OPEN;
+    }
 
-                azureInvoker = new AzureInvoker();
-                }
+    /**
+     * Functional interface of a synchronous invocation of an alias deployment.
+     */
+    @FunctionalInterface
+    private interface AliasInvocation<T> {
+        PairResult<T, Long> invoke(String deployment) throws IOException;
+    }
+
+    /**
+     * Returns the invoker of the resolved function, metered if metrics are enabled. The gauges of an invoker are
+     * registered on its first use.
+     *
+     * @param resolved function
+     *
+     * @return the invoker
+     */
+    private FaaSInvoker meteredInvokerOf(ResolvedFunction resolved) {
+        FaaSInvoker invoker = resolved.getInvoker();
+        MetricsRecorder metrics = this.metrics;
+        if (metrics == NoopMetrics.INSTANCE) {
+            return invoker;
+        }
+        boolean registerGauges = gaugesRegistered.add(invoker);
+        return new MeteredInvoker(invoker, resolved.getProvider().getName(), metrics, registerGauges);
+    }
+
+    /**
+     * Returns the invoker of the resolved function, metered if metrics are enabled, guarded by a circuit breaker if
+     * enabled, limited if adaptive concurrency is enabled, retried if a retry policy is set and with encoded payloads if
+     * the provider has a payload codec. Each attempt is metered, recorded by the breaker and limited separately, the
+     * payload is encoded once for all attempts.
+     *
+     * @param resolved function
+     *
+     * @return the invoker
+     */
+    private FaaSInvoker invokerOf(ResolvedFunction resolved) {
+        FaaSInvoker invoker = meteredInvokerOf(resolved);
+        CircuitBreakerRegistry circuitBreakers = this.circuitBreakers;
+        if (circuitBreakers != null) {
+            invoker = new CircuitBreakerInvoker(invoker, circuitBreakers);
+        }
+        AdaptiveLimiter limiter = limiterOf(resolved.getProvider().getName());
+        if (limiter != null) {
+            invoker = new LimitedInvoker(invoker, limiter);
+        }
+        RetryEngine retryEngine = this.retryEngine;
+        if (retryEngine != null) {
+            invoker = new ResilientInvoker(invoker, retryEngine, resolved.getProvider().getName(), executor);
+        }
+        PayloadCodec payloadCodec = payloadCodecs.get(resolved.getProvider().getName());
+        return payloadCodec != null ? new PayloadInvoker(invoker, payloadCodec) : invoker;
+    }
+
+    /**
+     * Returns the concurrency limiter of the provider, created with the default settings on first use.
+     *
+     * @param provider name of the provider
+     *
+     * @return the limiter, null if adaptive concurrency is disabled and no limiter was set for the provider
+     */
+    private AdaptiveLimiter limiterOf(String provider) {
+        AdaptiveLimiter limiter = limiters.get(provider);
+        if (limiter != null || !adaptiveConcurrency) {
+            return limiter;
+        }
+        return limiters.computeIfAbsent(provider, name -> {
+            AdaptiveLimiter created = new AdaptiveLimiter(name);
+            registerLimiterGauges(name, created, metrics);
+            return created;
+        });
+    }
+
+    private static void registerLimiterGauges(String provider, AdaptiveLimiter limiter, MetricsRecorder metrics) {
+        metrics.registerGauge(provider, "limiter.limit", limiter::getLimit);
+        metrics.registerGauge(provider, "limiter.inFlight", limiter::getInFlight);
+        metrics.registerGauge(provider, "limiter.queued", limiter::getQueued);
+        metrics.registerGauge(provider, "limiter.shed", limiter::getShedCount);
+    }
+
+    /**
+     * Add the time spent resolving the function to the timings of the result.
+     *
+     * @param result       of the invocation, may be null
+     * @param routingNanos time spent resolving the function
+     *
+     * @return the result
+     */
+    private static <T> PairResult<T, Long> addRoutingTime(PairResult<T, Long> result, long routingNanos) {
+        if (result != null) {
+            if (result.getTimings() == null) {
+                result.setTimings(new InvocationTimings());
             }
-           
-            
-            return azureInvoker.invokeFunction(function, functionInputs);
-            
-
-        } else if (function.contains("fc.aliyuncs.com")) {
-            // TODO check for alibaba authentication. Currently no authentication is assumed
-            return httpGETInvoker.invokeFunction(function, functionInputs);
-        } else if (function.contains(":VM:")) {
-            if (vmInvoker == null) {
-                vmInvoker = new VMInvoker();
+            result.getTimings().add(Phase.ROUTING, routingNanos);
+        }
+        return result;
+    }
+
+    /**
+     * Invoke a batch of cloud functions concurrently and wait for all of them. A failed invocation does not abort the
+     * batch but is reported in its outcome.
+     *
+     * @param requests functions and their inputs
+     *
+     * @return the outcomes in the order of the requests
+     */
+    public List<InvocationOutcome> invokeAll(List<InvocationRequest> requests) {
+        return invokeAllAsync(requests, null).join();
+    }
+
+    /**
+     * Invoke a batch of cloud functions concurrently. The number of running invocations is bounded by the batch
+     * concurrency limits of the gateway, see {@link #setMaxConcurrency(int)} and
+     * {@link #setMaxConcurrency(String, int)}.
+     *
+     * @param requests   functions and their inputs
+     * @param onComplete called with each outcome as soon as it completes, may be null
+     *
+     * @return future of the outcomes in the order of the requests
+     */
+    public CompletableFuture<List<InvocationOutcome>> invokeAllAsync(List<InvocationRequest> requests, Consumer<InvocationOutcome> onComplete) {
+        InvocationOutcome[] outcomes = new InvocationOutcome[requests.size()];
+        CompletableFuture<List<InvocationOutcome>> batch = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(requests.size());
+        if (requests.isEmpty()) {
+            batch.complete(new ArrayList<>());
+            return batch;
+        }
+
+        for (int i = 0; i < requests.size(); i++) {
+            int index = i;
+            InvocationRequest request = requests.get(i);
+            ResolvedFunction resolved;
+            try {
+                resolved = providerRegistry.resolve(request.getFunction());
+            } catch (RuntimeException e) {
+                resolved = null;
             }
-            return vmInvoker.invokeFunction(function, functionInputs);
+            String provider = resolved != null ? resolved.getProvider().getName() : "unknown";
+            batchScheduler.submit(provider, () -> {
+                long start = System.currentTimeMillis();
+                CompletableFuture<PairResult<String, Long>> invocation;
+                try {
+                    invocation = invokeFunctionAsync(request.getFunction(), request.getFunctionInputs());
+                } catch (RuntimeException e) {
+                    invocation = new CompletableFuture<>();
+                    invocation.completeExceptionally(e);
+                }
+                return invocation.whenComplete((result, failure) -> {
+                    Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+                    if (cause == null && result == null) {
+                        cause = new IllegalArgumentException("No provider found for function " + request.getFunction());
+                    }
+                    InvocationOutcome outcome = new InvocationOutcome(index, request, cause == null ? result : null, cause,
+                            System.currentTimeMillis() - start);
+                    outcomes[index] = outcome;
+                    if (onComplete != null) {
+                        try {
+                            onComplete.accept(outcome);
+                        } catch (RuntimeException e) {
+                            LOGGER.log(Level.WARNING, "Batch listener failed.", e);
+                        }
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        batch.complete(Arrays.asList(outcomes));
+                    }
+                });
+            });
         }
-        return null;
+        return batch;
+    }
+
+    /**
+     * Set the maximum number of concurrently running invocations of all batches.
+     *
+     * @param maxConcurrency maximum number of running batch invocations
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        batchScheduler.setLimit(maxConcurrency);
+    }
+
+    /**
+     * Set the maximum number of concurrently running invocations of all batches for a provider.
+     *
+     * @param provider       name of the provider (aws, ibm, google, azure, alibaba or vm)
+     * @param maxConcurrency maximum number of running batch invocations of the provider
+     */
+    public void setMaxConcurrency(String provider, int maxConcurrency) {
+        batchScheduler.setLimit(provider, maxConcurrency);
+    }
+
+    /**
+     * Set the recorder receiving the metrics of all invocations, e.g. an {@link InMemoryMetrics}. By default metrics
+     * are disabled.
+     *
+     * @param metrics receiving the metrics, null to disable metrics
+     */
+    public void setMetrics(MetricsRecorder metrics) {
+        this.metrics = metrics != null ? metrics : NoopMetrics.INSTANCE;
+        gaugesRegistered.clear();
+        RetryEngine retryEngine = this.retryEngine;
+        if (retryEngine != null) {
+            retryEngine.setMetrics(this.metrics);
+        }
+        this.metrics.registerGauge("gateway", "batch.running", batchScheduler::getRunning);
+        this.metrics.registerGauge("gateway", "batch.queued", batchScheduler::getQueued);
+        this.metrics.registerGauge("gateway", "coalescing.inFlight", inFlight::getInFlight);
+        this.metrics.registerGauge("gateway", "coalescing.shared", inFlight::getSharedCount);
+        limiters.forEach((provider, limiter) -> registerLimiterGauges(provider, limiter, this.metrics));
+    }
+
+    /**
+     * Enable or disable the adaptive concurrency limit of all providers. If enabled, each provider gets an
+     * {@link AdaptiveLimiter} with the default settings, which learns the sustainable number of concurrent invocations
+     * from their latency and throttling. Invocations above the limit are queued, and shed with a
+     * {@link jFaaS.resilience.LimitExceededException} if the queue is full. By default no limit applies.
+     *
+     * @param enabled true to limit the concurrency of all providers
+     */
+    public void setAdaptiveConcurrency(boolean enabled) {
+        adaptiveConcurrency = enabled;
+        if (!enabled) {
+            limiters.clear();
+        }
+    }
+
+    /**
+     * Set the concurrency limiter of a provider, e.g. with custom settings. It applies even if adaptive concurrency
+     * is disabled for the other providers.
+     *
+     * @param provider name of the provider (aws, ibm, google, azure, alibaba, vm or a custom provider)
+     * @param limiter  of the provider, null to remove it
+     */
+    public void setConcurrencyLimiter(String provider, AdaptiveLimiter limiter) {
+        if (limiter == null) {
+            limiters.remove(provider);
+        } else {
+            limiters.put(provider, limiter);
+            registerLimiterGauges(provider, limiter, metrics);
+        }
+    }
+
+    /**
+     * Enable circuit breakers per function endpoint. Once the failure or slow-call rate of an endpoint reaches the
+     * thresholds, its invocations fail immediately with a {@link jFaaS.resilience.CircuitOpenException} until probe
+     * invocations succeed again. By default no circuit breakers apply.
+     *
+     * @param config of the circuit breakers, null to disable them
+     */
+    public synchronized void setCircuitBreaker(CircuitBreakerConfig config) {
+        if (config == null) {
+            circuitBreakers = null;
+        } else if (circuitBreakers == null) {
+            circuitBreakers = new CircuitBreakerRegistry(config);
+        } else {
+            circuitBreakers.setConfig(config);
+            circuitBreakers.clear();
+        }
+    }
+
+    /**
+     * Returns the circuit breakers, e.g. to add a listener of state transitions.
+     *
+     * @return the circuit breakers, null if they are disabled
+     */
+    public CircuitBreakerRegistry getCircuitBreakers() {
+        return circuitBreakers;
+    }
+
+    /**
+     * Returns the circuit breaker state of a function.
+     *
+     * @param function identifier of the function
+     *
+     * @return the state, {@link CircuitBreaker.State#CLOSED} if circuit breakers are disabled
+     */
+    public CircuitBreaker.State getCircuitState(String function) {
+        CircuitBreakerRegistry circuitBreakers = this.circuitBreakers;
+        if (circuitBreakers == null) {
+            return CircuitBreaker.State.CLOSED;
+        }
+        ResolvedFunction resolved = providerRegistry.resolve(function);
+        return circuitBreakers.getState(resolved != null ? resolved.getTarget() : function);
+    }
+
+    /**
+     * Set the cache of the results of deterministic functions. Invocations of cached functions with the same inputs
+     * return the cached result, and concurrent invocations with the same inputs share one invocation. Only
+     * {@link #invokeFunction(String, Map)} and {@link #invokeFunctionAsync(String, Map)} are cached. By default no
+     * results are cached.
+     *
+     * @param resultCache e.g. {@code new ResultCache(10000, 3600000).withCacheable(f -> f.endsWith("resize"))}, null to
+     *                    disable caching
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Enable or disable request coalescing. If enabled, an invocation with the same function and inputs as an
+     * invocation in flight does not invoke the function again but returns the result of the invocation in flight, which
+     * reduces the load and cost of bursts of identical invocations. Applies to {@link #invokeFunction(String, Map)} and
+     * {@link #invokeFunctionAsync(String, Map)} of functions without result cache. By default requests are not
+     * coalesced.
+     *
+     * @param coalescing true to coalesce identical invocations
+     */
+    public void setCoalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    /**
+     * Returns the number of invocations which received the result of an identical invocation in flight.
+     *
+     * @return the number of coalesced invocations
+     */
+    public long getCoalescedCount() {
+        return inFlight.getSharedCount();
+    }
+
+    /**
+     * Set the codec compressing and offloading the payloads of a provider. The functions of the provider have to
+     * decode the envelope of {@link PayloadCodec}.
+     *
+     * @param provider     name of the provider (aws, ibm, google, azure, alibaba or a custom provider)
+     * @param payloadCodec e.g. {@code new PayloadCodec().withOffload(blobStore, 5 * 1024 * 1024)}, null to pass the
+     *                     payloads unchanged
+     */
+    public void setPayloadCodec(String provider, PayloadCodec payloadCodec) {
+        if (payloadCodec == null) {
+            payloadCodecs.remove(provider);
+        } else {
+            payloadCodecs.put(provider, payloadCodec);
+        }
+    }
+
+    /**
+     * Invoke AWS Lambda functions with invocation type Event: Lambda acknowledges each invocation immediately and the
+     * functions report their results over the channel, so long running functions do not hold a connection. The
+     * functions have to report to the location passed in their callback inputs.
+     *
+     * @param completionChannel e.g. a {@link jFaaS.completion.PollingCompletionChannel}, null to wait for the
+     *                          responses of the functions
+     */
+    public void setCompletionChannel(CompletionChannel completionChannel) {
+        if (lambdaProvider == null) {
+            LOGGER.log(Level.WARNING, "No AWS credentials configured, the completion channel is not used.");
+            return;
+        }
+        lambdaProvider.setCompletionChannel(completionChannel);
+    }
+
+    /**
+     * Returns the result cache.
+     *
+     * @return the result cache, null if results are not cached
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Add an alias, which can be invoked like a function and routes each invocation to one of its deployments. An
+     * alias replaces an alias with the same name.
+     *
+     * @param alias to add
+     */
+    public void addAlias(FunctionAlias alias) {
+        aliases.put(alias.getName(), alias);
+    }
+
+    /**
+     * Remove an alias.
+     *
+     * @param name of the alias
+     */
+    public void removeAlias(String name) {
+        aliases.remove(name);
+    }
+
+    /**
+     * Returns an alias, e.g. to inspect the latencies of its deployments.
+     *
+     * @param name of the alias
+     *
+     * @return the alias or null
+     */
+    public FunctionAlias getAlias(String name) {
+        return aliases.get(name);
+    }
+
+    /**
+     * Returns the concurrency limiter of a provider.
+     *
+     * @param provider name of the provider
+     *
+     * @return the limiter, null if the concurrency of the provider is not limited
+     */
+    public AdaptiveLimiter getConcurrencyLimiter(String provider) {
+        return limiterOf(provider);
+    }
+
+    /**
+     * Set the timeout and retry policy of all functions without a specific policy. By default invocations are
+     * attempted once without timeout.
+     *
+     * @param policy of all functions, null to disable retries and timeouts
+     */
+    public synchronized void setRetryPolicy(RetryPolicy policy) {
+        if (policy == null) {
+            retryEngine = null;
+        } else if (retryEngine == null) {
+            RetryEngine engine = new RetryEngine(policy);
+            engine.setMetrics(metrics);
+            retryEngine = engine;
+        } else {
+            retryEngine.setDefaultPolicy(policy);
+        }
+    }
+
+    /**
+     * Set the timeout and retry policy of a function.
+     *
+     * @param function identifier of the function
+     * @param policy   of the function, null to apply the policy of all functions
+     */
+    public synchronized void setRetryPolicy(String function, RetryPolicy policy) {
+        if (retryEngine == null) {
+            setRetryPolicy(RetryPolicy.noRetries());
+        }
+        ResolvedFunction resolved = providerRegistry.resolve(function);
+        retryEngine.setPolicy(resolved != null ? resolved.getTarget() : function, policy);
+    }
+
+    /**
+     * Returns the engine applying the retry policies.
+     *
+     * @return the engine, null if no retry policy is set
+     */
+    public RetryEngine getRetryEngine() {
+        return retryEngine;
+    }
+
+    /**
+     * Returns the recorder receiving the metrics of all invocations.
+     *
+     * @return the metrics recorder, {@link NoopMetrics#INSTANCE} if metrics are disabled
+     */
+    public MetricsRecorder getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Set the executor used for asynchronous invocations without an explicit executor.
+     *
+     * @param executor executing asynchronous invocations
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the scheduler of the VM tasks, e.g. to add VMs with their number of slots.
+     *
+     * @return the scheduler
+     */
+    public VMScheduler getVMScheduler() {
+        return vmScheduler;
     }
 
     /**
@@ -187,16 +947,20 @@ public class Gateway implements FaaSInvoker {
      * @return the amount of memory in MB or -1 if the provider is unsupported
      */
     public Integer getAssignedMemory(String function) {
-        if (function.contains("arn:") && awsSecretKey != null && awsAccessKey != null) {
-            Regions tmpRegion = detectRegion(function);
-            if (lambdaInvoker == null || tmpRegion != currentRegion) {
-                currentRegion = tmpRegion;
-                lambdaInvoker = new LambdaInvoker(awsAccessKey, awsSecretKey, awsSessionToken, currentRegion);
-            }
-            return ((LambdaInvoker) lambdaInvoker).getAssignedMemory(function);
+        ResolvedFunction resolved = providerRegistry.resolve(function);
+        if (resolved != null && resolved.getProvider() == lambdaProvider) {
+            return lambdaProvider.getAssignedMemory(resolved);
         }
         // TODO implement for different providers
         LOGGER.log(Level.WARNING, "Getting the assigned memory is currently not supported for your provider.");
         return -1;
     }
+
+    /**
+     * Close all invokers created by the providers of the gateway and release their clients and connections.
+     */
+    @Override
+    public void close() {
+        providerRegistry.close();
+    }
 }
@@ -0,0 +1,463 @@
+package jFaaS.cache;
+
+import jFaaS.utils.PairResult;
+import jFaaS.utils.Serializers;
+import jFaaS.utils.SingleFlight;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache of the results of deterministic functions, keyed by the function identifier and the canonical hash of the
+ * function inputs. Only successful invocations are cached.
+ *
+ * Eviction follows W-TinyLFU: new results enter a small LRU window; a result evicted from the window only replaces
+ * the least recently used result of the main area if its key was accessed more often recently. This keeps popular
+ * results cached during scans of one-off inputs. Results expire after the time to live.
+ *
+ * With a disk tier, each result is also written to a file in a directory, so results survive restarts. Results
+ * missing in memory are read from disk. The number of files is bounded, the least recently used files are deleted.
+ * Concurrent invocations with the same key are executed once.
+ */
+public class ResultCache {
+
+    private final static Logger LOGGER = Logger.getLogger(ResultCache.class.getName());
+    private static final String FILE_SUFFIX = ".result";
+    private static final int DEFAULT_FILES_PER_RESULT = 10;
+
+    private final int maximumSize;
+    private final int windowSize;
+    private final int mainSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Path, Boolean> files = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private final SingleFlight<String, PairResult<String, Long>> loads = new SingleFlight<>(PairResult::copy);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile Path directory;
+    private volatile int maximumFiles;
+    private volatile Predicate<String> cacheable = function -> true;
+
+    /**
+     * Create a cache of all functions without disk tier.
+     *
+     * @param maximumSize number of results kept in memory
+     * @param ttlMillis   time to live of a result
+     */
+    public ResultCache(int maximumSize, long ttlMillis) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("The cache has to hold at least one result");
+        }
+        this.maximumSize = maximumSize;
+        this.windowSize = Math.max(1, maximumSize / 100);
+        this.mainSize = maximumSize - windowSize;
+        this.ttlMillis = ttlMillis;
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * Keep the results in files in the directory as well, which is created if it does not exist. Expired files are
+     * deleted. The directory holds up to ten times as many results as the memory.
+     *
+     * @param directory of the result files
+     *
+     * @return this cache
+     *
+     * @throws IOException if the directory cannot be created
+     */
+    public ResultCache withDiskTier(Path directory) throws IOException {
+        long maximumFiles = (long) maximumSize * DEFAULT_FILES_PER_RESULT;
+        return withDiskTier(directory, (int) Math.min(Integer.MAX_VALUE, maximumFiles));
+    }
+
+    /**
+     * Keep the results in files in the directory as well, which is created if it does not exist. Expired files and
+     * the least recently used files beyond the maximum are deleted.
+     *
+     * @param directory    of the result files
+     * @param maximumFiles number of results kept on disk
+     *
+     * @return this cache
+     *
+     * @throws IOException if the directory cannot be created
+     */
+    public ResultCache withDiskTier(Path directory, int maximumFiles) throws IOException {
+        if (maximumFiles < 1) {
+            throw new IllegalArgumentException("The disk tier has to hold at least one result");
+        }
+        Files.createDirectories(directory);
+        this.maximumFiles = maximumFiles;
+        synchronized (files) {
+            files.clear();
+        }
+        this.directory = directory;
+        loadFiles();
+        return this;
+    }
+
+    /**
+     * Restrict the cache to deterministic functions.
+     *
+     * @param cacheable returning true for the identifiers of cached functions
+     *
+     * @return this cache
+     */
+    public ResultCache withCacheable(Predicate<String> cacheable) {
+        this.cacheable = cacheable;
+        return this;
+    }
+
+    /**
+     * Returns whether the results of the function are cached.
+     *
+     * @param function identifier of the function
+     *
+     * @return true if cached
+     */
+    public boolean isCacheable(String function) {
+        return cacheable.test(function);
+    }
+
+    /**
+     * Returns the cached result or invokes the function. The invocation is shared with concurrent callers with the
+     * same function and inputs.
+     *
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     * @param invocation     invoking the function on a miss
+     *
+     * @return the result
+     *
+     * @throws IOException the failure of the invocation
+     */
+    public PairResult<String, Long> get(String function, Map<String, Object> functionInputs,
+                                        SingleFlight.Call<PairResult<String, Long>> invocation) throws IOException {
+        long start = System.currentTimeMillis();
+        String key = key(function, functionInputs);
+        PairResult<String, Long> cached = lookup(key, start);
+        if (cached != null) {
+            return cached;
+        }
+        return loads.execute(key, () -> store(key, invocation.call()));
+    }
+
+    /**
+     * Returns the cached result or invokes the function asynchronously. The invocation is shared with concurrent
+     * callers with the same function and inputs.
+     *
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     * @param invocation     starting the invocation on a miss
+     *
+     * @return future of the result
+     */
+    public CompletableFuture<PairResult<String, Long>> getAsync(String function, Map<String, Object> functionInputs,
+                                                                Supplier<CompletableFuture<PairResult<String, Long>>> invocation) {
+        long start = System.currentTimeMillis();
+        String key = key(function, functionInputs);
+        PairResult<String, Long> cached = lookup(key, start);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return loads.executeAsync(key, () -> {
+            CompletableFuture<PairResult<String, Long>> running = invocation.get();
+            CompletableFuture<PairResult<String, Long>> stored = running.thenApply(result -> store(key, result));
+            stored.whenComplete((result, failure) -> {
+                if (stored.isCancelled()) {
+                    running.cancel(true);
+                }
+            });
+            return stored;
+        });
+    }
+
+    /**
+     * Remove all results, including the files of the disk tier.
+     */
+    public void invalidateAll() {
+        synchronized (this) {
+            window.clear();
+            main.clear();
+        }
+        synchronized (files) {
+            files.clear();
+        }
+        Path directory = this.directory;
+        if (directory != null) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not clear result cache directory " + directory + ".", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of results in memory.
+     *
+     * @return the number of results
+     */
+    public synchronized int size() {
+        return window.size() + main.size();
+    }
+
+    /**
+     * Returns the number of results found in memory or on disk.
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of results read from disk.
+     *
+     * @return the number of disk hits, included in the hits
+     */
+    public long getDiskHitCount() {
+        return diskHits.get();
+    }
+
+    /**
+     * Returns the number of lookups without cached result.
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the cache key of an invocation.
+     *
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     *
+     * @return the function identifier and the canonical hash of the inputs
+     */
+    public static String key(String function, Map<String, Object> functionInputs) {
+        return function + '#' + Serializers.canonicalHash(functionInputs);
+    }
+
+    private PairResult<String, Long> lookup(String key, long start) {
+        long now = System.currentTimeMillis();
+        Entry entry = lookupInMemory(key, now);
+        if (entry == null && directory != null) {
+            entry = readFile(key, now);
+            if (entry != null) {
+                diskHits.incrementAndGet();
+                storeInMemory(key, entry);
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new PairResult<>(entry.result, System.currentTimeMillis() - start);
+    }
+
+    private PairResult<String, Long> store(String key, PairResult<String, Long> result) {
+        if (result == null || result.getResult() == null) {
+            return result;
+        }
+        long now = System.currentTimeMillis();
+        // saturated, so a time to live of Long.MAX_VALUE means forever instead of already expired
+        long expiresAt = ttlMillis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + ttlMillis;
+        Entry entry = new Entry(result.getResult(), expiresAt);
+        storeInMemory(key, entry);
+        if (directory != null) {
+            writeFile(key, entry);
+        }
+        return result;
+    }
+
+    private synchronized Entry lookupInMemory(String key, long now) {
+        sketch.increment(key);
+        Entry entry = window.get(key);
+        if (entry == null) {
+            entry = main.get(key);
+        }
+        if (entry != null && entry.expiresAt <= now) {
+            window.remove(key);
+            main.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized void storeInMemory(String key, Entry entry) {
+        if (main.containsKey(key)) {
+            main.put(key, entry);
+            return;
+        }
+        window.put(key, entry);
+        if (window.size() <= windowSize) {
+            return;
+        }
+        Iterator<Map.Entry<String, Entry>> windowEntries = window.entrySet().iterator();
+        Map.Entry<String, Entry> candidate = windowEntries.next();
+        windowEntries.remove();
+        if (main.size() < mainSize) {
+            main.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+        if (mainSize == 0) {
+            return;
+        }
+        Map.Entry<String, Entry> victim = main.entrySet().iterator().next();
+        if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())) {
+            main.remove(victim.getKey());
+            main.put(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    private Path file(String key) {
+        return directory.resolve(Serializers.sha256Hex(key.getBytes(StandardCharsets.UTF_8)) + FILE_SUFFIX);
+    }
+
+    private Entry readFile(String key, long now) {
+        Path file = file(key);
+        Entry entry;
+        try (InputStream inputStream = Files.newInputStream(file);
+             DataInputStream input = new DataInputStream(inputStream)) {
+            long expiresAt = input.readLong();
+            byte[] result = new byte[input.readInt()];
+            input.readFully(result);
+            entry = new Entry(new String(result, StandardCharsets.UTF_8), expiresAt);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not read cached result " + file + ".", e);
+            return null;
+        }
+        if (entry.expiresAt <= now) {
+            synchronized (files) {
+                files.remove(file);
+            }
+            deleteFile(file);
+            return null;
+        }
+        useFile(file);
+        return entry;
+    }
+
+    private void writeFile(String key, Entry entry) {
+        Path file = file(key);
+        try {
+            // written to a temporary file and moved, so readers never see a partial result
+            Path temporary = Files.createTempFile(directory, "result", ".tmp");
+            byte[] result = entry.result.getBytes(StandardCharsets.UTF_8);
+            try (OutputStream outputStream = Files.newOutputStream(temporary);
+                 DataOutputStream output = new DataOutputStream(outputStream)) {
+                output.writeLong(entry.expiresAt);
+                output.writeInt(result.length);
+                output.write(result);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not write cached result " + file + ".", e);
+            return;
+        }
+        useFile(file);
+    }
+
+    /**
+     * Mark a result file as most recently used and delete the least recently used files beyond the maximum.
+     *
+     * @param file of a result
+     */
+    private void useFile(Path file) {
+        List<Path> evicted = new ArrayList<>();
+        synchronized (files) {
+            files.put(file, Boolean.TRUE);
+            Iterator<Path> eldest = files.keySet().iterator();
+            while (files.size() > maximumFiles) {
+                evicted.add(eldest.next());
+                eldest.remove();
+            }
+        }
+        for (Path path : evicted) {
+            deleteFile(path);
+        }
+    }
+
+    private static void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not delete cached result " + file + ".", e);
+        }
+    }
+
+    /**
+     * Delete the expired files of the directory and register the others, the least recently written first.
+     */
+    private void loadFiles() throws IOException {
+        long now = System.currentTimeMillis();
+        Map<Path, FileTime> written = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            for (Path file : stream) {
+                long expiresAt;
+                try (InputStream inputStream = Files.newInputStream(file);
+                     DataInputStream input = new DataInputStream(inputStream)) {
+                    expiresAt = input.readLong();
+                } catch (IOException e) {
+                    expiresAt = 0;
+                }
+                if (expiresAt <= now) {
+                    Files.deleteIfExists(file);
+                } else {
+                    written.put(file, Files.getLastModifiedTime(file));
+                }
+            }
+        }
+        List<Path> ordered = new ArrayList<>(written.keySet());
+        ordered.sort(Comparator.comparing(written::get));
+        for (Path file : ordered) {
+            useFile(file);
+        }
+    }
+
+    /**
+     * Cached result with its expiry.
+     */
+    private static class Entry {
+        private final String result;
+        private final long expiresAt;
+
+        private Entry(String result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
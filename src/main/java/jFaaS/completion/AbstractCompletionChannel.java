@@ -0,0 +1,167 @@
+package jFaaS.completion;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import jFaaS.resilience.InvocationTimeoutException;
+import jFaaS.utils.Serializers;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Base of the completion channels, keeping the pending invocations. A timer thread calls {@link #poll()} at a fixed
+ * delay and fails invocations whose result was not reported within the timeout with an
+ * {@link InvocationTimeoutException}.
+ */
+public abstract class AbstractCompletionChannel implements CompletionChannel {
+
+    private final static Logger LOGGER = Logger.getLogger(AbstractCompletionChannel.class.getName());
+
+    private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+    private final long timeoutMillis;
+    private final ScheduledExecutorService timer;
+    private volatile boolean closed;
+
+    /**
+     * Create the channel and start its timer thread.
+     *
+     * @param name          of the timer thread
+     * @param timeoutMillis time to wait for the result of an invocation
+     * @param tickMillis    delay between two polls and timeout checks
+     */
+    protected AbstractCompletionChannel(String name, long timeoutMillis, long tickMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<String> register(String function, String correlationId) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new IOException("Completion channel is closed"));
+            return future;
+        }
+        Pending invocation = new Pending(function, future, System.currentTimeMillis() + timeoutMillis);
+        if (pending.putIfAbsent(correlationId, invocation) != null) {
+            throw new IllegalArgumentException("Invocation " + correlationId + " is already pending");
+        }
+        // cancelled by the caller
+        future.whenComplete((result, failure) -> pending.remove(correlationId, invocation));
+        return future;
+    }
+
+    @Override
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        timer.shutdownNow();
+        Iterator<Map.Entry<String, Pending>> invocations = pending.entrySet().iterator();
+        while (invocations.hasNext()) {
+            Pending invocation = invocations.next().getValue();
+            invocations.remove();
+            invocation.future.completeExceptionally(new IOException("Completion channel was closed"));
+        }
+    }
+
+    /**
+     * Complete a pending invocation with its reported result. Results with an {@value #ERROR} member fail the
+     * invocation.
+     *
+     * @param correlationId of the invocation
+     * @param result        reported json result
+     *
+     * @return false if the invocation was not pending, e.g. because it timed out or was reported twice
+     */
+    protected boolean complete(String correlationId, String result) {
+        Pending invocation = pending.remove(correlationId);
+        if (invocation == null) {
+            return false;
+        }
+        String error = errorOf(result);
+        if (error != null) {
+            invocation.future.completeExceptionally(
+                    new IOException("Invocation of " + invocation.function + " failed: " + error));
+        } else {
+            invocation.future.complete(result);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the correlation ids of the pending invocations.
+     *
+     * @return live view of the ids
+     */
+    protected Set<String> getPendingIds() {
+        return pending.keySet();
+    }
+
+    /**
+     * Called by the timer thread, e.g. to look up the results of the pending invocations. Does nothing by default.
+     */
+    protected void poll() {
+    }
+
+    private void tick() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not poll the results of pending invocations.", e);
+        }
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Pending> entry : pending.entrySet()) {
+            Pending invocation = entry.getValue();
+            if (invocation.deadline <= now && pending.remove(entry.getKey(), invocation)) {
+                invocation.future.completeExceptionally(
+                        new InvocationTimeoutException(invocation.function, timeoutMillis));
+            }
+        }
+    }
+
+    private static String errorOf(String result) {
+        if (result == null || !result.contains(ERROR)) {
+            return null;
+        }
+        try {
+            JsonElement error = Serializers.gson().fromJson(result, JsonObject.class).get(ERROR);
+            return error == null || error.isJsonNull() ? null
+                    : error.isJsonPrimitive() ? error.getAsString() : error.toString();
+        } catch (JsonParseException | ClassCastException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Invocation waiting for its result.
+     */
+    private static class Pending {
+        private final String function;
+        private final CompletableFuture<String> future;
+        private final long deadline;
+
+        private Pending(String function, CompletableFuture<String> future, long deadline) {
+            this.function = function;
+            this.future = future;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package jFaaS.completion;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jFaaS.utils.InvocationFuture;
+import jFaaS.utils.ResponseReader;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Completion channel with a local HTTP endpoint to which functions POST their result, e.g. for tests with local
+ * functions or functions which can reach this host. The function receives the URL to post to in the input
+ * {@value #CALLBACK_URL}.
+ */
+public class CallbackCompletionChannel extends AbstractCompletionChannel {
+
+    /**
+     * Input of the URL the function posts its result to.
+     */
+    public static final String CALLBACK_URL = "jFaaS.callbackUrl";
+
+    private static final String PATH = "/jfaas/complete/";
+    private static final long TIMEOUT_CHECK_MILLIS = 1000;
+
+    private final HttpServer server;
+    private final String callbackUrl;
+
+    /**
+     * Create the channel listening on a free port of the loopback address.
+     *
+     * @param timeoutMillis time to wait for the result of an invocation
+     *
+     * @throws IOException if the endpoint cannot be started
+     */
+    public CallbackCompletionChannel(long timeoutMillis) throws IOException {
+        this(new InetSocketAddress("127.0.0.1", 0), null, timeoutMillis);
+    }
+
+    /**
+     * Create the channel.
+     *
+     * @param address       the endpoint listens on
+     * @param publicUrl     base URL under which functions reach the endpoint, e.g. behind a tunnel, null for the
+     *                      listening address
+     * @param timeoutMillis time to wait for the result of an invocation
+     *
+     * @throws IOException if the endpoint cannot be started
+     */
+    public CallbackCompletionChannel(InetSocketAddress address, String publicUrl, long timeoutMillis) throws IOException {
+        super("jFaaS-completion-callback", timeoutMillis, TIMEOUT_CHECK_MILLIS);
+        try {
+            this.server = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            super.close();
+            throw e;
+        }
+        server.createContext(PATH, this::receive);
+        server.setExecutor(InvocationFuture.sharedExecutor());
+        server.start();
+        InetSocketAddress bound = server.getAddress();
+        String base = publicUrl != null ? publicUrl.replaceAll("/+$", "")
+                : "http://" + bound.getHostString() + ":" + bound.getPort();
+        this.callbackUrl = base + PATH;
+    }
+
+    @Override
+    public Map<String, Object> callbackInputs(String correlationId) {
+        Map<String, Object> inputs = new HashMap<>();
+        inputs.put(CORRELATION_ID, correlationId);
+        inputs.put(CALLBACK_URL, callbackUrl + correlationId);
+        return inputs;
+    }
+
+    /**
+     * Returns the port the endpoint listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the endpoint and fails the pending invocations.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        super.close();
+    }
+
+    private void receive(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String correlationId = exchange.getRequestURI().getPath().substring(PATH.length());
+            String result = ResponseReader.readString(exchange.getRequestBody());
+            // 404 tells the function that nobody waits for its result anymore
+            exchange.sendResponseHeaders(complete(correlationId, result) ? 204 : 404, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+}
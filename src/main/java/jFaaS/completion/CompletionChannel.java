@@ -0,0 +1,55 @@
+package jFaaS.completion;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Channel over which functions invoked asynchronously (e.g. AWS Lambda with invocation type Event) report their
+ * result. Each invocation is identified by a correlation id, which is passed to the function together with the
+ * {@link #callbackInputs(String) callback inputs} telling it where to report.
+ */
+public interface CompletionChannel extends AutoCloseable {
+
+    /**
+     * Input of the correlation id of the invocation.
+     */
+    String CORRELATION_ID = "jFaaS.correlationId";
+
+    /**
+     * Member of a reported result marking a failed invocation, its value is the error message.
+     */
+    String ERROR = "jFaaS.error";
+
+    /**
+     * Wait for the result of an invocation. Has to be called before the function is invoked, so an early result is
+     * not missed.
+     *
+     * @param function      identifier of the invoked function
+     * @param correlationId of the invocation
+     *
+     * @return future of the reported json result, cancelling it stops waiting
+     */
+    CompletableFuture<String> register(String function, String correlationId);
+
+    /**
+     * Returns the inputs added to the function inputs, which tell the function where to report its result.
+     *
+     * @param correlationId of the invocation
+     *
+     * @return the correlation id and the location of the channel
+     */
+    Map<String, Object> callbackInputs(String correlationId);
+
+    /**
+     * Returns the number of invocations waiting for their result.
+     *
+     * @return the number of pending invocations
+     */
+    int getPendingCount();
+
+    /**
+     * Stop waiting, pending invocations fail.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,103 @@
+package jFaaS.completion;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Result store in a local directory, e.g. for tests with local functions or a shared file system. The result of an
+ * invocation is the file named by its correlation id with the suffix {@code .json}.
+ */
+public class LocalResultStore implements ResultStore {
+
+    private static final String FILE_SUFFIX = ".json";
+    private static final Pattern CORRELATION_ID = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final Path directory;
+
+    /**
+     * Create a result store.
+     *
+     * @param directory of the results, created if it does not exist
+     *
+     * @throws IOException if the directory cannot be created
+     */
+    public LocalResultStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Write the result of an invocation, as a local function would.
+     *
+     * @param correlationId of the invocation
+     * @param result        json result
+     *
+     * @throws IOException on failure
+     */
+    public void put(String correlationId, String result) throws IOException {
+        // written to a temporary file and moved, so the poller never reads a partial result
+        Path temporary = Files.createTempFile(directory, "result", ".tmp");
+        Files.write(temporary, result.getBytes(StandardCharsets.UTF_8));
+        Files.move(temporary, file(correlationId), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public String location(String correlationId) {
+        return file(correlationId).toUri().toString();
+    }
+
+    @Override
+    public String fetch(String correlationId) throws IOException {
+        try {
+            return new String(Files.readAllBytes(file(correlationId)), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lists the directory once and only reads the results of the given invocations which exist.
+     */
+    @Override
+    public Map<String, String> fetchAll(Collection<String> correlationIds) throws IOException {
+        Set<String> written = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                written.add(name.substring(0, name.length() - FILE_SUFFIX.length()));
+            }
+        }
+        Map<String, String> results = new HashMap<>();
+        for (String correlationId : correlationIds) {
+            if (written.contains(correlationId)) {
+                String result = fetch(correlationId);
+                if (result != null) {
+                    results.put(correlationId, result);
+                }
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void delete(String correlationId) throws IOException {
+        Files.deleteIfExists(file(correlationId));
+    }
+
+    private Path file(String correlationId) {
+        if (!CORRELATION_ID.matcher(correlationId).matches()) {
+            throw new IllegalArgumentException("Invalid correlation id " + correlationId);
+        }
+        return directory.resolve(correlationId + FILE_SUFFIX);
+    }
+}
@@ -0,0 +1,72 @@
+package jFaaS.completion;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Completion channel polling a {@link ResultStore} for the results of the pending invocations. The function receives
+ * the location of its result in the input {@value #RESULT_LOCATION}. Read results are deleted from the store.
+ */
+public class PollingCompletionChannel extends AbstractCompletionChannel {
+
+    /**
+     * Input of the location the function writes its result to.
+     */
+    public static final String RESULT_LOCATION = "jFaaS.resultLocation";
+
+    private final static Logger LOGGER = Logger.getLogger(PollingCompletionChannel.class.getName());
+
+    private final ResultStore resultStore;
+
+    /**
+     * Create the channel.
+     *
+     * @param resultStore        to poll
+     * @param pollIntervalMillis delay between two polls of all pending invocations
+     * @param timeoutMillis      time to wait for the result of an invocation
+     */
+    public PollingCompletionChannel(ResultStore resultStore, long pollIntervalMillis, long timeoutMillis) {
+        super("jFaaS-completion-poller", timeoutMillis, pollIntervalMillis);
+        this.resultStore = resultStore;
+    }
+
+    @Override
+    public Map<String, Object> callbackInputs(String correlationId) {
+        Map<String, Object> inputs = new HashMap<>();
+        inputs.put(CORRELATION_ID, correlationId);
+        inputs.put(RESULT_LOCATION, resultStore.location(correlationId));
+        return inputs;
+    }
+
+    public ResultStore getResultStore() {
+        return resultStore;
+    }
+
+    @Override
+    protected void poll() {
+        List<String> pending = new ArrayList<>(getPendingIds());
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<String, String> results;
+        try {
+            results = resultStore.fetchAll(pending);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not fetch the results of " + pending.size() + " invocations.", e);
+            return;
+        }
+        for (Map.Entry<String, String> result : results.entrySet()) {
+            complete(result.getKey(), result.getValue());
+            try {
+                resultStore.delete(result.getKey());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not delete the result of invocation " + result.getKey() + ".", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package jFaaS.completion;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Storage to which functions write their result, keyed by the correlation id of the invocation, e.g. an S3 bucket or
+ * a {@link LocalResultStore}. Read by a {@link PollingCompletionChannel}.
+ */
+public interface ResultStore {
+
+    /**
+     * Returns the location the function writes its result to.
+     *
+     * @param correlationId of the invocation
+     *
+     * @return the location, e.g. an object URL
+     */
+    String location(String correlationId);
+
+    /**
+     * Read the result of an invocation.
+     *
+     * @param correlationId of the invocation
+     *
+     * @return the json result, null if it was not written yet
+     *
+     * @throws IOException on failure
+     */
+    String fetch(String correlationId) throws IOException;
+
+    /**
+     * Read the results of several invocations. Stores should override this if they can look up many results at
+     * once, e.g. by listing them.
+     *
+     * @param correlationIds of the invocations
+     *
+     * @return the written results by correlation id
+     *
+     * @throws IOException on failure
+     */
+    default Map<String, String> fetchAll(Collection<String> correlationIds) throws IOException {
+        Map<String, String> results = new HashMap<>();
+        for (String correlationId : correlationIds) {
+            String result = fetch(correlationId);
+            if (result != null) {
+                results.put(correlationId, result);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Delete the result of an invocation once it was read. Unknown ids are ignored.
+     *
+     * @param correlationId of the invocation
+     *
+     * @throws IOException on failure
+     */
+    void delete(String correlationId) throws IOException;
+}
@@ -2,25 +2,34 @@ package jFaaS.invokers;
 
 import com.google.api.client.http.*;
 import com.google.api.client.http.javanet.NetHttpTransport;
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
+import jFaaS.utils.InvocationFuture;
+import jFaaS.utils.InvocationTimings;
+import jFaaS.utils.InvocationTimings.Phase;
 import jFaaS.utils.PairResult;
+import jFaaS.utils.ResponseReader;
+import jFaaS.utils.Serializers;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class AzureInvoker implements FaaSInvoker {
 
+    private final static Logger LOGGER = Logger.getLogger(AzureInvoker.class.getName());
+
     String azureKey;
+    private final HttpTransport transport;
+    private final HttpRequestFactory requestFactory;
 
 
     /**
      * Constructor that creates AzureInvoker object without authentication info
      */
-    public AzureInvoker() { azureKey = null; }
+    public AzureInvoker() { this(null, new NetHttpTransport()); }
 
     /**
      * Constructor that creates AzureInvoker object with access key
@@ -28,7 +37,20 @@ public class AzureInvoker implements FaaSInvoker {
      * @param azureKey A valid host_key that gives access to the azure function app containing the function
      */
     public AzureInvoker(String azureKey) {
+        this(azureKey, new NetHttpTransport());
+    }
+
+    /**
+     * Constructor that creates AzureInvoker object with access key and a custom transport. The transport is shared by
+     * all invocations and must be thread-safe, e.g. a NetHttpTransport or a pooled ApacheHttpTransport.
+     *
+     * @param azureKey  A valid host_key that gives access to the azure function app containing the function, may be null
+     * @param transport HTTP transport used for all invocations
+     */
+    public AzureInvoker(String azureKey, HttpTransport transport) {
         this.azureKey = azureKey;
+        this.transport = transport;
+        this.requestFactory = transport.createRequestFactory();
     }
 
 
@@ -42,41 +64,121 @@ public class AzureInvoker implements FaaSInvoker {
      */
     @Override
     public PairResult<String, Long> invokeFunction(String function, Map<String, Object> functionInputs) throws IOException {
-        GenericUrl genericUrl = new GenericUrl(function);
-        HttpTransport transport = new NetHttpTransport();
-        String jsoninput = new Gson().toJson(functionInputs);
-        HttpRequestFactory factory = transport.createRequestFactory();
-        HttpContent content = new ByteArrayContent("application/json", jsoninput.getBytes(StandardCharsets.UTF_8));
-        StringBuilder responseBuilder = null;
+        return invoke(function, functionInputs, null);
+    }
 
-        HttpRequest request = factory.buildPostRequest(genericUrl, content);
+    /**
+     * Invokes the Microsoft Azure function asynchronously.
+     *
+     * @param function       HttpTrigger of function for HTTPPost request
+     * @param functionInputs inputs of the function to invoke
+     * @param executor       executing the invocation
+     *
+     * @return future of the json result, cancelling it interrupts the request and disconnects the response
+     */
+    @Override
+    public CompletableFuture<PairResult<String, Long>> invokeFunctionAsync(String function, Map<String, Object> functionInputs, Executor executor) {
+        return InvocationFuture.run(executor, future -> invoke(function, functionInputs, future));
+    }
 
-        //Setting HTTP request Timeout to 60 Minutes for Cloud Functions that take more time
-        request.setReadTimeout(3600000);
-        HttpHeaders headers = new HttpHeaders();
-        if(azureKey != null){
-        headers.set("x-functions-key", azureKey);
-        }
-        request.setHeaders(headers);
+    /**
+     * Invokes the Microsoft Azure function and returns the raw response body.
+     *
+     * @param function       HttpTrigger of function for HTTPPost request
+     * @param functionInputs inputs of the function to invoke
+     *
+     * @return response body
+     */
+    @Override
+    public PairResult<byte[], Long> invokeFunctionRaw(String function, Map<String, Object> functionInputs) throws IOException {
+        InvocationTimings timings = new InvocationTimings();
+        HttpRequest request = buildRequest(function, functionInputs);
+        timings.mark(Phase.SERIALIZATION);
+        long start = System.currentTimeMillis();
+        HttpResponse response = request.execute();
+        timings.mark(Phase.SERVER);
+        byte[] body = ResponseReader.readBytes(response.getContent());
+        timings.mark(Phase.RESPONSE_READ);
+        return new PairResult<>(body, System.currentTimeMillis() - start, timings);
+    }
+
+    /**
+     * Invokes the Microsoft Azure function and returns the open response stream.
+     *
+     * @param function       HttpTrigger of function for HTTPPost request
+     * @param functionInputs inputs of the function to invoke
+     *
+     * @return response stream, which has to be closed by the caller
+     */
+    @Override
+    public PairResult<InputStream, Long> invokeFunctionStream(String function, Map<String, Object> functionInputs) throws IOException {
+        InvocationTimings timings = new InvocationTimings();
+        HttpRequest request = buildRequest(function, functionInputs);
+        timings.mark(Phase.SERIALIZATION);
+        long start = System.currentTimeMillis();
+        HttpResponse response = request.execute();
+        timings.mark(Phase.SERVER);
+        return new PairResult<>(response.getContent(), System.currentTimeMillis() - start, timings);
+    }
+
+    private PairResult<String, Long> invoke(String function, Map<String, Object> functionInputs, InvocationFuture<?> future) throws IOException {
+        InvocationTimings timings = new InvocationTimings();
+        HttpRequest request = buildRequest(function, functionInputs);
+        timings.mark(Phase.SERIALIZATION);
 
         long start = System.currentTimeMillis();
         HttpResponse response = request.execute();
         assert response != null;
+        // the transport connects within the request, so the connection time is part of the server phase
+        timings.mark(Phase.SERVER);
+        if (future != null) {
+            future.onAbort(() -> {
+                try {
+                    response.disconnect();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Could not disconnect the response of " + function + ".", e);
+                }
+            });
+        }
 
+        String responseString = "";
         try {
-            BufferedReader in = new BufferedReader(new InputStreamReader(response.getContent()));
-            String inputLine;
-            responseBuilder = new StringBuilder();
-            while ((inputLine = in.readLine()) != null) {
-                responseBuilder.append(inputLine);
-            }
-            in.close();
+            responseString = ResponseReader.readString(response.getContent());
         } catch (Exception e) {
             e.printStackTrace();
         }
+        timings.mark(Phase.RESPONSE_READ);
+
+        ResponseReader.validateJsonObject(responseString);
+        timings.mark(Phase.PARSE);
+        return new PairResult<>(responseString, System.currentTimeMillis() - start, timings);
+    }
 
-        assert responseBuilder != null;
+    private HttpRequest buildRequest(String function, Map<String, Object> functionInputs) throws IOException {
+        GenericUrl genericUrl = new GenericUrl(function);
+        HttpContent content = new ByteArrayContent("application/json", Serializers.toJsonBytes(functionInputs));
+
+        HttpRequest request = requestFactory.buildPostRequest(genericUrl, content);
+
+        //Setting HTTP request Timeout to 60 Minutes for Cloud Functions that take more time
+        request.setReadTimeout(3600000);
+        HttpHeaders headers = new HttpHeaders();
+        if(azureKey != null){
+        headers.set("x-functions-key", azureKey);
+        }
+        request.setHeaders(headers);
+        return request;
+    }
 
-        return new PairResult<>(new Gson().fromJson(responseBuilder.toString(), JsonObject.class).getAsJsonObject().toString(), System.currentTimeMillis() - start);
+    /**
+     * Shuts down the HTTP transport.
+     */
+    @Override
+    public void close() {
+        try {
+            transport.shutdown();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not shut down the HTTP transport.", e);
+        }
     }
 }
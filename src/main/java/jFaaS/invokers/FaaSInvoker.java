@@ -1,14 +1,21 @@
 package jFaaS.invokers;
 
+import jFaaS.metrics.MetricsRecorder;
+import jFaaS.utils.InvocationFuture;
 import jFaaS.utils.PairResult;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * FaaS invoker interface.
  */
-public interface FaaSInvoker {
+public interface FaaSInvoker extends AutoCloseable {
 
     /**
      * Invoke a cloud function.
@@ -16,9 +23,89 @@ public interface FaaSInvoker {
      * @param function       identifier of the function
      * @param functionInputs input parameters
      *
-     * @return PairResult as result with round trip time
+     * @return PairResult as result with round trip time and, if recorded by the invoker, the phase timings
      *
      * @throws IOException on failure
      */
     PairResult<String, Long> invokeFunction(String function, Map<String, Object> functionInputs) throws IOException;
+
+    /**
+     * Invoke a cloud function and return its result as raw bytes, without decoding or validating it.
+     *
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     *
+     * @return PairResult with the UTF-8 encoded result and the round trip time
+     *
+     * @throws IOException on failure
+     */
+    default PairResult<byte[], Long> invokeFunctionRaw(String function, Map<String, Object> functionInputs) throws IOException {
+        PairResult<String, Long> result = invokeFunction(function, functionInputs);
+        if (result == null) {
+            return null;
+        }
+        return new PairResult<>(result.getResult() != null ? result.getResult().getBytes(StandardCharsets.UTF_8) : null,
+                result.getRTT(), result.getTimings());
+    }
+
+    /**
+     * Invoke a cloud function and return its result as stream. Invokers supporting it return the open response
+     * stream, so large results are not buffered in memory. The caller has to close the stream.
+     *
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     *
+     * @return PairResult with the result stream and the time until the response was received
+     *
+     * @throws IOException on failure
+     */
+    default PairResult<InputStream, Long> invokeFunctionStream(String function, Map<String, Object> functionInputs) throws IOException {
+        PairResult<byte[], Long> result = invokeFunctionRaw(function, functionInputs);
+        if (result == null) {
+            return null;
+        }
+        return new PairResult<>(result.getResult() != null ? new ByteArrayInputStream(result.getResult()) : null,
+                result.getRTT(), result.getTimings());
+    }
+
+    /**
+     * Invoke a cloud function asynchronously on the default invocation executor.
+     *
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     *
+     * @return future of the PairResult, cancelling it aborts the invocation
+     */
+    default CompletableFuture<PairResult<String, Long>> invokeFunctionAsync(String function, Map<String, Object> functionInputs) {
+        return invokeFunctionAsync(function, functionInputs, InvocationFuture.sharedExecutor());
+    }
+
+    /**
+     * Invoke a cloud function asynchronously.
+     *
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     * @param executor       executing the invocation
+     *
+     * @return future of the PairResult, cancelling it aborts the invocation
+     */
+    default CompletableFuture<PairResult<String, Long>> invokeFunctionAsync(String function, Map<String, Object> functionInputs, Executor executor) {
+        return InvocationFuture.run(executor, future -> invokeFunction(function, functionInputs));
+    }
+
+    /**
+     * Register the gauges of the invoker, e.g. connection pool statistics, with the metrics recorder.
+     *
+     * @param provider name of the provider the gauges are registered for
+     * @param metrics  receiving the gauges
+     */
+    default void registerMetrics(String provider, MetricsRecorder metrics) {
+    }
+
+    /**
+     * Release the clients and connections held by the invoker.
+     */
+    @Override
+    default void close() {
+    }
 }
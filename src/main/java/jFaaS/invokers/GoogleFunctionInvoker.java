@@ -2,30 +2,49 @@ package jFaaS.invokers;
 
 import com.google.api.client.http.*;
 import com.google.api.client.http.javanet.NetHttpTransport;
-import com.google.auth.http.HttpCredentialsAdapter;
-import com.google.auth.oauth2.IdTokenCredentials;
+import com.google.auth.oauth2.IdToken;
 import com.google.auth.oauth2.ServiceAccountCredentials;
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
+import jFaaS.metrics.MetricsRecorder;
+import jFaaS.utils.InvocationFuture;
+import jFaaS.utils.InvocationTimings;
+import jFaaS.utils.InvocationTimings.Phase;
 import jFaaS.utils.PairResult;
+import jFaaS.utils.ResponseReader;
+import jFaaS.utils.Serializers;
+import jFaaS.utils.TokenCache;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class GoogleFunctionInvoker implements FaaSInvoker {
 
+    private final static Logger LOGGER = Logger.getLogger(GoogleFunctionInvoker.class.getName());
+
+    private static final long ID_TOKEN_REFRESH_BEFORE_EXPIRY_MILLIS = 5 * 60 * 1000;
+    private static final long ID_TOKEN_DEFAULT_LIFETIME_MILLIS = 60 * 60 * 1000;
+
     private String googleToken;
     private String googleServiceAccountKey;
+    private final HttpTransport transport;
+    private final HttpRequestFactory requestFactory;
+    private volatile ServiceAccountCredentials serviceAccountCredentials;
+    private final TokenCache idTokenCache =
+            new TokenCache(this::fetchIdToken, ID_TOKEN_REFRESH_BEFORE_EXPIRY_MILLIS, InvocationFuture.sharedExecutor());
 
     /**
      * Constructor that creates a GoogleFunctionInvoker without authentication info
      */
     public GoogleFunctionInvoker() {
-        googleToken = null;
-        googleServiceAccountKey = null;
+        this(null, null, new NetHttpTransport());
     }
 
 
@@ -36,12 +55,25 @@ public class GoogleFunctionInvoker implements FaaSInvoker {
      * @param type                 Specifies the type of the given authentication information
      */
     public GoogleFunctionInvoker(String googleAuthentication, String type) {
-        if (type.equals("serviceAccount")) {
+        this(googleAuthentication, type, new NetHttpTransport());
+    }
+
+    /**
+     * Constructor that creates a GoogleFunctionInvoker with authentication info and a custom transport. The transport
+     * is shared by all invocations and must be thread-safe, e.g. a NetHttpTransport or a pooled ApacheHttpTransport.
+     *
+     * @param googleAuthentication Either a Google Service account key or a Google Authorization Token, may be null
+     * @param type                 Specifies the type of the given authentication information, may be null
+     * @param transport            HTTP transport used for all invocations
+     */
+    public GoogleFunctionInvoker(String googleAuthentication, String type, HttpTransport transport) {
+        if ("serviceAccount".equals(type)) {
             googleServiceAccountKey = googleAuthentication;
-        } else if (type.equals("token")) {
+        } else if ("token".equals(type)) {
             googleToken = googleAuthentication;
         }
-
+        this.transport = transport;
+        this.requestFactory = transport.createRequestFactory();
     }
 
     /**
@@ -54,71 +86,216 @@ public class GoogleFunctionInvoker implements FaaSInvoker {
      */
     @Override
     public PairResult<String, Long> invokeFunction(String function, Map<String, Object> functionInputs) throws IOException {
-        GenericUrl genericUrl = new GenericUrl(function);
-        HttpTransport transport = new NetHttpTransport();
-        String jsoninput = new Gson().toJson(functionInputs);
-        HttpRequestFactory factory = transport.createRequestFactory();
-        HttpContent content = new ByteArrayContent("application/json", jsoninput.getBytes(StandardCharsets.UTF_8));
-        HttpRequest request = null;
-        HttpResponse response = null;
-        StringBuilder responseBuilder = null;
+        return invoke(function, functionInputs, null);
+    }
 
-        if (googleServiceAccountKey != null) {
-            InputStream serviceAccountStream = new ByteArrayInputStream(googleServiceAccountKey.getBytes(StandardCharsets.UTF_8));
+    /**
+     * Invokes the Google function asynchronously.
+     *
+     * @param function       HttpTrigger of function for HTTPPost request
+     * @param functionInputs inputs of the function to invoke
+     * @param executor       executing the invocation
+     *
+     * @return future of the json result, cancelling it interrupts the request and disconnects the response
+     */
+    @Override
+    public CompletableFuture<PairResult<String, Long>> invokeFunctionAsync(String function, Map<String, Object> functionInputs, Executor executor) {
+        return InvocationFuture.run(executor, future -> invoke(function, functionInputs, future));
+    }
+
+    /**
+     * Invokes the Google function and returns the raw response body.
+     *
+     * @param function       HttpTrigger of function for HTTPPost request
+     * @param functionInputs inputs of the function to invoke
+     *
+     * @return response body
+     */
+    @Override
+    public PairResult<byte[], Long> invokeFunctionRaw(String function, Map<String, Object> functionInputs) throws IOException {
+        InvocationTimings timings = new InvocationTimings();
+        HttpRequest request = buildRequest(function, functionInputs, timings);
+        long start = System.currentTimeMillis();
+        HttpResponse response = send(function, request, timings);
+        byte[] body = ResponseReader.readBytes(response.getContent());
+        timings.mark(Phase.RESPONSE_READ);
+        return new PairResult<>(body, System.currentTimeMillis() - start, timings);
+    }
 
-            ServiceAccountCredentials saCreds = ServiceAccountCredentials.fromStream(serviceAccountStream);
-            saCreds = (ServiceAccountCredentials) saCreds.createScoped(Arrays.asList("https://www.googleapis.com/auth/iam"));
+    /**
+     * Invokes the Google function and returns the open response stream.
+     *
+     * @param function       HttpTrigger of function for HTTPPost request
+     * @param functionInputs inputs of the function to invoke
+     *
+     * @return response stream, which has to be closed by the caller
+     */
+    @Override
+    public PairResult<InputStream, Long> invokeFunctionStream(String function, Map<String, Object> functionInputs) throws IOException {
+        InvocationTimings timings = new InvocationTimings();
+        HttpRequest request = buildRequest(function, functionInputs, timings);
+        long start = System.currentTimeMillis();
+        HttpResponse response = send(function, request, timings);
+        return new PairResult<>(response.getContent(), System.currentTimeMillis() - start, timings);
+    }
+
+    private PairResult<String, Long> invoke(String function, Map<String, Object> functionInputs, InvocationFuture<?> future) throws IOException {
+        InvocationTimings timings = new InvocationTimings();
+        HttpRequest request = buildRequest(function, functionInputs, timings);
+        long start = System.currentTimeMillis();
+        HttpResponse response = send(function, request, timings);
+        if (future != null) {
+            future.onAbort(() -> {
+                try {
+                    response.disconnect();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Could not disconnect the response of " + function + ".", e);
+                }
+            });
+        }
 
-            IdTokenCredentials tokenCredential = IdTokenCredentials.newBuilder()
-                    .setIdTokenProvider(saCreds)
-                    .setTargetAudience(function).build();
+        String responseString = "";
+        try {
+            responseString = ResponseReader.readString(response.getContent());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        timings.mark(Phase.RESPONSE_READ);
 
+        try {
+            ResponseReader.validateJsonObject(responseString);
+            timings.mark(Phase.PARSE);
+            return new PairResult<>(responseString, System.currentTimeMillis() - start, timings);
+        } catch (JsonSyntaxException e) {
+            timings.mark(Phase.PARSE);
+            return new PairResult<>("{\"error\":\"An error occured during parsing.\"}", System.currentTimeMillis() - start, timings);
+        }
 
-            HttpCredentialsAdapter adapter = new HttpCredentialsAdapter(tokenCredential);
-            factory = transport.createRequestFactory(adapter);
-            request = factory.buildPostRequest(genericUrl, content);
+    }
+
+    /**
+     * Builds the request including its authorization header. Serialization and token fetch are recorded as phases
+     * but are not part of the round trip time, which starts when the request is sent.
+     */
+    private HttpRequest buildRequest(String function, Map<String, Object> functionInputs, InvocationTimings timings) throws IOException {
+        GenericUrl genericUrl = new GenericUrl(function);
+        HttpContent content = new ByteArrayContent("application/json", Serializers.toJsonBytes(functionInputs));
+        HttpRequest request = null;
+        timings.mark(Phase.SERIALIZATION);
+
+        if (googleServiceAccountKey != null) {
+            request = requestFactory.buildPostRequest(genericUrl, content);
+            request.getHeaders().setAuthorization("Bearer " + idTokenCache.getToken(function));
 
         } else if (googleToken != null) {
 
-            request = factory.buildPostRequest(genericUrl, content);
+            request = requestFactory.buildPostRequest(genericUrl, content);
             String tokenValue = googleToken.substring(googleToken.indexOf('=') + 1, googleToken.indexOf(','));
             request.getHeaders().setAuthorization("Bearer " + tokenValue);
 
         } else {
-            request = factory.buildPostRequest(genericUrl, content);
+            request = requestFactory.buildPostRequest(genericUrl, content);
 
         }
 
         assert request != null;
         //Setting HTTP request Timeout to 60 Minutes for Cloud Functions that take more time
         request.setReadTimeout(3600000);
-        long start = System.currentTimeMillis();
-        response = request.execute();
-        assert response != null;
+        timings.mark(Phase.AUTH);
+        return request;
+    }
 
+    /**
+     * Executes the request. The connection is established by the transport within the request, so its time is part
+     * of the server phase.
+     */
+    private HttpResponse send(String function, HttpRequest request, InvocationTimings timings) throws IOException {
+        HttpResponse response;
         try {
-            BufferedReader in = new BufferedReader(new InputStreamReader(response.getContent()));
-            String inputLine;
-            responseBuilder = new StringBuilder();
-            while ((inputLine = in.readLine()) != null) {
-                responseBuilder.append(inputLine);
+            response = request.execute();
+            timings.mark(Phase.SERVER);
+        } catch (HttpResponseException e) {
+            if (e.getStatusCode() == HttpStatusCodes.STATUS_CODE_UNAUTHORIZED && googleServiceAccountKey != null) {
+                // do not reuse a token the function rejected
+                idTokenCache.invalidate(function);
             }
-            in.close();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
-        assert responseBuilder != null;
-//        return new Gson().fromJson(responseBuilder.toString(), JsonObject.class).getAsJsonObject();
-        try {
-            return new PairResult<>(new Gson().fromJson(responseBuilder.toString(), JsonObject.class).getAsJsonObject().toString(), System.currentTimeMillis() - start);
-        } catch (JsonSyntaxException e) {
-            return new PairResult<>("{\"error\":\"An error occured during parsing.\"}", System.currentTimeMillis() - start);
+            throw e;
         }
+        assert response != null;
+        return response;
+    }
 
+    /**
+     * Fetches a new ID token for the function from the Google token endpoint.
+     *
+     * @param targetAudience the URL of the function
+     *
+     * @return the ID token
+     *
+     * @throws IOException if the service account key cannot be parsed or the token cannot be fetched
+     */
+    private TokenCache.Token fetchIdToken(String targetAudience) throws IOException {
+        IdToken idToken = getServiceAccountCredentials().idTokenWithAudience(targetAudience, Collections.emptyList());
+        Date expirationTime = idToken.getExpirationTime();
+        return new TokenCache.Token(idToken.getTokenValue(), expirationTime != null
+                ? expirationTime.getTime() : System.currentTimeMillis() + ID_TOKEN_DEFAULT_LIFETIME_MILLIS);
     }
 
-}
+    /**
+     * Returns the service account credentials, parsing the service account key on first use.
+     *
+     * @return the scoped service account credentials
+     *
+     * @throws IOException if the service account key cannot be parsed
+     */
+    private ServiceAccountCredentials getServiceAccountCredentials() throws IOException {
+        if (serviceAccountCredentials == null) {
+            synchronized (this) {
+                if (serviceAccountCredentials == null) {
+                    InputStream serviceAccountStream = new ByteArrayInputStream(googleServiceAccountKey.getBytes(StandardCharsets.UTF_8));
+                    ServiceAccountCredentials saCreds = ServiceAccountCredentials.fromStream(serviceAccountStream);
+                    serviceAccountCredentials = (ServiceAccountCredentials) saCreds.createScoped(Arrays.asList("https://www.googleapis.com/auth/iam"));
+                }
+            }
+        }
+        return serviceAccountCredentials;
+    }
 
+    /**
+     * Returns the cache of ID tokens per function URL.
+     *
+     * @return the ID token cache
+     */
+    public TokenCache getIdTokenCache() {
+        return idTokenCache;
+    }
 
+    /**
+     * Registers the hits, misses and hit rate of the ID token cache as gauges.
+     *
+     * @param provider name of the provider the gauges are registered for
+     * @param metrics  receiving the gauges
+     */
+    @Override
+    public void registerMetrics(String provider, MetricsRecorder metrics) {
+        metrics.registerGauge(provider, "token.hits", idTokenCache::getHitCount);
+        metrics.registerGauge(provider, "token.misses", idTokenCache::getMissCount);
+        metrics.registerGauge(provider, "token.hitRate", () -> {
+            long hits = idTokenCache.getHitCount();
+            long total = hits + idTokenCache.getMissCount();
+            return total == 0 ? 0.0 : (double) hits / total;
+        });
+    }
 
+    /**
+     * Shuts down the HTTP transport.
+     */
+    @Override
+    public void close() {
+        try {
+            transport.shutdown();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not shut down the HTTP transport.", e);
+        }
+    }
+}
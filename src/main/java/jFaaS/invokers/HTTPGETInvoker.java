@@ -1,15 +1,19 @@
 package jFaaS.invokers;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
+import jFaaS.utils.InvocationFuture;
+import jFaaS.utils.InvocationTimings;
+import jFaaS.utils.InvocationTimings.Phase;
 import jFaaS.utils.PairResult;
+import jFaaS.utils.ResponseReader;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPInputStream;
 
 
 public class HTTPGETInvoker implements FaaSInvoker {
@@ -25,6 +29,90 @@ public class HTTPGETInvoker implements FaaSInvoker {
      */
     @Override
     public PairResult<String, Long> invokeFunction(String function, Map<String, Object> parameters) throws IOException {
+        return invoke(function, parameters, null);
+    }
+
+    /**
+     * Makes a HTTP GET request asynchronously.
+     *
+     * @return future of the json result, cancelling it disconnects the request
+     */
+    @Override
+    public CompletableFuture<PairResult<String, Long>> invokeFunctionAsync(String function, Map<String, Object> parameters, Executor executor) {
+        return InvocationFuture.run(executor, future -> invoke(function, parameters, future));
+    }
+
+    /**
+     * Makes a HTTP GET request and returns the raw response body.
+     *
+     * @return response body
+     */
+    @Override
+    public PairResult<byte[], Long> invokeFunctionRaw(String function, Map<String, Object> parameters) throws IOException {
+        InvocationTimings timings = new InvocationTimings();
+        long start = System.currentTimeMillis();
+        HttpURLConnection con = openConnection(function, parameters, timings);
+        InputStream inputStream = getInputStream(function, con);
+        timings.mark(Phase.SERVER);
+        byte[] body = ResponseReader.readBytes(inputStream);
+        timings.mark(Phase.RESPONSE_READ);
+        return new PairResult<>(body, System.currentTimeMillis() - start, timings);
+    }
+
+    /**
+     * Makes a HTTP GET request and returns the open response stream.
+     *
+     * @return response stream, which has to be closed by the caller
+     */
+    @Override
+    public PairResult<InputStream, Long> invokeFunctionStream(String function, Map<String, Object> parameters) throws IOException {
+        InvocationTimings timings = new InvocationTimings();
+        long start = System.currentTimeMillis();
+        HttpURLConnection con = openConnection(function, parameters, timings);
+        InputStream inputStream = getInputStream(function, con);
+        timings.mark(Phase.SERVER);
+        return new PairResult<>(inputStream, System.currentTimeMillis() - start, timings);
+    }
+
+    private PairResult<String, Long> invoke(String function, Map<String, Object> parameters, InvocationFuture<?> future) throws IOException {
+        InvocationTimings timings = new InvocationTimings();
+        long start = System.currentTimeMillis();
+        HttpURLConnection con = openConnection(function, parameters, timings);
+        if (future != null) {
+            future.onAbort(con::disconnect);
+        }
+
+        InputStream inputStream = getInputStream(function, con);
+        timings.mark(Phase.SERVER);
+        String response = ResponseReader.readString(inputStream);
+        timings.mark(Phase.RESPONSE_READ);
+        ResponseReader.validateJsonObject(response);
+        timings.mark(Phase.PARSE);
+        return new PairResult<>(response, System.currentTimeMillis() - start, timings);
+
+    }
+
+    /**
+     * Sends the request and returns the decompressed response stream, throwing an HttpStatusException on an error
+     * status.
+     */
+    private static InputStream getInputStream(String function, HttpURLConnection con) throws IOException {
+        int statusCode = con.getResponseCode();
+        boolean gzip = "gzip".equalsIgnoreCase(con.getContentEncoding());
+        if (statusCode >= 400) {
+            InputStream errorStream = con.getErrorStream();
+            if (errorStream != null && gzip) {
+                errorStream = new GZIPInputStream(errorStream);
+            }
+            throw new HttpStatusException(function, statusCode, errorStream != null ? ResponseReader.readString(errorStream) : null);
+        }
+        return gzip ? new GZIPInputStream(con.getInputStream()) : con.getInputStream();
+    }
+
+    /**
+     * Builds the URL with the parameters and connects to the function, without sending the request yet.
+     */
+    private HttpURLConnection openConnection(String function, Map<String, Object> parameters, InvocationTimings timings) throws IOException {
         String url = function.contains("?") ? function + "&" : function + "?";
         StringBuilder urlBuilder = new StringBuilder(url);
         boolean firstValue = true;
@@ -37,20 +125,14 @@ public class HTTPGETInvoker implements FaaSInvoker {
             }
         }
 
-        long start = System.currentTimeMillis();
         URL obj = new URL(urlBuilder.toString());
         HttpURLConnection con = (HttpURLConnection) obj.openConnection();
         con.setRequestMethod("GET");
         con.setRequestProperty("User-Agent", "Mozilla/5.0");
-
-        BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-        String inputLine;
-        StringBuilder response = new StringBuilder();
-        while ((inputLine = in.readLine()) != null) {
-            response.append(inputLine);
-        }
-        in.close();
-        return new PairResult<>(new Gson().fromJson(response.toString(), JsonObject.class).getAsJsonObject().toString(), System.currentTimeMillis() - start);
-
+        con.setRequestProperty("Accept-Encoding", "gzip");
+        timings.mark(Phase.SERIALIZATION);
+        con.connect();
+        timings.mark(Phase.CONNECTION);
+        return con;
     }
 }
@@ -0,0 +1,37 @@
+package jFaaS.invokers;
+
+import java.io.IOException;
+
+/**
+ * Thrown by invokers if the function endpoint answers with an error status, e.g. 429 if the provider throttles or 503
+ * if the function is unavailable.
+ */
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final String body;
+
+    /**
+     * Create the exception.
+     *
+     * @param function   which was invoked
+     * @param statusCode HTTP status code of the response
+     * @param body       of the response, may be null
+     */
+    public HttpStatusException(String function, int statusCode, String body) {
+        super("Invocation of " + function + " failed with HTTP status " + statusCode
+                + (body != null && !body.isEmpty() ? ": " + body : ""));
+        this.statusCode = statusCode;
+        this.body = body;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getBody() {
+        return body;
+    }
+}
@@ -1,32 +1,59 @@
 package jFaaS.invokers;
 
 import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.auth.BasicSessionCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.handlers.AsyncHandler;
 import com.amazonaws.regions.Regions;
-import com.amazonaws.services.lambda.AWSLambda;
-import com.amazonaws.services.lambda.AWSLambdaClientBuilder;
+import com.amazonaws.services.lambda.AWSLambdaAsync;
+import com.amazonaws.services.lambda.AWSLambdaAsyncClientBuilder;
 import com.amazonaws.services.lambda.model.GetFunctionRequest;
 import com.amazonaws.services.lambda.model.InvocationType;
 import com.amazonaws.services.lambda.model.InvokeRequest;
 import com.amazonaws.services.lambda.model.InvokeResult;
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
+import jFaaS.completion.CompletionChannel;
+import jFaaS.utils.InvocationFuture;
+import jFaaS.utils.InvocationTimings;
+import jFaaS.utils.InvocationTimings.Phase;
 import jFaaS.utils.PairResult;
+import jFaaS.utils.ResponseReader;
+import jFaaS.utils.Serializers;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * AWS Lambda invoker using AWS SDK.
+ *
+ * With a {@link CompletionChannel} the functions are invoked with invocation type Event: Lambda acknowledges the
+ * invocation immediately and the function reports its result over the channel, so long running functions do not hold
+ * a connection while they run.
  */
 public class LambdaInvoker implements FaaSInvoker {
 
     private String awsSessionToken;
     private String awsAccessKey;
     private String awsSecretKey;
-    private AWSLambda lambda;
+    private AWSLambdaAsync lambda;
+    private volatile CompletionChannel completionChannel;
 
     /**
      * Basic Constructor that creates an LambdaInvoker for a specific region with standard settings.
@@ -36,6 +63,39 @@ public class LambdaInvoker implements FaaSInvoker {
      * @param region       of the cloud function
      */
     public LambdaInvoker(String awsAccessKey, String awsSecretKey, String awsSessionToken, Regions region) {
+        this(awsAccessKey, awsSecretKey, awsSessionToken, region, null);
+    }
+
+    /**
+     * Constructor that creates an LambdaInvoker for a specific region whose asynchronous invocations run on the given
+     * executor service.
+     *
+     * @param awsAccessKey    aws access key
+     * @param awsSecretKey    aws secret key
+     * @param awsSessionToken aws session token, may be null
+     * @param region          of the cloud function
+     * @param executorService executing asynchronous invocations, null for the default of the AWS SDK. The executor
+     *                        stays owned by the caller and is not shut down by {@link #close()}.
+     */
+    public LambdaInvoker(String awsAccessKey, String awsSecretKey, String awsSessionToken, Regions region, ExecutorService executorService) {
+        this(awsAccessKey, awsSecretKey, awsSessionToken, region, null, executorService);
+    }
+
+    /**
+     * Constructor that creates an LambdaInvoker sending its requests to a custom endpoint, e.g. a local Lambda
+     * emulator or stub.
+     *
+     * @param awsAccessKey          aws access key
+     * @param awsSecretKey          aws secret key
+     * @param awsSessionToken       aws session token, may be null
+     * @param endpointConfiguration endpoint URL and signing region
+     */
+    public LambdaInvoker(String awsAccessKey, String awsSecretKey, String awsSessionToken, AwsClientBuilder.EndpointConfiguration endpointConfiguration) {
+        this(awsAccessKey, awsSecretKey, awsSessionToken, null, endpointConfiguration, null);
+    }
+
+    private LambdaInvoker(String awsAccessKey, String awsSecretKey, String awsSessionToken, Regions region,
+                          AwsClientBuilder.EndpointConfiguration endpointConfiguration, ExecutorService executorService) {
         this.awsAccessKey = awsAccessKey;
         this.awsSecretKey = awsSecretKey;
         this.awsSessionToken = awsSessionToken;
@@ -44,22 +104,18 @@ public class LambdaInvoker implements FaaSInvoker {
         clientConfiguration.setSocketTimeout(900 * 1000);
         clientConfiguration.setMaxConnections(10000);
 
+        AWSCredentialsProvider credentialsProvider;
         if (awsSessionToken != null) {
             BasicSessionCredentials sessionCredentials = new BasicSessionCredentials(
                     awsAccessKey,
                     awsSecretKey,
                     awsSessionToken);
-            lambda = AWSLambdaClientBuilder.standard().withRegion(region)
-                    .withCredentials(new AWSStaticCredentialsProvider(sessionCredentials))
-                    .withClientConfiguration(clientConfiguration)
-                    .build();
+            credentialsProvider = new AWSStaticCredentialsProvider(sessionCredentials);
         } else {
             BasicAWSCredentials awsCreds = new BasicAWSCredentials(awsAccessKey, awsSecretKey);
-            lambda = AWSLambdaClientBuilder.standard().withRegion(region)
-                    .withCredentials(new AWSStaticCredentialsProvider(awsCreds))
-                    .withClientConfiguration(clientConfiguration)
-                    .build();
+            credentialsProvider = new AWSStaticCredentialsProvider(awsCreds);
         }
+        lambda = buildClient(credentialsProvider, region, endpointConfiguration, clientConfiguration, executorService);
     }
 
     /**
@@ -75,10 +131,25 @@ public class LambdaInvoker implements FaaSInvoker {
         this.awsSecretKey = awsSecretKey;
         BasicAWSCredentials awsCreds = new BasicAWSCredentials(awsAccessKey, awsSecretKey);
 
-        lambda = AWSLambdaClientBuilder.standard().withRegion(region)
-                .withCredentials(new AWSStaticCredentialsProvider(awsCreds))
-                .withClientConfiguration(clientConfiguration)
-                .build();
+        lambda = buildClient(new AWSStaticCredentialsProvider(awsCreds), region, null, clientConfiguration, null);
+    }
+
+    private static AWSLambdaAsync buildClient(AWSCredentialsProvider credentials, Regions region,
+                                              AwsClientBuilder.EndpointConfiguration endpointConfiguration,
+                                              ClientConfiguration clientConfiguration, ExecutorService executorService) {
+        AWSLambdaAsyncClientBuilder builder = AWSLambdaAsyncClientBuilder.standard()
+                .withCredentials(credentials)
+                .withClientConfiguration(clientConfiguration);
+        if (endpointConfiguration != null) {
+            builder = builder.withEndpointConfiguration(endpointConfiguration);
+        } else {
+            builder = builder.withRegion(region);
+        }
+        if (executorService != null) {
+            ExecutorService unowned = new UnownedExecutorService(executorService);
+            builder = builder.withExecutorFactory(() -> unowned);
+        }
+        return builder.build();
     }
 
     /**
@@ -91,15 +162,203 @@ public class LambdaInvoker implements FaaSInvoker {
      */
     @Override
     public PairResult<String, Long> invokeFunction(String function, Map<String, Object> functionInputs) throws IOException {
-        String payload = new Gson().toJson(functionInputs);
-        InvokeRequest invokeRequest = new InvokeRequest().withFunctionName(function)
-                .withInvocationType(InvocationType.RequestResponse).withPayload(payload);
+        CompletionChannel channel = completionChannel;
+        if (channel != null) {
+            return await(invokeFunctionEvent(function, functionInputs, channel));
+        }
+        InvocationTimings timings = new InvocationTimings();
+        InvokeRequest invokeRequest = createInvokeRequest(function, functionInputs);
+        timings.mark(Phase.SERIALIZATION);
 
         long start = System.currentTimeMillis();
         InvokeResult invokeResult = lambda.invoke(invokeRequest);
+        timings.mark(Phase.SERVER);
 
         assert invokeResult != null;
-        return new PairResult<>(new Gson().fromJson(new String(invokeResult.getPayload().array()), JsonObject.class).toString(), System.currentTimeMillis() - start);
+        return toPairResult(invokeResult, start, timings);
+    }
+
+    /**
+     * Invokes the lambda function with the asynchronous AWS SDK client. The request is executed on the executor of
+     * the client, the given executor is not used.
+     *
+     * @param function       function name or ARN
+     * @param functionInputs inputs of the function to invoke
+     * @param executor       ignored, see the constructors for configuring the executor
+     *
+     * @return future of the json result, cancelling it aborts the request
+     */
+    @Override
+    public CompletableFuture<PairResult<String, Long>> invokeFunctionAsync(String function, Map<String, Object> functionInputs, Executor executor) {
+        CompletionChannel channel = completionChannel;
+        if (channel != null) {
+            return invokeFunctionEvent(function, functionInputs, channel);
+        }
+        InvocationFuture<PairResult<String, Long>> future = new InvocationFuture<>();
+        InvocationTimings timings = new InvocationTimings();
+        InvokeRequest invokeRequest = createInvokeRequest(function, functionInputs);
+        timings.mark(Phase.SERIALIZATION);
+
+        long start = System.currentTimeMillis();
+        Future<InvokeResult> request = lambda.invokeAsync(invokeRequest, new AsyncHandler<InvokeRequest, InvokeResult>() {
+            @Override
+            public void onError(Exception exception) {
+                future.completeExceptionally(exception);
+            }
+
+            @Override
+            public void onSuccess(InvokeRequest invokeRequest, InvokeResult invokeResult) {
+                try {
+                    timings.mark(Phase.SERVER);
+                    future.complete(toPairResult(invokeResult, start, timings));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        future.onAbort(() -> request.cancel(true));
+        return future;
+    }
+
+    /**
+     * Invokes the lambda function with invocation type Event. The function receives the correlation id and the
+     * callback inputs of the channel in addition to its inputs, and has to report its result over the channel. The
+     * payload of Event invocations is limited to 256 KB.
+     *
+     * @param function       function name or ARN
+     * @param functionInputs inputs of the function to invoke, may be null
+     * @param channel        over which the function reports its result
+     *
+     * @return future of the reported json result, cancelling it stops waiting but does not stop the function
+     */
+    public CompletableFuture<PairResult<String, Long>> invokeFunctionEvent(String function, Map<String, Object> functionInputs,
+                                                                           CompletionChannel channel) {
+        InvocationFuture<PairResult<String, Long>> future = new InvocationFuture<>();
+        InvocationTimings timings = new InvocationTimings();
+        String correlationId = UUID.randomUUID().toString();
+        Map<String, Object> inputs = new HashMap<>();
+        if (functionInputs != null) {
+            inputs.putAll(functionInputs);
+        }
+        inputs.putAll(channel.callbackInputs(correlationId));
+        InvokeRequest invokeRequest = createInvokeRequest(function, inputs, InvocationType.Event);
+        timings.mark(Phase.SERIALIZATION);
+
+        long start = System.currentTimeMillis();
+        // registered before invoking, so a fast function cannot report before anybody waits
+        CompletableFuture<String> completion = channel.register(function, correlationId);
+        Future<InvokeResult> request = lambda.invokeAsync(invokeRequest, new AsyncHandler<InvokeRequest, InvokeResult>() {
+            @Override
+            public void onError(Exception exception) {
+                future.completeExceptionally(exception);
+                completion.cancel(false);
+            }
+
+            @Override
+            public void onSuccess(InvokeRequest invokeRequest, InvokeResult invokeResult) {
+                // acknowledged, the function runs from now on and reports over the channel
+            }
+        });
+        completion.whenComplete((result, failure) -> {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+                return;
+            }
+            // the acknowledgement and the execution of the function
+            timings.mark(Phase.SERVER);
+            try {
+                ResponseReader.validateJsonObject(result);
+                timings.mark(Phase.PARSE);
+                future.complete(new PairResult<>(result, System.currentTimeMillis() - start, timings));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        future.onAbort(() -> {
+            request.cancel(true);
+            completion.cancel(false);
+        });
+        return future;
+    }
+
+    /**
+     * Invoke the functions with invocation type Event, see {@link #invokeFunctionEvent(String, Map,
+     * CompletionChannel)}. Raw and stream invocations still wait for the response.
+     *
+     * @param completionChannel over which the functions report their results, null for RequestResponse invocations
+     */
+    public void setCompletionChannel(CompletionChannel completionChannel) {
+        this.completionChannel = completionChannel;
+    }
+
+    public CompletionChannel getCompletionChannel() {
+        return completionChannel;
+    }
+
+    private InvokeRequest createInvokeRequest(String function, Map<String, Object> functionInputs) {
+        return createInvokeRequest(function, functionInputs, InvocationType.RequestResponse);
+    }
+
+    private static InvokeRequest createInvokeRequest(String function, Map<String, Object> functionInputs, InvocationType invocationType) {
+        return new InvokeRequest().withFunctionName(function)
+                .withInvocationType(invocationType)
+                .withPayload(ByteBuffer.wrap(Serializers.toJsonBytes(functionInputs)));
+    }
+
+    private static PairResult<String, Long> await(CompletableFuture<PairResult<String, Long>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the function", e);
+        } catch (CancellationException e) {
+            throw new IOException("Invocation was cancelled", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Invokes the lambda function and returns the raw payload.
+     *
+     * @param function       function name or ARN
+     * @param functionInputs inputs of the function to invoke
+     *
+     * @return payload of the response
+     */
+    @Override
+    public PairResult<byte[], Long> invokeFunctionRaw(String function, Map<String, Object> functionInputs) throws IOException {
+        InvocationTimings timings = new InvocationTimings();
+        InvokeRequest invokeRequest = createInvokeRequest(function, functionInputs);
+        timings.mark(Phase.SERIALIZATION);
+
+        long start = System.currentTimeMillis();
+        InvokeResult invokeResult = lambda.invoke(invokeRequest);
+        timings.mark(Phase.SERVER);
+        byte[] payload = ResponseReader.toBytes(invokeResult.getPayload());
+        timings.mark(Phase.RESPONSE_READ);
+        return new PairResult<>(payload, System.currentTimeMillis() - start, timings);
+    }
+
+    /**
+     * The AWS SDK signs the request, connects and reads the payload within the call, so these are part of the server
+     * phase. Copying the payload out of its buffer is the response read phase.
+     */
+    private PairResult<String, Long> toPairResult(InvokeResult invokeResult, long start, InvocationTimings timings) {
+        byte[] bytes = ResponseReader.toBytes(invokeResult.getPayload());
+        timings.mark(Phase.RESPONSE_READ);
+        String payload = new String(bytes, StandardCharsets.UTF_8);
+        ResponseReader.validateJsonObject(payload);
+        timings.mark(Phase.PARSE);
+        return new PairResult<>(payload, System.currentTimeMillis() - start, timings);
     }
 
     /**
@@ -113,4 +372,59 @@ public class LambdaInvoker implements FaaSInvoker {
         return lambda.getFunction(new GetFunctionRequest().withFunctionName(function)).getConfiguration().getMemorySize();
     }
 
+    /**
+     * Shuts down the AWS Lambda client and its connection pool.
+     */
+    @Override
+    public void close() {
+        lambda.shutdown();
+    }
+
+    /**
+     * View of a caller-supplied executor service handed to the AWS client. Shutting down the client only shuts down
+     * this view, the executor service itself keeps running its tasks.
+     */
+    private static class UnownedExecutorService extends AbstractExecutorService {
+
+        private final ExecutorService executorService;
+        private volatile boolean shutdown;
+
+        UnownedExecutorService(ExecutorService executorService) {
+            this.executorService = executorService;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (shutdown) {
+                throw new RejectedExecutionException("The Lambda client is shut down.");
+            }
+            executorService.execute(command);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return shutdown;
+        }
+    }
 }
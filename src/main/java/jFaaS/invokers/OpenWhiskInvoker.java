@@ -1,34 +1,65 @@
 package jFaaS.invokers;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
+import jFaaS.metrics.MetricsRecorder;
+import jFaaS.utils.InvocationFuture;
+import jFaaS.utils.InvocationTimings;
+import jFaaS.utils.InvocationTimings.Phase;
 import jFaaS.utils.PairResult;
-import org.apache.commons.io.IOUtils;
+import jFaaS.utils.ResponseReader;
+import jFaaS.utils.Serializers;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 public class OpenWhiskInvoker implements FaaSInvoker {
 
+    private static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 200;
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 100;
+    private static final long DEFAULT_KEEP_ALIVE_MILLIS = 30 * 1000;
+    private static final long DEFAULT_MAX_IDLE_MILLIS = 60 * 1000;
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+
+    private static final String TIMINGS_ATTRIBUTE = "jFaaS.timings";
+
     private String key;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
 
     /**
      * Default constructor for openwhisk
@@ -36,7 +67,41 @@ public class OpenWhiskInvoker implements FaaSInvoker {
      * @param key to authenticate
      */
     public OpenWhiskInvoker(String key) {
+        this(key, DEFAULT_MAX_TOTAL_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_KEEP_ALIVE_MILLIS, DEFAULT_MAX_IDLE_MILLIS);
+    }
+
+    /**
+     * Constructor for openwhisk with custom connection pool settings. The invoker keeps one pooled HTTP client, so
+     * connections (and their TLS sessions) are reused across invocations and threads.
+     *
+     * @param key                      to authenticate
+     * @param maxTotalConnections      maximum number of pooled connections
+     * @param maxConnectionsPerRoute   maximum number of pooled connections per host
+     * @param keepAliveMillis          time an idle connection is kept alive if the server does not specify it
+     * @param maxIdleMillis            time after which idle connections are closed by the background reaper
+     */
+    public OpenWhiskInvoker(String key, int maxTotalConnections, int maxConnectionsPerRoute, long keepAliveMillis, long maxIdleMillis) {
         this.key = key;
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", getSSLSocketFactory())
+                .build();
+        connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+        connectionManager.setMaxTotal(maxTotalConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAliveMillis) : keepAliveMillis;
+        };
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .evictExpiredConnections()
+                .evictIdleConnections(maxIdleMillis, TimeUnit.MILLISECONDS)
+                .setRequestExecutor(new TimingRequestExecutor())
+                .build();
     }
 
     /**
@@ -51,6 +116,121 @@ public class OpenWhiskInvoker implements FaaSInvoker {
      */
     @Override
     public PairResult<String, Long> invokeFunction(String function, Map<String, Object> functionInputs) throws IOException {
+        return invoke(function, functionInputs, null);
+    }
+
+    /**
+     * invoke cloud function asynchronously
+     *
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     * @param executor       executing the invocation
+     *
+     * @return future of the json result, cancelling it aborts the HTTP request
+     */
+    @Override
+    public CompletableFuture<PairResult<String, Long>> invokeFunctionAsync(String function, Map<String, Object> functionInputs, Executor executor) {
+        return InvocationFuture.run(executor, future -> invoke(function, functionInputs, future));
+    }
+
+    /**
+     * invoke cloud function and return the raw response body
+     *
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     *
+     * @return response body
+     *
+     * @throws IOException on failure
+     */
+    @Override
+    public PairResult<byte[], Long> invokeFunctionRaw(String function, Map<String, Object> functionInputs) throws IOException {
+        InvocationTimings timings = new InvocationTimings();
+        HttpPost post = createPost(function, functionInputs);
+        timings.mark(Phase.SERIALIZATION);
+
+        long start = System.currentTimeMillis();
+        try (CloseableHttpResponse response = httpClient.execute(post, createContext(timings))) {
+            checkStatus(function, response);
+            HttpEntity entity = response.getEntity();
+            byte[] body = entity != null ? ResponseReader.readBytes(entity.getContent()) : new byte[0];
+            timings.mark(Phase.RESPONSE_READ);
+            return new PairResult<>(body, System.currentTimeMillis() - start, timings);
+        }
+    }
+
+    /**
+     * invoke cloud function and return the open response stream, closing the stream releases the connection
+     *
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     *
+     * @return response stream
+     *
+     * @throws IOException on failure
+     */
+    @Override
+    public PairResult<InputStream, Long> invokeFunctionStream(String function, Map<String, Object> functionInputs) throws IOException {
+        InvocationTimings timings = new InvocationTimings();
+        HttpPost post = createPost(function, functionInputs);
+        timings.mark(Phase.SERIALIZATION);
+
+        long start = System.currentTimeMillis();
+        CloseableHttpResponse response = httpClient.execute(post, createContext(timings));
+        checkStatus(function, response);
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            response.close();
+            return new PairResult<>(new ByteArrayInputStream(new byte[0]), System.currentTimeMillis() - start, timings);
+        }
+        return new PairResult<>(entity.getContent(), System.currentTimeMillis() - start, timings);
+    }
+
+    private PairResult<String, Long> invoke(String function, Map<String, Object> functionInputs, InvocationFuture<?> future) throws IOException {
+        InvocationTimings timings = new InvocationTimings();
+        HttpPost post = createPost(function, functionInputs);
+        if (future != null) {
+            future.onAbort(post::abort);
+        }
+        timings.mark(Phase.SERIALIZATION);
+
+        long start = System.currentTimeMillis();
+        CloseableHttpResponse response = httpClient.execute(post, createContext(timings));
+        checkStatus(function, response);
+
+        try {
+            // reading the content to the end releases the connection back to the pool
+            byte[] body = ResponseReader.readBytes(response.getEntity().getContent());
+            timings.mark(Phase.RESPONSE_READ);
+            String stringResponse = new String(body, StandardCharsets.UTF_8);
+            ResponseReader.validateJsonObject(stringResponse);
+            timings.mark(Phase.PARSE);
+            return new PairResult<>(stringResponse, System.currentTimeMillis() - start, timings);
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            response.close();
+        }
+        return null;
+    }
+
+    /**
+     * Throws if the platform throttled the invocation or is unavailable. Other statuses, e.g. 502 for a failed action,
+     * carry the result of the function and are returned as before.
+     */
+    private static void checkStatus(String function, CloseableHttpResponse response) throws IOException {
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode == 429 || statusCode == 503 || statusCode == 504) {
+            try {
+                HttpEntity entity = response.getEntity();
+                throw new HttpStatusException(function, statusCode, entity != null ? ResponseReader.readString(entity.getContent()) : null);
+            } finally {
+                response.close();
+            }
+        }
+    }
+
+    private HttpPost createPost(String function, Map<String, Object> functionInputs) {
         Map<String, String> header = new HashMap<>();
         header.put("Content-Type", "application/json");
         header.put("Authorization", "Basic " + key);
@@ -58,36 +238,54 @@ public class OpenWhiskInvoker implements FaaSInvoker {
         header.put("Accept-Language", "en-At");
         String functionParameters = "?blocking=true&result=true";
 
-        String body = new Gson().toJson(functionInputs);
         HttpPost post = new HttpPost(function + functionParameters);
-        StringEntity entity;
-        try {
-            entity = new StringEntity(body);
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-            return null;
-        }
-        post.setEntity(entity);
+        post.setEntity(new ByteArrayEntity(Serializers.toJsonBytes(functionInputs)));
         header.forEach(post::addHeader);
+        return post;
+    }
 
-        HttpClient httpClient = getHttpCLientForSSL();
-        HttpResponse response;
+    private static HttpContext createContext(InvocationTimings timings) {
+        HttpContext context = new BasicHttpContext();
+        context.setAttribute(TIMINGS_ATTRIBUTE, timings);
+        return context;
+    }
 
-        long start = System.currentTimeMillis();
-        response = httpClient.execute(post);
+    /**
+     * Returns the statistics of the connection pool.
+     *
+     * @return leased, pending, available and maximum connections
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Registers the statistics of the connection pool as gauges.
+     *
+     * @param provider name of the provider the gauges are registered for
+     * @param metrics  receiving the gauges
+     */
+    @Override
+    public void registerMetrics(String provider, MetricsRecorder metrics) {
+        metrics.registerGauge(provider, "pool.leased", () -> connectionManager.getTotalStats().getLeased());
+        metrics.registerGauge(provider, "pool.pending", () -> connectionManager.getTotalStats().getPending());
+        metrics.registerGauge(provider, "pool.available", () -> connectionManager.getTotalStats().getAvailable());
+        metrics.registerGauge(provider, "pool.max", () -> connectionManager.getTotalStats().getMax());
+    }
 
+    /**
+     * Closes the pooled HTTP client, its connections and the idle connection reaper.
+     */
+    @Override
+    public void close() {
         try {
-            InputStream inputStream = response.getEntity().getContent();
-            String stringResponse = IOUtils.toString(inputStream, StandardCharsets.UTF_8.name());
-            inputStream.close();
-            return new PairResult<>(new Gson().fromJson(stringResponse, JsonObject.class).toString(), System.currentTimeMillis() - start);
-        } catch (Exception e) {
+            httpClient.close();
+        } catch (IOException e) {
             e.printStackTrace();
         }
-        return null;
     }
 
-    private HttpClient getHttpCLientForSSL() {
+    private static SSLConnectionSocketFactory getSSLSocketFactory() {
         TrustManager[] trustAllCerts = new TrustManager[]{new X509TrustManager() {
             @Override
             public java.security.cert.X509Certificate[] getAcceptedIssuers() {
@@ -107,18 +305,33 @@ public class OpenWhiskInvoker implements FaaSInvoker {
         try {
             SSLContext sslContext = SSLContext.getInstance("SSL");
             sslContext.init(null, trustAllCerts, new SecureRandom());
-            SSLConnectionSocketFactory sslfactory = new SSLConnectionSocketFactory(sslContext,
-                    NoopHostnameVerifier.INSTANCE);
-
-            HttpClient httpClient = HttpClients.custom().setSSLSocketFactory(sslfactory)
-                    .setConnectionTimeToLive(10, TimeUnit.SECONDS).build();
-
-            return httpClient;
+            return new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE);
 
         } catch (NoSuchAlgorithmException | KeyManagementException e) {
             e.printStackTrace();
         }
 
-        return HttpClients.createDefault();
+        return SSLConnectionSocketFactory.getSocketFactory();
+    }
+
+    /**
+     * Splits the time of a request into acquiring the connection and waiting for the response headers. The client
+     * calls the executor once the connection is leased and connected, with the timings of the request in its context.
+     */
+    private static class TimingRequestExecutor extends HttpRequestExecutor {
+
+        @Override
+        public HttpResponse execute(HttpRequest request, HttpClientConnection connection, HttpContext context)
+                throws IOException, HttpException {
+            InvocationTimings timings = (InvocationTimings) context.getAttribute(TIMINGS_ATTRIBUTE);
+            if (timings != null) {
+                timings.mark(Phase.CONNECTION);
+            }
+            HttpResponse response = super.execute(request, connection, context);
+            if (timings != null) {
+                timings.mark(Phase.SERVER);
+            }
+            return response;
+        }
     }
 }
@@ -1,56 +1,154 @@
 package jFaaS.invokers;
 
+import VMInvokerResources.ArtifactDeployer;
+import VMInvokerResources.CommandResult;
 import VMInvokerResources.OperatingSystem;
 import VMInvokerResources.SSHClient;
+import VMInvokerResources.SSHSessionPool;
+import VMInvokerResources.TaskCatalogue;
 import VMInvokerResources.TaskInfo;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
-import com.google.gson.JsonObject;
+import VMInvokerResources.VMScheduler;
 import com.jcraft.jsch.Session;
+import jFaaS.utils.InvocationFuture;
+import jFaaS.utils.InvocationTimings;
+import jFaaS.utils.InvocationTimings.Phase;
 import jFaaS.utils.PairResult;
 import org.apache.commons.validator.routines.InetAddressValidator;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 public class VMInvoker implements FaaSInvoker {
 
     private static final String KEY_FILE_PATH = "src/main/resources/keys/private-key.pem";
-    private static final String TASKS_FILE_PATH = "src/main/resources/resourceFiles/Tasks.yaml";
-    private CountDownLatch latch;
+    private final SSHSessionPool sessionPool;
+    private final TaskCatalogue taskCatalogue;
+    private static final String ANY_HOST = "*";
+    private final VMScheduler scheduler;
+    private volatile ArtifactDeployer artifactDeployer;
 
     /**
-     * This method invokes the task
+     * Create a VM invoker with its own SSH session pool, scheduler and the tasks of the default catalogue.
+     */
+    public VMInvoker() {
+        this(new SSHSessionPool());
+    }
+
+    /**
+     * Create a VM invoker reusing the sessions of the pool, which is closed with the invoker.
+     *
+     * @param sessionPool of the SSH sessions to the VMs
+     */
+    public VMInvoker(SSHSessionPool sessionPool) {
+        this(sessionPool, new TaskCatalogue());
+    }
+
+    /**
+     * Create a VM invoker with its own scheduler.
+     *
+     * @param sessionPool   of the SSH sessions to the VMs, closed with the invoker
+     * @param taskCatalogue of the tasks, e.g. {@code new TaskCatalogue(Paths.get("Tasks.yaml"))}
+     */
+    public VMInvoker(SSHSessionPool sessionPool, TaskCatalogue taskCatalogue) {
+        this(sessionPool, taskCatalogue, new VMScheduler());
+    }
+
+    /**
+     * Create a VM invoker.
+     *
+     * @param sessionPool   of the SSH sessions to the VMs, closed with the invoker
+     * @param taskCatalogue of the tasks, e.g. {@code new TaskCatalogue(Paths.get("Tasks.yaml"))}
+     * @param scheduler     dispatching the tasks to the free slots of the VMs, may be shared by several invokers
+     */
+    public VMInvoker(SSHSessionPool sessionPool, TaskCatalogue taskCatalogue, VMScheduler scheduler) {
+        this.sessionPool = sessionPool;
+        this.taskCatalogue = taskCatalogue;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * This method invokes the task and waits for its result
      *
-     * @param function       has the form "IP:VM:OS:TaskID"
+     * @param function       has the form "IP:VM:OS:TaskID", with IP "*" the task runs on the least loaded VM with
+     *                       the operating system
      * @param functionInputs contains the parameters for invoking the task on the machine
      *
-     * @return
+     * @return json with the exitStatus, the captured stdout and stderr of the task and whether they were truncated
+     *
+     * @throws IOException if the task could not be executed
      */
     @Override
-    public PairResult<String, Long> invokeFunction(String function, Map<String, Object> functionInputs) {
-        long start = System.currentTimeMillis();
-        latch = new CountDownLatch(1);
-        ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
+    public PairResult<String, Long> invokeFunction(String function, Map<String, Object> functionInputs) throws IOException {
+        CompletableFuture<PairResult<String, Long>> future = invokeFunctionAsync(function, functionInputs, InvocationFuture.sharedExecutor());
         try {
-            List<TaskInfo> tasksInfo = yamlMapper.readValue(new File(TASKS_FILE_PATH), new TypeReference<List<TaskInfo>>() {});
-            List<String> valuesOfFunction = getValues(function);
-            String task = getTask(valuesOfFunction, tasksInfo);
-            if (task.endsWith(".sh")) {
-                executeScriptOnVM(getPublicIP(valuesOfFunction), getOperatingSystem(valuesOfFunction), task, getParameterString(functionInputs));
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while invoking " + function, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            throw new IOException(cause);
         }
+    }
+
+    /**
+     * This method invokes the task asynchronously. The task waits without blocking a thread until the VM has a free
+     * slot, see {@link VMScheduler}.
+     *
+     * @param function       has the form "IP:VM:OS:TaskID", with IP "*" the task runs on the least loaded VM with
+     *                       the operating system
+     * @param functionInputs contains the parameters for invoking the task on the machine
+     * @param executor       executing the task
+     *
+     * @return future of the result, cancelling it removes a waiting task or disconnects the exec channel of a running
+     * task
+     */
+    @Override
+    public CompletableFuture<PairResult<String, Long>> invokeFunctionAsync(String function, Map<String, Object> functionInputs, Executor executor) {
+        InvocationTimings timings = new InvocationTimings();
+        long start = System.currentTimeMillis();
+        TaskInfo task;
+        String parameterString;
+        String publicIP;
+        OperatingSystem operatingSystem;
         try {
-            latch.await();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            List<String> valuesOfFunction = getValues(function);
+            task = getTask(valuesOfFunction);
+            if (!task.getTaskName().endsWith(".sh")) {
+                throw new IllegalArgumentException("ONLY SHELL SCRIPT TASKS ARE SUPPORTED");
+            }
+            parameterString = getParameterString(functionInputs);
+            publicIP = ANY_HOST.equals(valuesOfFunction.get(0)) ? null : getPublicIP(valuesOfFunction);
+            operatingSystem = getOperatingSystem(valuesOfFunction);
+        } catch (IOException | RuntimeException e) {
+            CompletableFuture<PairResult<String, Long>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
         }
-        return new PairResult<>(new JsonObject().toString(), System.currentTimeMillis() - start);
+        timings.mark(Phase.SERIALIZATION);
+        CompletableFuture<CommandResult> execution = scheduler.submit(publicIP, operatingSystem, executor,
+                (host, future) -> executeScriptOnVM(host, task, parameterString, future, timings));
+        CompletableFuture<PairResult<String, Long>> result = execution.thenApply(commandResult -> {
+            String json = commandResult.toJson().toString();
+            timings.mark(Phase.PARSE);
+            return new PairResult<>(json, System.currentTimeMillis() - start, timings);
+        });
+        result.whenComplete((r, failure) -> {
+            if (result.isCancelled()) {
+                execution.cancel(true);
+            }
+        });
+        return result;
     }
 
     /**
@@ -101,21 +199,21 @@ public class VMInvoker implements FaaSInvoker {
     }
 
     /**
-     * This method checks if the 4th field is a valid task ID and returns the filename of the respective task
+     * This method checks if the 4th field is a valid task ID and returns the respective task
      *
      * @param valuesOfFunction
-     * @param tasksInfo
      *
      * @return
+     *
+     * @throws IOException if the task catalogue cannot be read
      */
-    private String getTask(List<String> valuesOfFunction, List<TaskInfo> tasksInfo) {
+    private TaskInfo getTask(List<String> valuesOfFunction) throws IOException {
         if (valuesOfFunction.get(3).chars().allMatch(Character::isDigit)) {
-            int taskID = Integer.parseInt(valuesOfFunction.get(3));
-            return tasksInfo.stream()
-                    .filter(t -> t.getId() == taskID)
-                    .map(t -> t.getTaskName())
-                    .findAny()
-                    .orElseThrow(() -> new IllegalArgumentException("NO VALID TASK ID"));
+            TaskInfo task = taskCatalogue.getTask(Integer.parseInt(valuesOfFunction.get(3)));
+            if (task == null) {
+                throw new IllegalArgumentException("NO VALID TASK ID");
+            }
+            return task;
         }
         throw new IllegalArgumentException("NO VALID TASK ID AS FOURTH FIELD");
     }
@@ -132,11 +230,11 @@ public class VMInvoker implements FaaSInvoker {
         String parameterString = "";
         if (functionInputs != null && !functionInputs.isEmpty()) {
             Map<Integer, Object> functionInputsSorted = new HashMap<>();
-            for (Map.Entry entry : functionInputs.entrySet()) {
-                functionInputsSorted.put(Integer.valueOf((String) entry.getKey()), entry.getValue());
+            for (Map.Entry<String, Object> entry : functionInputs.entrySet()) {
+                functionInputsSorted.put(Integer.valueOf(entry.getKey()), entry.getValue());
             }
             functionInputsSorted = new TreeMap<>(functionInputsSorted);
-            for (Map.Entry entry : functionInputsSorted.entrySet()) {
+            for (Map.Entry<Integer, Object> entry : functionInputsSorted.entrySet()) {
                 parameterString = parameterString + " " + entry.getValue();
             }
         }
@@ -144,21 +242,68 @@ public class VMInvoker implements FaaSInvoker {
     }
 
     /**
-     * This method executes the shell script on the VM
+     * This method executes the shell script on the VM over a pooled SSH session
      *
-     * @param publicIP
-     * @param operatingSystem
-     * @param parameterString
+     * @param host            the task was dispatched to
      * @param task
+     * @param parameterString
+     * @param future          of the running task
+     * @param timings         of the invocation, waiting for a slot, acquiring the session (including the SSH handshake
+     *                        and authentication of a new session) and deploying the artifacts of the task are part of
+     *                        the connection phase and reading the output is part of the server phase
+     *
+     * @return exit status and output of the script
+     *
+     * @throws IOException if the script could not be executed
      */
-    private void executeScriptOnVM(String publicIP, OperatingSystem operatingSystem, String task, String parameterString) {
-        Session session = SSHClient.createSession(publicIP, 22, operatingSystem.toString().toLowerCase(), KEY_FILE_PATH);
-        if (session != null) {
-            SSHClient.executeCommand("sh " + task + parameterString, publicIP, session);
-            SSHClient.closeSession(publicIP, session);
-            latch.countDown();
+    private CommandResult executeScriptOnVM(VMScheduler.VMHost host, TaskInfo task, String parameterString,
+                                            InvocationFuture<?> future, InvocationTimings timings) throws IOException {
+        String publicIP = host.getPublicIP();
+        Session session = sessionPool.acquire(publicIP, 22, host.getUsername(), KEY_FILE_PATH);
+        try {
+            ArtifactDeployer deployer = artifactDeployer;
+            if (deployer != null) {
+                deployer.deploy(session, task, sessionPool);
+            }
+            timings.mark(Phase.CONNECTION);
+            // only the channel of this task is disconnected, other tasks may share the session
+            CommandResult result = SSHClient.executeCommand("sh " + task.getTaskName() + parameterString, publicIP, session,
+                    null, null, SSHClient.MAX_CAPTURED_BYTES, channel -> future.onAbort(channel::disconnect));
+            timings.mark(Phase.SERVER);
+            return result;
+        } finally {
+            if (session.isConnected()) {
+                sessionPool.release(session);
+            } else {
+                sessionPool.invalidate(session);
+            }
         }
     }
 
+    /**
+     * Deploy the script and meta data files of each task before executing it, uploading only the files the VM does
+     * not hold yet. Without deployer the tasks have to be provisioned on the VMs beforehand.
+     *
+     * @param artifactDeployer deploying the tasks, null to disable deployment
+     */
+    public void setArtifactDeployer(ArtifactDeployer artifactDeployer) {
+        this.artifactDeployer = artifactDeployer;
+    }
 
+    /**
+     * Returns the scheduler of the tasks, e.g. to add VMs with their number of slots.
+     *
+     * @return the scheduler
+     */
+    public VMScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Disconnects the pooled SSH sessions.
+     */
+    @Override
+    public void close() {
+        sessionPool.close();
+    }
 }
@@ -0,0 +1,140 @@
+package jFaaS.metrics;
+
+import jFaaS.utils.InvocationTimings;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Metrics recorder keeping counters, latency histograms and gauges in memory, per provider and per function. Suitable
+ * for tests and for exposing the metrics through a custom endpoint.
+ *
+ * Latencies of the invocation phases are only recorded per provider, to keep the memory per function small.
+ */
+public class InMemoryMetrics implements MetricsRecorder {
+
+    private final Map<String, InvocationStats> providerStats = new ConcurrentHashMap<>();
+    private final Map<String, InvocationStats> functionStats = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+    private final Map<String, Long> unresolved = new ConcurrentHashMap<>();
+
+    @Override
+    public void invocationStarted(String provider, String function) {
+        providerStats(provider).started();
+        functionStats(function).started();
+    }
+
+    @Override
+    public void invocationSucceeded(String provider, String function, long durationNanos, InvocationTimings timings) {
+        providerStats(provider).succeeded(durationNanos, timings);
+        functionStats(function).succeeded(durationNanos, timings);
+    }
+
+    @Override
+    public void invocationFailed(String provider, String function, long durationNanos, Throwable failure) {
+        providerStats(provider).failed(durationNanos, failure);
+        functionStats(function).failed(durationNanos, failure);
+    }
+
+    @Override
+    public void invocationRetried(String provider, String function, int attempt, Throwable cause) {
+        providerStats(provider).retried();
+        functionStats(function).retried();
+    }
+
+    @Override
+    public void functionUnresolved(String function) {
+        unresolved.merge(function, 1L, Long::sum);
+    }
+
+    @Override
+    public void registerGauge(String provider, String name, Supplier<? extends Number> value) {
+        gauges.put(provider + "." + name, value);
+    }
+
+    /**
+     * Returns the stats of a provider.
+     *
+     * @param provider name of the provider
+     *
+     * @return the stats, null if the provider was not invoked
+     */
+    public InvocationStats getProviderStats(String provider) {
+        return providerStats.get(provider);
+    }
+
+    /**
+     * Returns the stats of a function.
+     *
+     * @param function identifier of the function
+     *
+     * @return the stats, null if the function was not invoked
+     */
+    public InvocationStats getFunctionStats(String function) {
+        return functionStats.get(function);
+    }
+
+    /**
+     * Returns the stats of all providers.
+     *
+     * @return unmodifiable view of the stats per provider name
+     */
+    public Map<String, InvocationStats> getProviderStats() {
+        return Collections.unmodifiableMap(providerStats);
+    }
+
+    /**
+     * Returns the stats of all functions.
+     *
+     * @return unmodifiable view of the stats per function
+     */
+    public Map<String, InvocationStats> getFunctionStats() {
+        return Collections.unmodifiableMap(functionStats);
+    }
+
+    /**
+     * Returns the number of invocations per function no provider matched.
+     *
+     * @return unmodifiable view of the unresolved invocations
+     */
+    public Map<String, Long> getUnresolved() {
+        return Collections.unmodifiableMap(unresolved);
+    }
+
+    /**
+     * Sample all gauges.
+     *
+     * @return the current gauge values, keyed by provider and gauge name, e.g. "ibm.pool.leased"
+     */
+    public Map<String, Number> getGauges() {
+        Map<String, Number> values = new TreeMap<>();
+        gauges.forEach((name, gauge) -> {
+            try {
+                values.put(name, gauge.get());
+            } catch (RuntimeException e) {
+                // gauges of closed invokers may fail, they are skipped
+            }
+        });
+        return values;
+    }
+
+    /**
+     * Zero all metrics, keeping the gauges and the number of running invocations.
+     */
+    public void reset() {
+        providerStats.replaceAll((provider, stats) -> stats.reset());
+        functionStats.replaceAll((function, stats) -> stats.reset());
+        unresolved.clear();
+    }
+
+    private InvocationStats providerStats(String provider) {
+        return providerStats.computeIfAbsent(provider, p -> new InvocationStats(true));
+    }
+
+    private InvocationStats functionStats(String function) {
+        return functionStats.computeIfAbsent(function, f -> new InvocationStats(false));
+    }
+}
@@ -0,0 +1,171 @@
+package jFaaS.metrics;
+
+import jFaaS.utils.InvocationTimings;
+import jFaaS.utils.InvocationTimings.Phase;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the invocations of a provider or function, collected by {@link InMemoryMetrics}.
+ */
+public class InvocationStats {
+
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final AtomicLong inFlight;
+    private final Map<String, LongAdder> errorsByType = new ConcurrentHashMap<>();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram[] phaseLatencies;
+
+    /**
+     * Create stats.
+     *
+     * @param recordPhases whether the latencies of the invocation phases are recorded
+     */
+    InvocationStats(boolean recordPhases) {
+        this(recordPhases, new AtomicLong());
+    }
+
+    /**
+     * Create stats continuing the count of running invocations, so invocations running while stats are reset are
+     * still counted down when they complete.
+     *
+     * @param recordPhases whether the latencies of the invocation phases are recorded
+     * @param inFlight     number of running invocations, shared with the previous stats
+     */
+    private InvocationStats(boolean recordPhases, AtomicLong inFlight) {
+        this.inFlight = inFlight;
+        if (recordPhases) {
+            phaseLatencies = new LatencyHistogram[Phase.values().length];
+            for (int i = 0; i < phaseLatencies.length; i++) {
+                phaseLatencies[i] = new LatencyHistogram();
+            }
+        } else {
+            phaseLatencies = null;
+        }
+    }
+
+    /**
+     * Returns empty stats sharing the number of running invocations with these stats.
+     *
+     * @return the reset stats
+     */
+    InvocationStats reset() {
+        return new InvocationStats(phaseLatencies != null, inFlight);
+    }
+
+    void started() {
+        invocations.increment();
+        inFlight.incrementAndGet();
+    }
+
+    void succeeded(long durationNanos, InvocationTimings timings) {
+        inFlight.decrementAndGet();
+        successes.increment();
+        latency.record(durationNanos);
+        if (phaseLatencies != null && timings != null) {
+            for (Phase phase : Phase.values()) {
+                long nanos = timings.getNanos(phase);
+                if (nanos > 0) {
+                    phaseLatencies[phase.ordinal()].record(nanos);
+                }
+            }
+        }
+    }
+
+    void failed(long durationNanos, Throwable failure) {
+        inFlight.decrementAndGet();
+        errors.increment();
+        latency.record(durationNanos);
+        String type = failure != null ? failure.getClass().getSimpleName() : "NoResult";
+        errorsByType.computeIfAbsent(type, t -> new LongAdder()).increment();
+    }
+
+    void retried() {
+        retries.increment();
+    }
+
+    /**
+     * Returns the number of started invocations.
+     *
+     * @return the number of invocations
+     */
+    public long getInvocations() {
+        return invocations.sum();
+    }
+
+    /**
+     * Returns the number of successful invocations.
+     *
+     * @return the number of successes
+     */
+    public long getSuccesses() {
+        return successes.sum();
+    }
+
+    /**
+     * Returns the number of failed invocations.
+     *
+     * @return the number of errors
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Returns the number of failed invocations per simple class name of the failure, "NoResult" if the invoker
+     * returned no result.
+     *
+     * @return snapshot of the errors per type
+     */
+    public Map<String, Long> getErrorsByType() {
+        Map<String, Long> snapshot = new HashMap<>();
+        errorsByType.forEach((type, count) -> snapshot.put(type, count.sum()));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Returns the number of retried attempts.
+     *
+     * @return the number of retries
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * Returns the number of invocations started but not yet completed.
+     *
+     * @return the number of running invocations
+     */
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the histogram of the invocation latencies, of successful and failed invocations.
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the histogram of the latencies of an invocation phase of successful invocations.
+     *
+     * @param phase of the invocation
+     *
+     * @return the latency histogram, null if phases are not recorded for these stats
+     */
+    public LatencyHistogram getPhaseLatency(Phase phase) {
+        return phaseLatencies != null ? phaseLatencies[phase.ordinal()] : null;
+    }
+}
@@ -0,0 +1,150 @@
+package jFaaS.metrics;
+
+import jFaaS.invokers.FaaSInvoker;
+import jFaaS.utils.PairResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Invoker decorator emitting the invocation metrics of the wrapped invoker. The Gateway applies it to the invokers of
+ * all providers, it can be used directly when invoking without the Gateway.
+ */
+public class MeteredInvoker implements FaaSInvoker {
+
+    private final FaaSInvoker invoker;
+    private final String provider;
+    private final MetricsRecorder metrics;
+
+    /**
+     * Create a metered invoker. The gauges of the invoker are registered with the metrics recorder.
+     *
+     * @param invoker  to wrap
+     * @param provider name of the provider the metrics are recorded for
+     * @param metrics  receiving the metrics
+     */
+    public MeteredInvoker(FaaSInvoker invoker, String provider, MetricsRecorder metrics) {
+        this(invoker, provider, metrics, true);
+    }
+
+    /**
+     * Create a metered invoker.
+     *
+     * @param invoker        to wrap
+     * @param provider       name of the provider the metrics are recorded for
+     * @param metrics        receiving the metrics
+     * @param registerGauges whether the gauges of the invoker are registered, false if already done
+     */
+    public MeteredInvoker(FaaSInvoker invoker, String provider, MetricsRecorder metrics, boolean registerGauges) {
+        this.invoker = invoker;
+        this.provider = provider;
+        this.metrics = metrics;
+        if (registerGauges) {
+            invoker.registerMetrics(provider, metrics);
+        }
+    }
+
+    @Override
+    public PairResult<String, Long> invokeFunction(String function, Map<String, Object> functionInputs) throws IOException {
+        metrics.invocationStarted(provider, function);
+        long start = System.nanoTime();
+        try {
+            return record(function, start, invoker.invokeFunction(function, functionInputs));
+        } catch (IOException | RuntimeException e) {
+            metrics.invocationFailed(provider, function, System.nanoTime() - start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public PairResult<byte[], Long> invokeFunctionRaw(String function, Map<String, Object> functionInputs) throws IOException {
+        metrics.invocationStarted(provider, function);
+        long start = System.nanoTime();
+        try {
+            return record(function, start, invoker.invokeFunctionRaw(function, functionInputs));
+        } catch (IOException | RuntimeException e) {
+            metrics.invocationFailed(provider, function, System.nanoTime() - start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Invoke the function and return its result as stream. The latency is recorded when the response is received,
+     * reading the stream is not included.
+     */
+    @Override
+    public PairResult<InputStream, Long> invokeFunctionStream(String function, Map<String, Object> functionInputs) throws IOException {
+        metrics.invocationStarted(provider, function);
+        long start = System.nanoTime();
+        try {
+            return record(function, start, invoker.invokeFunctionStream(function, functionInputs));
+        } catch (IOException | RuntimeException e) {
+            metrics.invocationFailed(provider, function, System.nanoTime() - start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<PairResult<String, Long>> invokeFunctionAsync(String function, Map<String, Object> functionInputs, Executor executor) {
+        metrics.invocationStarted(provider, function);
+        long start = System.nanoTime();
+        CompletableFuture<PairResult<String, Long>> future;
+        try {
+            future = invoker.invokeFunctionAsync(function, functionInputs, executor);
+        } catch (RuntimeException e) {
+            metrics.invocationFailed(provider, function, System.nanoTime() - start, e);
+            throw e;
+        }
+        future.whenComplete((result, failure) -> {
+            if (failure != null) {
+                metrics.invocationFailed(provider, function, System.nanoTime() - start, unwrap(failure));
+            } else {
+                record(function, start, result);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public void registerMetrics(String provider, MetricsRecorder metrics) {
+        invoker.registerMetrics(provider, metrics);
+    }
+
+    /**
+     * Returns the wrapped invoker.
+     *
+     * @return the invoker
+     */
+    public FaaSInvoker getInvoker() {
+        return invoker;
+    }
+
+    /**
+     * Closes the wrapped invoker.
+     */
+    @Override
+    public void close() {
+        invoker.close();
+    }
+
+    private <T> PairResult<T, Long> record(String function, long start, PairResult<T, Long> result) {
+        long duration = System.nanoTime() - start;
+        if (result == null) {
+            metrics.invocationFailed(provider, function, duration, null);
+        } else {
+            metrics.invocationSucceeded(provider, function, duration, result.getTimings());
+        }
+        return result;
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            return failure.getCause();
+        }
+        return failure;
+    }
+}
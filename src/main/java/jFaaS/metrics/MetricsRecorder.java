@@ -0,0 +1,75 @@
+package jFaaS.metrics;
+
+import jFaaS.utils.InvocationTimings;
+
+import java.util.function.Supplier;
+
+/**
+ * Receives the metrics emitted by the Gateway and the invokers. All methods do nothing by default, so implementations
+ * only override what they collect, e.g. to forward metrics to Micrometer or Prometheus.
+ *
+ * Implementations must be thread-safe and should not block, they are called on the invocation path.
+ */
+public interface MetricsRecorder {
+
+    /**
+     * An invocation started.
+     *
+     * @param provider name of the provider, e.g. "aws"
+     * @param function identifier of the function
+     */
+    default void invocationStarted(String provider, String function) {
+    }
+
+    /**
+     * An invocation completed successfully.
+     *
+     * @param provider      name of the provider
+     * @param function      identifier of the function
+     * @param durationNanos duration of the invocation
+     * @param timings       durations of the invocation phases, may be null
+     */
+    default void invocationSucceeded(String provider, String function, long durationNanos, InvocationTimings timings) {
+    }
+
+    /**
+     * An invocation failed.
+     *
+     * @param provider      name of the provider
+     * @param function      identifier of the function
+     * @param durationNanos duration of the invocation
+     * @param failure       cause of the failure, null if the invoker returned no result
+     */
+    default void invocationFailed(String provider, String function, long durationNanos, Throwable failure) {
+    }
+
+    /**
+     * An invocation is retried.
+     *
+     * @param provider name of the provider
+     * @param function identifier of the function
+     * @param attempt  number of the upcoming attempt, starting with 2 for the first retry
+     * @param cause    failure of the previous attempt
+     */
+    default void invocationRetried(String provider, String function, int attempt, Throwable cause) {
+    }
+
+    /**
+     * No provider matched the function.
+     *
+     * @param function identifier of the function
+     */
+    default void functionUnresolved(String function) {
+    }
+
+    /**
+     * Register a gauge sampled when the metrics are read, e.g. connection pool or token cache statistics. A gauge
+     * registered again with the same provider and name replaces the previous one.
+     *
+     * @param provider name of the provider
+     * @param name     of the gauge, e.g. "pool.leased"
+     * @param value    supplying the current value
+     */
+    default void registerGauge(String provider, String name, Supplier<? extends Number> value) {
+    }
+}
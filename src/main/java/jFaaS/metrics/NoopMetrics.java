@@ -0,0 +1,12 @@
+package jFaaS.metrics;
+
+/**
+ * Metrics recorder discarding all metrics. The Gateway skips measuring entirely while it is configured.
+ */
+public final class NoopMetrics implements MetricsRecorder {
+
+    public static final NoopMetrics INSTANCE = new NoopMetrics();
+
+    private NoopMetrics() {
+    }
+}
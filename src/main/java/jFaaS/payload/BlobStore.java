@@ -0,0 +1,76 @@
+package jFaaS.payload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Object storage holding payloads which are too large to be passed to a function directly, e.g. an S3 bucket or a
+ * {@link LocalBlobStore}. Functions receive the reference and read the payload themselves.
+ */
+public interface BlobStore {
+
+    /**
+     * Writes the data of a blob.
+     */
+    @FunctionalInterface
+    interface BlobWriter {
+
+        /**
+         * Write the data to the stream, without closing it.
+         *
+         * @param output of the blob
+         *
+         * @throws IOException on failure
+         */
+        void writeTo(OutputStream output) throws IOException;
+    }
+
+    /**
+     * Store the data.
+     *
+     * @param data to store
+     *
+     * @return reference of the stored data, readable by the functions
+     *
+     * @throws IOException on failure
+     */
+    String put(byte[] data) throws IOException;
+
+    /**
+     * Store the data written by the writer. Stores should stream the data to the storage, so large blobs are not held
+     * in memory; the default implementation buffers the data and passes it to {@link #put(byte[])}.
+     *
+     * @param writer writing the data
+     *
+     * @return reference of the stored data, readable by the functions
+     *
+     * @throws IOException on failure, nothing is stored then
+     */
+    default String put(BlobWriter writer) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        writer.writeTo(data);
+        return put(data.toByteArray());
+    }
+
+    /**
+     * Open stored data.
+     *
+     * @param reference returned by {@link #put(byte[])}
+     *
+     * @return the data stream, which has to be closed by the caller
+     *
+     * @throws IOException on failure, e.g. if the reference is unknown
+     */
+    InputStream get(String reference) throws IOException;
+
+    /**
+     * Delete stored data. Unknown references are ignored.
+     *
+     * @param reference returned by {@link #put(byte[])}
+     *
+     * @throws IOException on failure
+     */
+    void delete(String reference) throws IOException;
+}
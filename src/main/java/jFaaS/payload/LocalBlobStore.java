@@ -0,0 +1,77 @@
+package jFaaS.payload;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * Blob store in a local directory, e.g. for tests with local functions or a shared file system. Blobs are named by a
+ * random UUID and referenced by their file URI.
+ */
+public class LocalBlobStore implements BlobStore {
+
+    private final Path directory;
+
+    /**
+     * Create a blob store.
+     *
+     * @param directory of the blobs, created if it does not exist
+     *
+     * @throws IOException if the directory cannot be created
+     */
+    public LocalBlobStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public String put(byte[] data) throws IOException {
+        return put(output -> output.write(data));
+    }
+
+    @Override
+    public String put(BlobWriter writer) throws IOException {
+        Path file = directory.resolve(UUID.randomUUID().toString());
+        // written to a temporary file and moved, so readers never see a partial blob
+        Path temporary = Files.createTempFile(directory, "blob", ".tmp");
+        try {
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+                writer.writeTo(output);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        return file.toUri().toString();
+    }
+
+    @Override
+    public InputStream get(String reference) throws IOException {
+        return Files.newInputStream(file(reference));
+    }
+
+    @Override
+    public void delete(String reference) throws IOException {
+        Files.deleteIfExists(file(reference));
+    }
+
+    private Path file(String reference) throws IOException {
+        Path file;
+        try {
+            file = Paths.get(URI.create(reference)).toAbsolutePath().normalize();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid blob reference " + reference, e);
+        }
+        if (!file.startsWith(directory)) {
+            throw new IOException("Blob " + reference + " is not stored in " + directory);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,340 @@
+package jFaaS.payload;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import jFaaS.utils.ResponseReader;
+import jFaaS.utils.Serializers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses large function inputs and offloads oversized ones to a {@link BlobStore}.
+ *
+ * Encoded inputs are replaced by an envelope, which the function has to decode:
+ * <pre>
+ * {"jFaaS.payload": {"encoding": "gzip", "data": "&lt;base64 of the gzipped JSON inputs&gt;"}}
+ * {"jFaaS.payload": {"encoding": "gzip", "blob": "&lt;blob store reference&gt;"}}
+ * </pre>
+ * Functions may return their result in the same envelope, which is decoded transparently. Small inputs are passed
+ * unchanged, so functions which do not know the envelope keep working for them.
+ *
+ * Inputs reaching the offload threshold are serialized and gzipped straight into the blob store, so at most the
+ * threshold is buffered in memory. Result blobs are read as stream and deleted once they were decoded.
+ */
+public class PayloadCodec {
+
+    /**
+     * Name of the envelope member.
+     */
+    public static final String ENVELOPE = "jFaaS.payload";
+
+    private final static Logger LOGGER = Logger.getLogger(PayloadCodec.class.getName());
+    private static final String ENVELOPE_PREFIX = "{\"" + ENVELOPE + "\"";
+    private static final String GZIP = "gzip";
+    private static final String IDENTITY = "identity";
+
+    private int compressionThreshold = 64 * 1024;
+    private BlobStore blobStore;
+    private long offloadThreshold = 5 * 1024 * 1024;
+
+    /**
+     * Set the size from which inputs are compressed.
+     *
+     * @param compressionThreshold size of the JSON inputs in bytes
+     *
+     * @return this codec
+     */
+    public PayloadCodec withCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+        return this;
+    }
+
+    /**
+     * Offload inputs to the blob store if their encoded size reaches the threshold, e.g. 5 MB for the 6 MB payload
+     * limit of AWS Lambda.
+     *
+     * @param blobStore        storing the offloaded inputs
+     * @param offloadThreshold size of the encoded inputs in bytes
+     *
+     * @return this codec
+     */
+    public PayloadCodec withOffload(BlobStore blobStore, long offloadThreshold) {
+        this.blobStore = blobStore;
+        this.offloadThreshold = offloadThreshold;
+        return this;
+    }
+
+    public BlobStore getBlobStore() {
+        return blobStore;
+    }
+
+    /**
+     * Encode the function inputs.
+     *
+     * @param functionInputs input parameters
+     *
+     * @return the inputs if they are small, otherwise the envelope
+     *
+     * @throws IOException if the inputs cannot be offloaded
+     */
+    public Map<String, Object> encodeInputs(Map<String, Object> functionInputs) throws IOException {
+        byte[] json;
+        if (blobStore != null) {
+            ThresholdBuffer buffer = new ThresholdBuffer(offloadThreshold);
+            try {
+                Serializers.writeJson(functionInputs, buffer);
+            } catch (ThresholdReachedException e) {
+                return envelope(GZIP, "blob", offload(functionInputs));
+            }
+            json = buffer.toByteArray();
+        } else {
+            json = Serializers.toJsonBytes(functionInputs);
+        }
+        if (json.length < compressionThreshold) {
+            return functionInputs;
+        }
+        byte[] compressed = gzip(json);
+        boolean useCompressed = compressed.length < json.length;
+        byte[] payload = useCompressed ? compressed : json;
+        String encoding = useCompressed ? GZIP : IDENTITY;
+        // base64 grows the payload by a third
+        if (blobStore != null && (payload.length + 2L) / 3 * 4 >= offloadThreshold) {
+            return envelope(encoding, "blob", blobStore.put(payload));
+        }
+        return envelope(encoding, "data", Base64.getEncoder().encodeToString(payload));
+    }
+
+    /**
+     * Delete the blob of encoded inputs, once the invocation completed.
+     *
+     * @param encodedInputs returned by {@link #encodeInputs(Map)}
+     */
+    public void release(Map<String, Object> encodedInputs) {
+        Object envelope = encodedInputs.get(ENVELOPE);
+        if (blobStore == null || !(envelope instanceof Map)) {
+            return;
+        }
+        Object reference = ((Map<?, ?>) envelope).get("blob");
+        if (reference != null) {
+            try {
+                blobStore.delete(reference.toString());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not delete offloaded inputs " + reference + ".", e);
+            }
+        }
+    }
+
+    /**
+     * Decode a result returned in the envelope.
+     *
+     * @param result returned by the function
+     *
+     * @return the decoded result, the result itself if it is not an envelope
+     *
+     * @throws IOException if the result cannot be read from the blob store or decompressed
+     */
+    public String decode(String result) throws IOException {
+        if (!isEnvelope(result)) {
+            return result;
+        }
+        return ResponseReader.readString(openEnvelope(result));
+    }
+
+    /**
+     * Decode a raw result returned in the envelope.
+     *
+     * @param result returned by the function
+     *
+     * @return the decoded result, the result itself if it is not an envelope
+     *
+     * @throws IOException if the result cannot be read from the blob store or decompressed
+     */
+    public byte[] decode(byte[] result) throws IOException {
+        if (result == null || result.length < ENVELOPE_PREFIX.length()
+                || !isEnvelope(new String(result, 0, ENVELOPE_PREFIX.length(), StandardCharsets.UTF_8))) {
+            return result;
+        }
+        return ResponseReader.readBytes(openEnvelope(new String(result, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Decode a stream result returned in the envelope. A result blob is streamed from the blob store, not buffered.
+     *
+     * @param result returned by the function, closed if it is an envelope
+     *
+     * @return the decoded stream, which has to be closed by the caller, the result itself if it is not an envelope
+     *
+     * @throws IOException if the result cannot be read
+     */
+    public InputStream decode(InputStream result) throws IOException {
+        if (result == null) {
+            return null;
+        }
+        PushbackInputStream input = new PushbackInputStream(result, ENVELOPE_PREFIX.length());
+        byte[] prefix = new byte[ENVELOPE_PREFIX.length()];
+        int length = 0;
+        int read;
+        while (length < prefix.length && (read = input.read(prefix, length, prefix.length - length)) != -1) {
+            length += read;
+        }
+        input.unread(prefix, 0, length);
+        if (length < prefix.length || !isEnvelope(new String(prefix, StandardCharsets.UTF_8))) {
+            return input;
+        }
+        return openEnvelope(ResponseReader.readString(input));
+    }
+
+    /**
+     * Returns whether the JSON is an envelope.
+     *
+     * @param json to check
+     *
+     * @return true if it starts with the envelope member
+     */
+    public static boolean isEnvelope(String json) {
+        return json != null && json.startsWith(ENVELOPE_PREFIX);
+    }
+
+    private static Map<String, Object> envelope(String encoding, String member, String value) {
+        Map<String, Object> envelope = new LinkedHashMap<>();
+        envelope.put("encoding", encoding);
+        envelope.put(member, value);
+        return Collections.singletonMap(ENVELOPE, envelope);
+    }
+
+    /**
+     * Serialize and gzip the inputs into a blob without buffering them.
+     */
+    private String offload(Map<String, Object> functionInputs) throws IOException {
+        return blobStore.put(output -> {
+            GZIPOutputStream gzip = new GZIPOutputStream(output, 8192);
+            Serializers.writeJson(functionInputs, gzip);
+            gzip.finish();
+        });
+    }
+
+    /**
+     * Opens the decoded payload of the envelope. A blob is deleted when the returned stream is closed.
+     */
+    private InputStream openEnvelope(String json) throws IOException {
+        JsonObject envelope;
+        try {
+            envelope = Serializers.gson().fromJson(json, JsonObject.class).getAsJsonObject(ENVELOPE);
+        } catch (JsonParseException | ClassCastException e) {
+            throw new IOException("Invalid payload envelope", e);
+        }
+        JsonElement encoding = envelope.get("encoding");
+        JsonElement data = envelope.get("data");
+        JsonElement blob = envelope.get("blob");
+        InputStream payload;
+        if (data != null) {
+            payload = new ByteArrayInputStream(Base64.getDecoder().decode(data.getAsString()));
+        } else if (blob != null && blobStore != null) {
+            payload = new BlobInputStream(blobStore, blob.getAsString());
+        } else {
+            throw new IOException("Payload envelope without data or readable blob");
+        }
+        if (encoding != null && GZIP.equals(encoding.getAsString())) {
+            try {
+                payload = new GZIPInputStream(payload);
+            } catch (IOException e) {
+                payload.close();
+                throw e;
+            }
+        }
+        return payload;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(32, data.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(data);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Stream of a result blob, which deletes the blob when it is closed.
+     */
+    private static class BlobInputStream extends FilterInputStream {
+        private final BlobStore blobStore;
+        private final String reference;
+        private boolean closed;
+
+        private BlobInputStream(BlobStore blobStore, String reference) throws IOException {
+            super(blobStore.get(reference));
+            this.blobStore = blobStore;
+            this.reference = reference;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                try {
+                    blobStore.delete(reference);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Could not delete result blob " + reference + ".", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Buffer of the serialized inputs, failing once they reach the offload threshold.
+     */
+    private static class ThresholdBuffer extends ByteArrayOutputStream {
+        private final long threshold;
+
+        private ThresholdBuffer(long threshold) {
+            this.threshold = threshold;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (count + 1L >= threshold) {
+                throw new ThresholdReachedException();
+            }
+            super.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            if (count + (long) len >= threshold) {
+                throw new ThresholdReachedException();
+            }
+            super.write(b, off, len);
+        }
+    }
+
+    /**
+     * Thrown by the {@link ThresholdBuffer} to stop serializing inputs which are offloaded.
+     */
+    private static class ThresholdReachedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private ThresholdReachedException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package jFaaS.payload;
+
+import jFaaS.invokers.FaaSInvoker;
+import jFaaS.metrics.MetricsRecorder;
+import jFaaS.utils.InvocationTimings.Phase;
+import jFaaS.utils.PairResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Invoker decorator encoding the inputs and decoding the results of the wrapped invoker with a {@link PayloadCodec}.
+ * The time spent encoding and decoding is added to the serialization phase of the timings. Offloaded inputs are
+ * deleted once the invocation completed. Stream results are decoded while they are read.
+ */
+public class PayloadInvoker implements FaaSInvoker {
+
+    private final FaaSInvoker invoker;
+    private final PayloadCodec codec;
+
+    /**
+     * Create a payload invoker.
+     *
+     * @param invoker to wrap
+     * @param codec   encoding the payloads
+     */
+    public PayloadInvoker(FaaSInvoker invoker, PayloadCodec codec) {
+        this.invoker = invoker;
+        this.codec = codec;
+    }
+
+    @Override
+    public PairResult<String, Long> invokeFunction(String function, Map<String, Object> functionInputs) throws IOException {
+        long start = System.nanoTime();
+        Map<String, Object> encoded = codec.encodeInputs(functionInputs);
+        long encodingNanos = System.nanoTime() - start;
+        try {
+            return decode(invoker.invokeFunction(function, encoded), encodingNanos);
+        } finally {
+            codec.release(encoded);
+        }
+    }
+
+    @Override
+    public PairResult<byte[], Long> invokeFunctionRaw(String function, Map<String, Object> functionInputs) throws IOException {
+        long start = System.nanoTime();
+        Map<String, Object> encoded = codec.encodeInputs(functionInputs);
+        long encodingNanos = System.nanoTime() - start;
+        try {
+            PairResult<byte[], Long> result = invoker.invokeFunctionRaw(function, encoded);
+            if (result != null) {
+                long decodingStart = System.nanoTime();
+                result.setResult(codec.decode(result.getResult()));
+                addSerializationTime(result, encodingNanos + System.nanoTime() - decodingStart);
+            }
+            return result;
+        } finally {
+            codec.release(encoded);
+        }
+    }
+
+    @Override
+    public PairResult<InputStream, Long> invokeFunctionStream(String function, Map<String, Object> functionInputs) throws IOException {
+        long start = System.nanoTime();
+        Map<String, Object> encoded = codec.encodeInputs(functionInputs);
+        long encodingNanos = System.nanoTime() - start;
+        try {
+            PairResult<InputStream, Long> result = invoker.invokeFunctionStream(function, encoded);
+            if (result != null) {
+                long decodingStart = System.nanoTime();
+                InputStream stream = result.getResult();
+                try {
+                    result.setResult(codec.decode(stream));
+                } catch (IOException | RuntimeException e) {
+                    stream.close();
+                    throw e;
+                }
+                addSerializationTime(result, encodingNanos + System.nanoTime() - decodingStart);
+            }
+            return result;
+        } finally {
+            codec.release(encoded);
+        }
+    }
+
+    @Override
+    public CompletableFuture<PairResult<String, Long>> invokeFunctionAsync(String function, Map<String, Object> functionInputs, Executor executor) {
+        long start = System.nanoTime();
+        Map<String, Object> encoded;
+        try {
+            encoded = codec.encodeInputs(functionInputs);
+        } catch (IOException e) {
+            CompletableFuture<PairResult<String, Long>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        long encodingNanos = System.nanoTime() - start;
+        CompletableFuture<PairResult<String, Long>> invocation = invoker.invokeFunctionAsync(function, encoded, executor);
+        CompletableFuture<PairResult<String, Long>> result = invocation.thenApply(r -> {
+            try {
+                return decode(r, encodingNanos);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+        result.whenComplete((r, failure) -> {
+            if (result.isCancelled()) {
+                invocation.cancel(true);
+            }
+        });
+        invocation.whenComplete((r, failure) -> codec.release(encoded));
+        return result;
+    }
+
+    @Override
+    public void registerMetrics(String provider, MetricsRecorder metrics) {
+        invoker.registerMetrics(provider, metrics);
+    }
+
+    /**
+     * Returns the codec encoding the payloads.
+     *
+     * @return the codec
+     */
+    public PayloadCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Closes the wrapped invoker.
+     */
+    @Override
+    public void close() {
+        invoker.close();
+    }
+
+    private PairResult<String, Long> decode(PairResult<String, Long> result, long encodingNanos) throws IOException {
+        if (result != null) {
+            long start = System.nanoTime();
+            result.setResult(codec.decode(result.getResult()));
+            addSerializationTime(result, encodingNanos + System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    private static void addSerializationTime(PairResult<?, Long> result, long nanos) {
+        if (result != null && result.getTimings() != null) {
+            result.getTimings().add(Phase.SERIALIZATION, nanos);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package jFaaS.resilience;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Concurrency limit of a provider, adapted with additive increase and multiplicative decrease (AIMD).
+ *
+ * While the limit is used, every successful invocation raises it by one. A throttled invocation, or one much slower
+ * than the average latency, lowers it by the backoff ratio. Invocations above the limit wait in a queue without
+ * blocking a thread, and are shed with a {@link LimitExceededException} once the queue is full.
+ */
+public class AdaptiveLimiter {
+
+    private static final int LATENCY_WARMUP_SAMPLES = 100;
+    private static final double LATENCY_SMOOTHING = 0.05;
+
+    private final Object lock = new Object();
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final int maxQueueSize;
+    private final double latencyTolerance;
+    private double limit;
+    private int inFlight;
+    private double averageLatencyNanos;
+    private long samples;
+    private long shed;
+
+    /**
+     * Create a limiter with the default settings: initial limit 50, between 1 and 1000, backoff ratio 0.9, queue size
+     * 1000 and latency tolerance 3.
+     *
+     * @param name of the limited provider, used in messages
+     */
+    public AdaptiveLimiter(String name) {
+        this(name, 50, 1, 1000, 0.9, 1000, 3);
+    }
+
+    /**
+     * Create a limiter.
+     *
+     * @param name             of the limited provider, used in messages
+     * @param initialLimit     limit before anything was observed
+     * @param minLimit         lower bound of the limit
+     * @param maxLimit         upper bound of the limit
+     * @param backoffRatio     factor applied to the limit on throttling, between 0 and 1
+     * @param maxQueueSize     number of invocations waiting for the limit before invocations are shed
+     * @param latencyTolerance invocations slower than this multiple of the average latency lower the limit, 0 to only
+     *                         react to throttling
+     */
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                           int maxQueueSize, double latencyTolerance) {
+        if (minLimit < 1 || maxLimit < minLimit || backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Invalid limiter settings");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.maxQueueSize = maxQueueSize;
+        this.latencyTolerance = latencyTolerance;
+        this.limit = Math.min(maxLimit, Math.max(minLimit, initialLimit));
+    }
+
+    /**
+     * Acquire a permit, waiting in the queue if the limit is reached. Every acquired permit has to be released with
+     * exactly one of {@link #onSuccess(long)}, {@link #onDropped()} or {@link #onIgnore()}.
+     *
+     * @return future completed when the permit is acquired, failed with a {@link LimitExceededException} if the queue
+     * is full. Cancelling it leaves the queue.
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        synchronized (lock) {
+            if (waiters.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                return CompletableFuture.completedFuture(null);
+            }
+            if (waiters.size() >= maxQueueSize) {
+                shed++;
+                CompletableFuture<Void> rejected = new CompletableFuture<>();
+                rejected.completeExceptionally(new LimitExceededException("Concurrency limit " + (int) limit + " of "
+                        + name + " reached and " + waiters.size() + " invocations queued"));
+                return rejected;
+            }
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            waiter.whenComplete((permit, failure) -> {
+                if (failure != null) {
+                    // cancelled or timed out, it no longer takes a place in the queue
+                    synchronized (lock) {
+                        waiters.remove(waiter);
+                    }
+                }
+            });
+            return waiter;
+        }
+    }
+
+    /**
+     * Acquire a permit, blocking while the limit is reached.
+     *
+     * @throws IOException a {@link LimitExceededException} if the queue is full, or if interrupted
+     */
+    public void acquire() throws IOException {
+        CompletableFuture<Void> permit = acquireAsync();
+        try {
+            permit.get();
+        } catch (InterruptedException e) {
+            if (!permit.cancel(false)) {
+                // the permit was granted concurrently
+                onIgnore();
+            }
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the concurrency limit of " + name, e);
+        } catch (ExecutionException e) {
+            throw (IOException) e.getCause();
+        }
+    }
+
+    /**
+     * Release a permit of a successful invocation.
+     *
+     * @param latencyNanos latency of the invocation
+     */
+    public void onSuccess(long latencyNanos) {
+        synchronized (lock) {
+            boolean slow = latencyTolerance > 0 && samples >= LATENCY_WARMUP_SAMPLES
+                    && latencyNanos > latencyTolerance * averageLatencyNanos;
+            averageLatencyNanos = samples == 0 ? latencyNanos
+                    : averageLatencyNanos + LATENCY_SMOOTHING * (latencyNanos - averageLatencyNanos);
+            samples++;
+            if (slow) {
+                decrease();
+            } else if (inFlight * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            inFlight--;
+        }
+        grant();
+    }
+
+    /**
+     * Release a permit of an invocation the provider throttled.
+     */
+    public void onDropped() {
+        synchronized (lock) {
+            decrease();
+            inFlight--;
+        }
+        grant();
+    }
+
+    /**
+     * Release a permit without adapting the limit, e.g. if the invocation failed for an unrelated reason.
+     */
+    public void onIgnore() {
+        synchronized (lock) {
+            inFlight--;
+        }
+        grant();
+    }
+
+    /**
+     * Returns the current limit.
+     *
+     * @return the number of concurrent invocations allowed
+     */
+    public int getLimit() {
+        synchronized (lock) {
+            return (int) limit;
+        }
+    }
+
+    /**
+     * Returns the number of running invocations.
+     *
+     * @return the number of acquired permits
+     */
+    public int getInFlight() {
+        synchronized (lock) {
+            return inFlight;
+        }
+    }
+
+    /**
+     * Returns the number of invocations waiting for a permit.
+     *
+     * @return the queue length
+     */
+    public int getQueued() {
+        synchronized (lock) {
+            return waiters.size();
+        }
+    }
+
+    /**
+     * Returns the number of shed invocations.
+     *
+     * @return the number of invocations rejected because the queue was full
+     */
+    public long getShedCount() {
+        synchronized (lock) {
+            return shed;
+        }
+    }
+
+    private void decrease() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+
+    private void grant() {
+        while (true) {
+            CompletableFuture<Void> waiter;
+            synchronized (lock) {
+                if (waiters.isEmpty() || inFlight >= (int) limit) {
+                    return;
+                }
+                waiter = waiters.poll();
+                inFlight++;
+            }
+            if (!waiter.complete(null)) {
+                // the waiter was cancelled
+                synchronized (lock) {
+                    inFlight--;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package jFaaS.resilience;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker of a function endpoint.
+ *
+ * A closed breaker records the outcome of the recent calls. Once the failure rate or the slow-call rate reaches its
+ * threshold, the breaker opens and calls fail immediately with a {@link CircuitOpenException} instead of waiting for
+ * the timeouts of an unavailable endpoint. After the open duration, the breaker is half-open and lets a few probe
+ * calls through. Depending on their outcome it closes or opens again.
+ *
+ * Every permitted call has to be completed with exactly one of {@link #onSuccess(long)}, {@link #onError(long,
+ * Throwable)} or {@link #release()}.
+ */
+public class CircuitBreaker {
+
+    private static final byte SUCCESS = 0;
+    private static final byte FAILURE = 1;
+    private static final byte SLOW = 2;
+
+    /**
+     * State of a circuit breaker.
+     */
+    public enum State {
+        /**
+         * Calls are permitted and recorded.
+         */
+        CLOSED,
+        /**
+         * Calls fail immediately.
+         */
+        OPEN,
+        /**
+         * A limited number of probe calls is permitted.
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Listener notified of state transitions, e.g. to reroute invocations away from an unavailable endpoint.
+     */
+    @FunctionalInterface
+    public interface StateListener {
+
+        /**
+         * Called after the breaker changed its state.
+         *
+         * @param endpoint of the breaker
+         * @param from     previous state
+         * @param to       new state
+         */
+        void onStateChange(String endpoint, State from, State to);
+    }
+
+    private final String endpoint;
+    private final CircuitBreakerConfig config;
+    private final StateListener listener;
+    private final byte[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int failures;
+    private int slowCalls;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesPermitted;
+    private int probesCompleted;
+    private int probeFailures;
+    private int probeSlowCalls;
+
+    /**
+     * Create a closed circuit breaker.
+     *
+     * @param endpoint identifier of the endpoint, e.g. the function URL
+     * @param config   of the breaker
+     * @param listener notified of state transitions, may be null
+     */
+    public CircuitBreaker(String endpoint, CircuitBreakerConfig config, StateListener listener) {
+        this.endpoint = endpoint;
+        this.config = config;
+        this.listener = listener;
+        this.window = new byte[config.getWindowSize()];
+    }
+
+    /**
+     * Returns whether a call is permitted. An open breaker becomes half-open once the open duration has passed.
+     *
+     * @return true if the call may proceed
+     */
+    public boolean tryAcquirePermission() {
+        State from;
+        synchronized (this) {
+            if (state == State.CLOSED) {
+                return true;
+            }
+            from = state;
+            if (state == State.OPEN) {
+                if (remainingOpenMillis() > 0) {
+                    return false;
+                }
+                transition(State.HALF_OPEN);
+            }
+            if (probesPermitted >= config.getHalfOpenCalls()) {
+                return false;
+            }
+            probesPermitted++;
+        }
+        notifyListener(from, State.HALF_OPEN);
+        return true;
+    }
+
+    /**
+     * Acquire the permission of a call.
+     *
+     * @throws CircuitOpenException if the call is not permitted
+     */
+    public void acquirePermission() throws CircuitOpenException {
+        if (!tryAcquirePermission()) {
+            throw new CircuitOpenException(endpoint, getRemainingOpenMillis());
+        }
+    }
+
+    /**
+     * Record a successful call, which counts as slow if it took at least the slow-call duration.
+     *
+     * @param durationNanos duration of the call
+     */
+    public void onSuccess(long durationNanos) {
+        record(isSlow(durationNanos) ? SLOW : SUCCESS);
+    }
+
+    /**
+     * Record a failed call. Exceptions which do not count as failures are not recorded.
+     *
+     * @param durationNanos duration of the call
+     * @param failure       of the call
+     */
+    public void onError(long durationNanos, Throwable failure) {
+        if (config.isFailure(failure)) {
+            record(FAILURE);
+        } else {
+            release();
+        }
+    }
+
+    /**
+     * Complete a permitted call without recording it, e.g. if it was cancelled.
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && probesPermitted > probesCompleted) {
+            probesPermitted--;
+        }
+    }
+
+    /**
+     * Close the breaker and forget the recorded calls.
+     */
+    public void reset() {
+        State from;
+        synchronized (this) {
+            from = state;
+            transition(State.CLOSED);
+        }
+        notifyListener(from, State.CLOSED);
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Returns the failure rate of the recorded calls.
+     *
+     * @return percentage of failed calls, -1 if fewer calls than required have been recorded
+     */
+    public synchronized double getFailureRate() {
+        return windowCount < config.getMinimumCalls() ? -1 : failures * 100.0 / windowCount;
+    }
+
+    /**
+     * Returns the slow-call rate of the recorded calls.
+     *
+     * @return percentage of slow calls, -1 if fewer calls than required have been recorded
+     */
+    public synchronized double getSlowCallRate() {
+        return windowCount < config.getMinimumCalls() ? -1 : slowCalls * 100.0 / windowCount;
+    }
+
+    /**
+     * Returns the number of recorded calls.
+     *
+     * @return the number of calls in the window
+     */
+    public synchronized int getBufferedCalls() {
+        return windowCount;
+    }
+
+    /**
+     * Returns the time until an open breaker lets probe calls through.
+     *
+     * @return the remaining time in milliseconds, 0 if the breaker is not open
+     */
+    public synchronized long getRemainingOpenMillis() {
+        return state == State.OPEN ? remainingOpenMillis() : 0;
+    }
+
+    /**
+     * Returns whether a call of the given duration counts as slow.
+     *
+     * @param durationNanos duration of the call
+     *
+     * @return true if it took at least the slow-call duration
+     */
+    boolean isSlow(long durationNanos) {
+        return durationNanos >= TimeUnit.MILLISECONDS.toNanos(config.getSlowCallDurationMillis());
+    }
+
+    private void record(byte outcome) {
+        State from;
+        State to;
+        synchronized (this) {
+            from = state;
+            if (state == State.CLOSED) {
+                if (windowCount == window.length) {
+                    remove(window[windowIndex]);
+                } else {
+                    windowCount++;
+                }
+                window[windowIndex] = outcome;
+                windowIndex = (windowIndex + 1) % window.length;
+                if (outcome == FAILURE) {
+                    failures++;
+                } else if (outcome == SLOW) {
+                    slowCalls++;
+                }
+                if (windowCount >= config.getMinimumCalls() && exceedsThresholds(failures, slowCalls, windowCount)) {
+                    transition(State.OPEN);
+                }
+            } else if (state == State.HALF_OPEN) {
+                probesCompleted++;
+                if (outcome == FAILURE) {
+                    probeFailures++;
+                } else if (outcome == SLOW) {
+                    probeSlowCalls++;
+                }
+                if (probesCompleted >= config.getHalfOpenCalls()) {
+                    transition(exceedsThresholds(probeFailures, probeSlowCalls, probesCompleted) ? State.OPEN : State.CLOSED);
+                }
+            }
+            // calls completing while the breaker is open were permitted before it opened and are not recorded
+            to = state;
+        }
+        notifyListener(from, to);
+    }
+
+    private void remove(byte outcome) {
+        if (outcome == FAILURE) {
+            failures--;
+        } else if (outcome == SLOW) {
+            slowCalls--;
+        }
+    }
+
+    private boolean exceedsThresholds(int failed, int slow, int calls) {
+        return failed * 100.0 / calls >= config.getFailureRateThreshold()
+                || slow * 100.0 / calls >= config.getSlowCallRateThreshold();
+    }
+
+    private long remainingOpenMillis() {
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - openedAt);
+        return Math.max(0, config.getOpenMillis() - elapsedMillis);
+    }
+
+    private void transition(State to) {
+        state = to;
+        windowIndex = 0;
+        windowCount = 0;
+        failures = 0;
+        slowCalls = 0;
+        probesPermitted = 0;
+        probesCompleted = 0;
+        probeFailures = 0;
+        probeSlowCalls = 0;
+        if (to == State.OPEN) {
+            openedAt = System.nanoTime();
+        }
+    }
+
+    private void notifyListener(State from, State to) {
+        if (listener != null && from != to) {
+            listener.onStateChange(endpoint, from, to);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package jFaaS.resilience;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.Predicate;
+
+/**
+ * Settings of circuit breakers, configured with the fluent setters before the breakers are created.
+ *
+ * By default a breaker opens if at least half of the last 20 calls failed, once 10 calls have been recorded, or if all
+ * of them took 60 s or longer. An open breaker lets 3 probe calls through after 30 s.
+ */
+public class CircuitBreakerConfig {
+
+    private int windowSize = 20;
+    private int minimumCalls = 10;
+    private double failureRateThreshold = 50;
+    private double slowCallRateThreshold = 100;
+    private long slowCallDurationMillis = 60 * 1000;
+    private long openMillis = 30 * 1000;
+    private int halfOpenCalls = 3;
+    private Predicate<Throwable> recordFailure = CircuitBreakerConfig::isFailureByDefault;
+
+    /**
+     * Set the number of recent calls the rates are computed of.
+     *
+     * @param windowSize   number of calls
+     * @param minimumCalls number of recorded calls before the breaker may open
+     *
+     * @return this config
+     */
+    public CircuitBreakerConfig withWindow(int windowSize, int minimumCalls) {
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("Invalid circuit breaker window");
+        }
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        return this;
+    }
+
+    /**
+     * Set the failure rate at which the breaker opens.
+     *
+     * @param failureRateThreshold percentage of failed calls, between 0 and 100
+     *
+     * @return this config
+     */
+    public CircuitBreakerConfig withFailureRateThreshold(double failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+        return this;
+    }
+
+    /**
+     * Set the slow-call rate at which the breaker opens.
+     *
+     * @param slowCallRateThreshold  percentage of slow calls, between 0 and 100
+     * @param slowCallDurationMillis duration from which a call counts as slow
+     *
+     * @return this config
+     */
+    public CircuitBreakerConfig withSlowCallThreshold(double slowCallRateThreshold, long slowCallDurationMillis) {
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDurationMillis = slowCallDurationMillis;
+        return this;
+    }
+
+    /**
+     * Set how long an open breaker fails calls before it lets probe calls through.
+     *
+     * @param openMillis duration of the open state
+     *
+     * @return this config
+     */
+    public CircuitBreakerConfig withOpenDuration(long openMillis) {
+        this.openMillis = openMillis;
+        return this;
+    }
+
+    /**
+     * Set the number of probe calls of a half-open breaker. The breaker closes if their failure and slow-call rates
+     * are below the thresholds, otherwise it opens again.
+     *
+     * @param halfOpenCalls number of probe calls, at least 1
+     *
+     * @return this config
+     */
+    public CircuitBreakerConfig withHalfOpenCalls(int halfOpenCalls) {
+        if (halfOpenCalls < 1) {
+            throw new IllegalArgumentException("At least one probe call is required");
+        }
+        this.halfOpenCalls = halfOpenCalls;
+        return this;
+    }
+
+    /**
+     * Set which exceptions count as failures, replacing {@link #isFailureByDefault(Throwable)}. Other exceptions are
+     * not recorded.
+     *
+     * @param recordFailure returning true for exceptions which count as failures
+     *
+     * @return this config
+     */
+    public CircuitBreakerConfig withRecordFailure(Predicate<Throwable> recordFailure) {
+        this.recordFailure = recordFailure;
+        return this;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public double getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    public long getSlowCallDurationMillis() {
+        return slowCallDurationMillis;
+    }
+
+    public long getOpenMillis() {
+        return openMillis;
+    }
+
+    public int getHalfOpenCalls() {
+        return halfOpenCalls;
+    }
+
+    /**
+     * Returns whether the exception counts as a failure of the endpoint.
+     *
+     * @param failure of a call
+     *
+     * @return true if it counts as failure
+     */
+    boolean isFailure(Throwable failure) {
+        return recordFailure.test(failure);
+    }
+
+    /**
+     * Default classification of failures: all exceptions except throttling, which the concurrency limiter handles,
+     * and exceptions raised before the endpoint was called.
+     *
+     * @param failure of a call
+     *
+     * @return true if it counts as failure
+     */
+    public static boolean isFailureByDefault(Throwable failure) {
+        return !(failure instanceof LimitExceededException || failure instanceof CircuitOpenException
+                || failure instanceof CancellationException || RetryPolicy.isThrottling(failure));
+    }
+}
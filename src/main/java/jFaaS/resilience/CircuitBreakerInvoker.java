@@ -0,0 +1,134 @@
+package jFaaS.resilience;
+
+import jFaaS.invokers.FaaSInvoker;
+import jFaaS.metrics.MetricsRecorder;
+import jFaaS.utils.PairResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Invoker decorator guarding each function endpoint of the wrapped invoker with a {@link CircuitBreaker}. While the
+ * breaker of an endpoint is open, invocations fail immediately with a {@link CircuitOpenException}. A null result,
+ * which invokers return if the invocation failed, counts as failure. Cancelled invocations, e.g. timed out attempts,
+ * count as slow calls if they ran for the slow-call duration and are not recorded otherwise.
+ */
+public class CircuitBreakerInvoker implements FaaSInvoker {
+
+    private final FaaSInvoker invoker;
+    private final CircuitBreakerRegistry registry;
+
+    /**
+     * Functional interface of a synchronous invocation.
+     */
+    @FunctionalInterface
+    private interface Invocation<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * Create a circuit breaker invoker.
+     *
+     * @param invoker  to wrap
+     * @param registry of the breakers, keyed by function endpoint
+     */
+    public CircuitBreakerInvoker(FaaSInvoker invoker, CircuitBreakerRegistry registry) {
+        this.invoker = invoker;
+        this.registry = registry;
+    }
+
+    @Override
+    public PairResult<String, Long> invokeFunction(String function, Map<String, Object> functionInputs) throws IOException {
+        return guarded(function, () -> invoker.invokeFunction(function, functionInputs));
+    }
+
+    @Override
+    public PairResult<byte[], Long> invokeFunctionRaw(String function, Map<String, Object> functionInputs) throws IOException {
+        return guarded(function, () -> invoker.invokeFunctionRaw(function, functionInputs));
+    }
+
+    @Override
+    public PairResult<InputStream, Long> invokeFunctionStream(String function, Map<String, Object> functionInputs) throws IOException {
+        return guarded(function, () -> invoker.invokeFunctionStream(function, functionInputs));
+    }
+
+    @Override
+    public CompletableFuture<PairResult<String, Long>> invokeFunctionAsync(String function, Map<String, Object> functionInputs, Executor executor) {
+        CircuitBreaker breaker = registry.get(function);
+        if (!breaker.tryAcquirePermission()) {
+            CompletableFuture<PairResult<String, Long>> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new CircuitOpenException(function, breaker.getRemainingOpenMillis()));
+            return rejected;
+        }
+        long start = System.nanoTime();
+        CompletableFuture<PairResult<String, Long>> invocation;
+        try {
+            invocation = invoker.invokeFunctionAsync(function, functionInputs, executor);
+        } catch (RuntimeException e) {
+            breaker.onError(System.nanoTime() - start, e);
+            throw e;
+        }
+        invocation.whenComplete((result, failure) -> record(breaker, start, result, failure));
+        return invocation;
+    }
+
+    @Override
+    public void registerMetrics(String provider, MetricsRecorder metrics) {
+        invoker.registerMetrics(provider, metrics);
+    }
+
+    /**
+     * Returns the registry of the breakers.
+     *
+     * @return the registry
+     */
+    public CircuitBreakerRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Closes the wrapped invoker.
+     */
+    @Override
+    public void close() {
+        invoker.close();
+    }
+
+    private <T> T guarded(String function, Invocation<T> invocation) throws IOException {
+        CircuitBreaker breaker = registry.get(function);
+        breaker.acquirePermission();
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = invocation.call();
+        } catch (IOException | RuntimeException e) {
+            record(breaker, start, null, e);
+            throw e;
+        }
+        record(breaker, start, result, null);
+        return result;
+    }
+
+    private static void record(CircuitBreaker breaker, long start, Object result, Throwable failure) {
+        long durationNanos = System.nanoTime() - start;
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (cause instanceof CancellationException) {
+            if (breaker.isSlow(durationNanos)) {
+                breaker.onSuccess(durationNanos);
+            } else {
+                breaker.release();
+            }
+        } else if (cause != null) {
+            breaker.onError(durationNanos, cause);
+        } else if (result == null) {
+            breaker.onError(durationNanos, new IOException("No result"));
+        } else {
+            breaker.onSuccess(durationNanos);
+        }
+    }
+}
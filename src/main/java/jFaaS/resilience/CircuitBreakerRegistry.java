@@ -0,0 +1,105 @@
+package jFaaS.resilience;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Circuit breakers of all endpoints, created with the same config on first use.
+ */
+public class CircuitBreakerRegistry {
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final List<CircuitBreaker.StateListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile CircuitBreakerConfig config;
+
+    /**
+     * Create a registry.
+     *
+     * @param config of the breakers
+     */
+    public CircuitBreakerRegistry(CircuitBreakerConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Returns the breaker of an endpoint, created on first use.
+     *
+     * @param endpoint identifier of the endpoint, e.g. the function URL
+     *
+     * @return the breaker
+     */
+    public CircuitBreaker get(String endpoint) {
+        CircuitBreaker breaker = breakers.get(endpoint);
+        if (breaker != null) {
+            return breaker;
+        }
+        return breakers.computeIfAbsent(endpoint, e -> new CircuitBreaker(e, config, this::notifyListeners));
+    }
+
+    /**
+     * Returns the state of an endpoint.
+     *
+     * @param endpoint identifier of the endpoint
+     *
+     * @return the state, {@link CircuitBreaker.State#CLOSED} if the endpoint was not called yet
+     */
+    public CircuitBreaker.State getState(String endpoint) {
+        CircuitBreaker breaker = breakers.get(endpoint);
+        return breaker != null ? breaker.getState() : CircuitBreaker.State.CLOSED;
+    }
+
+    /**
+     * Returns the states of all called endpoints.
+     *
+     * @return the states by endpoint
+     */
+    public Map<String, CircuitBreaker.State> getStates() {
+        Map<String, CircuitBreaker.State> states = new TreeMap<>();
+        breakers.forEach((endpoint, breaker) -> states.put(endpoint, breaker.getState()));
+        return Collections.unmodifiableMap(states);
+    }
+
+    /**
+     * Set the config of breakers created from now on. Existing breakers keep their config until {@link #clear()}.
+     *
+     * @param config of the breakers
+     */
+    public void setConfig(CircuitBreakerConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Add a listener notified of the state transitions of all breakers.
+     *
+     * @param listener to add
+     */
+    public void addListener(CircuitBreaker.StateListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener.
+     *
+     * @param listener to remove
+     */
+    public void removeListener(CircuitBreaker.StateListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Remove all breakers, so they are created again with the current config.
+     */
+    public void clear() {
+        breakers.clear();
+    }
+
+    private void notifyListeners(String endpoint, CircuitBreaker.State from, CircuitBreaker.State to) {
+        for (CircuitBreaker.StateListener listener : listeners) {
+            listener.onStateChange(endpoint, from, to);
+        }
+    }
+}
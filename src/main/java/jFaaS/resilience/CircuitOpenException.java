@@ -0,0 +1,28 @@
+package jFaaS.resilience;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of calling an endpoint whose circuit breaker is open.
+ */
+public class CircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String endpoint;
+
+    /**
+     * Create the exception.
+     *
+     * @param endpoint      whose breaker is open
+     * @param retryInMillis time until the breaker lets probe calls through
+     */
+    public CircuitOpenException(String endpoint, long retryInMillis) {
+        super("Circuit breaker of " + endpoint + " is open, retry in " + retryInMillis + " ms");
+        this.endpoint = endpoint;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+}
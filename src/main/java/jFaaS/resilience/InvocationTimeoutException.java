@@ -0,0 +1,34 @@
+package jFaaS.resilience;
+
+import java.io.IOException;
+
+/**
+ * Thrown if an invocation did not complete within its timeout. The invocation has been aborted.
+ */
+public class InvocationTimeoutException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String function;
+    private final long timeoutMillis;
+
+    /**
+     * Create the exception.
+     *
+     * @param function      which timed out
+     * @param timeoutMillis timeout of the attempt
+     */
+    public InvocationTimeoutException(String function, long timeoutMillis) {
+        super("Invocation of " + function + " timed out after " + timeoutMillis + " ms");
+        this.function = function;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public String getFunction() {
+        return function;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
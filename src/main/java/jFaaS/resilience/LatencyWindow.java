@@ -0,0 +1,93 @@
+package jFaaS.resilience;
+
+import jFaaS.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sliding window of latencies, made of histograms covering consecutive time slices. Slices older than the window are
+ * reset when they are reused, so the window reflects recent latencies only.
+ */
+public class LatencyWindow {
+
+    private final long sliceMillis;
+    private final Slice[] slices;
+
+    /**
+     * Create a window.
+     *
+     * @param windowMillis length of the window
+     * @param sliceCount   number of slices the window is divided into
+     */
+    public LatencyWindow(long windowMillis, int sliceCount) {
+        if (windowMillis <= 0 || sliceCount <= 0) {
+            throw new IllegalArgumentException("Window length and slice count must be positive");
+        }
+        this.sliceMillis = Math.max(1, windowMillis / sliceCount);
+        this.slices = new Slice[sliceCount];
+        for (int i = 0; i < sliceCount; i++) {
+            slices[i] = new Slice();
+        }
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long epoch = System.currentTimeMillis() / sliceMillis;
+        Slice slice = slices[(int) (epoch % slices.length)];
+        if (slice.epoch != epoch) {
+            synchronized (slice) {
+                if (slice.epoch != epoch) {
+                    slice.histogram.reset();
+                    slice.epoch = epoch;
+                }
+            }
+        }
+        slice.histogram.record(nanos);
+    }
+
+    /**
+     * Returns the number of latencies within the window.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        long count = 0;
+        for (LatencyHistogram histogram : current()) {
+            count += histogram.getCount();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the percentile of the latencies within the window.
+     *
+     * @param percentile between 0 and 100
+     *
+     * @return the latency in nanoseconds, 0 if the window is empty
+     */
+    public long getPercentile(double percentile) {
+        List<LatencyHistogram> histograms = current();
+        return LatencyHistogram.percentileOf(percentile, histograms.toArray(new LatencyHistogram[0]));
+    }
+
+    private List<LatencyHistogram> current() {
+        long epoch = System.currentTimeMillis() / sliceMillis;
+        List<LatencyHistogram> histograms = new ArrayList<>(slices.length);
+        for (Slice slice : slices) {
+            if (epoch - slice.epoch < slices.length) {
+                histograms.add(slice.histogram);
+            }
+        }
+        return histograms;
+    }
+
+    private static class Slice {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private volatile long epoch = -1;
+    }
+}
@@ -0,0 +1,20 @@
+package jFaaS.resilience;
+
+import java.io.IOException;
+
+/**
+ * Thrown if an invocation is shed because the concurrency limit of its provider is reached and the queue is full.
+ */
+public class LimitExceededException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Create the exception.
+     *
+     * @param message describing the exceeded limit
+     */
+    public LimitExceededException(String message) {
+        super(message);
+    }
+}
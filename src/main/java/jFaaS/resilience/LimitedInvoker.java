@@ -0,0 +1,155 @@
+package jFaaS.resilience;
+
+import jFaaS.invokers.FaaSInvoker;
+import jFaaS.metrics.MetricsRecorder;
+import jFaaS.utils.PairResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Invoker decorator limiting the concurrent invocations of the wrapped invoker with an {@link AdaptiveLimiter}.
+ * Successful invocations report their latency to the limiter, throttled invocations lower the limit, other failures
+ * only release the permit. Stream invocations hold their permit until the response is received.
+ */
+public class LimitedInvoker implements FaaSInvoker {
+
+    private final FaaSInvoker invoker;
+    private final AdaptiveLimiter limiter;
+
+    /**
+     * Functional interface of a synchronous invocation.
+     */
+    @FunctionalInterface
+    private interface Invocation<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * Create a limited invoker.
+     *
+     * @param invoker to wrap
+     * @param limiter shared by all invokers of the provider
+     */
+    public LimitedInvoker(FaaSInvoker invoker, AdaptiveLimiter limiter) {
+        this.invoker = invoker;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public PairResult<String, Long> invokeFunction(String function, Map<String, Object> functionInputs) throws IOException {
+        return limited(() -> invoker.invokeFunction(function, functionInputs));
+    }
+
+    @Override
+    public PairResult<byte[], Long> invokeFunctionRaw(String function, Map<String, Object> functionInputs) throws IOException {
+        return limited(() -> invoker.invokeFunctionRaw(function, functionInputs));
+    }
+
+    @Override
+    public PairResult<InputStream, Long> invokeFunctionStream(String function, Map<String, Object> functionInputs) throws IOException {
+        return limited(() -> invoker.invokeFunctionStream(function, functionInputs));
+    }
+
+    @Override
+    public CompletableFuture<PairResult<String, Long>> invokeFunctionAsync(String function, Map<String, Object> functionInputs, Executor executor) {
+        CompletableFuture<PairResult<String, Long>> result = new CompletableFuture<>();
+        CompletableFuture<Void> permit = limiter.acquireAsync();
+        permit.whenComplete((granted, rejected) -> {
+            if (rejected != null) {
+                result.completeExceptionally(unwrap(rejected));
+                return;
+            }
+            if (result.isDone()) {
+                limiter.onIgnore();
+                return;
+            }
+            long start = System.nanoTime();
+            CompletableFuture<PairResult<String, Long>> invocation;
+            try {
+                invocation = invoker.invokeFunctionAsync(function, functionInputs, executor);
+            } catch (RuntimeException e) {
+                limiter.onIgnore();
+                result.completeExceptionally(e);
+                return;
+            }
+            result.whenComplete((r, failure) -> {
+                if (result.isCancelled()) {
+                    invocation.cancel(true);
+                }
+            });
+            invocation.whenComplete((r, failure) -> {
+                Throwable cause = failure != null ? unwrap(failure) : null;
+                release(start, cause);
+                if (cause != null) {
+                    result.completeExceptionally(cause);
+                } else {
+                    result.complete(r);
+                }
+            });
+        });
+        // cancelling the result leaves the queue
+        result.whenComplete((r, failure) -> {
+            if (result.isCancelled()) {
+                permit.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void registerMetrics(String provider, MetricsRecorder metrics) {
+        invoker.registerMetrics(provider, metrics);
+    }
+
+    /**
+     * Returns the limiter of the provider.
+     *
+     * @return the limiter
+     */
+    public AdaptiveLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Closes the wrapped invoker.
+     */
+    @Override
+    public void close() {
+        invoker.close();
+    }
+
+    private <T> T limited(Invocation<T> invocation) throws IOException {
+        limiter.acquire();
+        long start = System.nanoTime();
+        try {
+            T result = invocation.call();
+            release(start, null);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            release(start, e);
+            throw e;
+        }
+    }
+
+    private void release(long start, Throwable failure) {
+        if (failure == null) {
+            limiter.onSuccess(System.nanoTime() - start);
+        } else if (RetryPolicy.isThrottling(failure)) {
+            limiter.onDropped();
+        } else {
+            limiter.onIgnore();
+        }
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            return failure.getCause();
+        }
+        return failure;
+    }
+}
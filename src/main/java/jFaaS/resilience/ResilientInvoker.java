@@ -0,0 +1,102 @@
+package jFaaS.resilience;
+
+import jFaaS.invokers.FaaSInvoker;
+import jFaaS.metrics.MetricsRecorder;
+import jFaaS.utils.InvocationFuture;
+import jFaaS.utils.PairResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Invoker decorator applying timeouts and retries to the wrapped invoker. The retry state, e.g. the recent latencies
+ * of the functions, is kept by the engine, so decorators of the same engine can be created per invocation.
+ */
+public class ResilientInvoker implements FaaSInvoker {
+
+    private final FaaSInvoker invoker;
+    private final RetryEngine engine;
+    private final String provider;
+    private final Executor executor;
+
+    /**
+     * Create a resilient invoker with its own engine.
+     *
+     * @param invoker to wrap
+     * @param policy  applied to all functions
+     */
+    public ResilientInvoker(FaaSInvoker invoker, RetryPolicy policy) {
+        this(invoker, new RetryEngine(policy), "unknown");
+    }
+
+    /**
+     * Create a resilient invoker.
+     *
+     * @param invoker  to wrap
+     * @param engine   applying the retry policies
+     * @param provider name of the provider, for metrics
+     */
+    public ResilientInvoker(FaaSInvoker invoker, RetryEngine engine, String provider) {
+        this(invoker, engine, provider, InvocationFuture.sharedExecutor());
+    }
+
+    /**
+     * Create a resilient invoker.
+     *
+     * @param invoker  to wrap
+     * @param engine   applying the retry policies
+     * @param provider name of the provider, for metrics
+     * @param executor executing synchronous invocations with a timeout
+     */
+    public ResilientInvoker(FaaSInvoker invoker, RetryEngine engine, String provider, Executor executor) {
+        this.invoker = invoker;
+        this.engine = engine;
+        this.provider = provider;
+        this.executor = executor;
+    }
+
+    @Override
+    public PairResult<String, Long> invokeFunction(String function, Map<String, Object> functionInputs) throws IOException {
+        return engine.invokeFunction(provider, invoker, function, functionInputs, executor);
+    }
+
+    @Override
+    public PairResult<byte[], Long> invokeFunctionRaw(String function, Map<String, Object> functionInputs) throws IOException {
+        return engine.invokeFunctionRaw(provider, invoker, function, functionInputs);
+    }
+
+    @Override
+    public PairResult<InputStream, Long> invokeFunctionStream(String function, Map<String, Object> functionInputs) throws IOException {
+        return engine.invokeFunctionStream(provider, invoker, function, functionInputs);
+    }
+
+    @Override
+    public CompletableFuture<PairResult<String, Long>> invokeFunctionAsync(String function, Map<String, Object> functionInputs, Executor executor) {
+        return engine.invokeFunctionAsync(provider, invoker, function, functionInputs, executor);
+    }
+
+    @Override
+    public void registerMetrics(String provider, MetricsRecorder metrics) {
+        invoker.registerMetrics(provider, metrics);
+    }
+
+    /**
+     * Returns the engine applying the retry policies.
+     *
+     * @return the engine
+     */
+    public RetryEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Closes the wrapped invoker.
+     */
+    @Override
+    public void close() {
+        invoker.close();
+    }
+}
@@ -0,0 +1,322 @@
+package jFaaS.resilience;
+
+import jFaaS.invokers.FaaSInvoker;
+import jFaaS.metrics.MetricsRecorder;
+import jFaaS.metrics.NoopMetrics;
+import jFaaS.utils.BoundedCache;
+import jFaaS.utils.PairResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Applies retry policies to invocations and keeps the recent latencies of each function for adaptive timeouts.
+ *
+ * Asynchronous invocations are retried without blocking a thread: timeouts and backoff delays are scheduled on a
+ * shared timer thread, and an attempt which times out is cancelled, which aborts its request. Synchronous invocations
+ * with a timeout run asynchronously and are awaited. Raw and stream invocations cannot be aborted, they are retried but
+ * not timed out.
+ */
+public class RetryEngine {
+
+    private static final long LATENCY_WINDOW_MILLIS = 5 * 60 * 1000;
+    private static final int LATENCY_WINDOW_SLICES = 5;
+    private static final int MAX_FUNCTIONS = 10000;
+    private static final long FUNCTION_IDLE_MILLIS = 60 * 60 * 1000;
+
+    private volatile RetryPolicy defaultPolicy;
+    private final Map<String, RetryPolicy> policies = new ConcurrentHashMap<>();
+    private final BoundedCache<String, LatencyWindow> latencies =
+            new BoundedCache<>(MAX_FUNCTIONS, FUNCTION_IDLE_MILLIS, null);
+    private volatile MetricsRecorder metrics = NoopMetrics.INSTANCE;
+
+    /**
+     * Functional interface of a synchronous attempt.
+     */
+    @FunctionalInterface
+    private interface Attempt<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * Create an engine applying the policy to all functions without a specific policy.
+     *
+     * @param defaultPolicy policy of all functions
+     */
+    public RetryEngine(RetryPolicy defaultPolicy) {
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    /**
+     * Set the policy of all functions without a specific policy.
+     *
+     * @param defaultPolicy policy of all functions
+     */
+    public void setDefaultPolicy(RetryPolicy defaultPolicy) {
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    /**
+     * Set the policy of a function.
+     *
+     * @param function identifier of the function, as passed to the invoker
+     * @param policy   of the function, null to apply the default policy
+     */
+    public void setPolicy(String function, RetryPolicy policy) {
+        if (policy == null) {
+            policies.remove(function);
+        } else {
+            policies.put(function, policy);
+        }
+    }
+
+    /**
+     * Returns the policy applied to a function.
+     *
+     * @param function identifier of the function
+     *
+     * @return the policy
+     */
+    public RetryPolicy getPolicy(String function) {
+        RetryPolicy policy = policies.get(function);
+        return policy != null ? policy : defaultPolicy;
+    }
+
+    /**
+     * Returns the timeout the next attempt of the function would get.
+     *
+     * @param function identifier of the function
+     *
+     * @return the timeout in milliseconds, 0 for none
+     */
+    public long getTimeoutMillis(String function) {
+        return getPolicy(function).timeoutMillis(latencies(function));
+    }
+
+    /**
+     * Set the recorder receiving the retries.
+     *
+     * @param metrics receiving the retries, null to disable
+     */
+    public void setMetrics(MetricsRecorder metrics) {
+        this.metrics = metrics != null ? metrics : NoopMetrics.INSTANCE;
+    }
+
+    /**
+     * Invoke the function, retrying failed and timed out attempts.
+     *
+     * @param provider       name of the provider, for metrics
+     * @param invoker        invoking the function
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     * @param executor       executing attempts with a timeout
+     *
+     * @return the result of the first successful attempt
+     *
+     * @throws IOException the failure of the last attempt, an {@link InvocationTimeoutException} if it timed out
+     */
+    public PairResult<String, Long> invokeFunction(String provider, FaaSInvoker invoker, String function,
+                                                   Map<String, Object> functionInputs, Executor executor) throws IOException {
+        RetryPolicy policy = getPolicy(function);
+        if (policy.getTimeoutMillis() <= 0 && !policy.isAdaptiveTimeout()) {
+            return retry(provider, function, policy, () -> invoker.invokeFunction(function, functionInputs));
+        }
+        CompletableFuture<PairResult<String, Long>> future = invokeFunctionAsync(provider, invoker, function, functionInputs, executor);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while invoking " + function, e);
+        } catch (ExecutionException e) {
+            throw asIOException(e.getCause());
+        }
+    }
+
+    /**
+     * Invoke the function asynchronously, retrying failed and timed out attempts.
+     *
+     * @param provider       name of the provider, for metrics
+     * @param invoker        invoking the function
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     * @param executor       executing the attempts
+     *
+     * @return future of the result of the first successful attempt, cancelling it aborts the running attempt
+     */
+    public CompletableFuture<PairResult<String, Long>> invokeFunctionAsync(String provider, FaaSInvoker invoker, String function,
+                                                                        Map<String, Object> functionInputs, Executor executor) {
+        RetryPolicy policy = getPolicy(function);
+        CompletableFuture<PairResult<String, Long>> result = new CompletableFuture<>();
+        attemptAsync(provider, function, policy, 1, result, () -> invoker.invokeFunctionAsync(function, functionInputs, executor));
+        return result;
+    }
+
+    /**
+     * Invoke the function and return the raw result, retrying failed attempts.
+     *
+     * @param provider       name of the provider, for metrics
+     * @param invoker        invoking the function
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     *
+     * @return the result of the first successful attempt
+     *
+     * @throws IOException the failure of the last attempt
+     */
+    public PairResult<byte[], Long> invokeFunctionRaw(String provider, FaaSInvoker invoker, String function,
+                                                      Map<String, Object> functionInputs) throws IOException {
+        return retry(provider, function, getPolicy(function), () -> invoker.invokeFunctionRaw(function, functionInputs));
+    }
+
+    /**
+     * Invoke the function and return the result stream, retrying attempts failing before the response is received.
+     *
+     * @param provider       name of the provider, for metrics
+     * @param invoker        invoking the function
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     *
+     * @return the result stream of the first successful attempt
+     *
+     * @throws IOException the failure of the last attempt
+     */
+    public PairResult<InputStream, Long> invokeFunctionStream(String provider, FaaSInvoker invoker, String function,
+                                                              Map<String, Object> functionInputs) throws IOException {
+        return retry(provider, function, getPolicy(function), () -> invoker.invokeFunctionStream(function, functionInputs));
+    }
+
+    private <T> PairResult<T, Long> retry(String provider, String function, RetryPolicy policy,
+                                          Attempt<PairResult<T, Long>> attempt) throws IOException {
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            long start = System.nanoTime();
+            try {
+                PairResult<T, Long> result = attempt.call();
+                latencies(function).record(System.nanoTime() - start);
+                return result;
+            } catch (IOException | RuntimeException e) {
+                if (attemptNumber >= policy.getMaxAttempts() || !policy.isRetriable(e)) {
+                    throw e;
+                }
+                metrics.invocationRetried(provider, function, attemptNumber + 1, e);
+                try {
+                    Thread.sleep(policy.backoffMillis(attemptNumber + 1));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void attemptAsync(String provider, String function, RetryPolicy policy, int attemptNumber,
+                              CompletableFuture<PairResult<String, Long>> result,
+                              Supplier<CompletableFuture<PairResult<String, Long>>> attempt) {
+        if (result.isDone()) {
+            return;
+        }
+        long timeoutMillis = policy.timeoutMillis(latencies(function));
+        long start = System.nanoTime();
+        CompletableFuture<PairResult<String, Long>> invocation;
+        try {
+            invocation = attempt.get();
+        } catch (RuntimeException e) {
+            invocation = new CompletableFuture<>();
+            invocation.completeExceptionally(e);
+        }
+        CompletableFuture<PairResult<String, Long>> running = invocation;
+        // cancelling the result aborts the running attempt
+        result.whenComplete((r, failure) -> {
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+
+        CompletableFuture<PairResult<String, Long>> timed;
+        if (timeoutMillis > 0) {
+            timed = new CompletableFuture<>();
+            ScheduledFuture<?> timeout = Timer.SCHEDULER.schedule(() -> {
+                if (timed.completeExceptionally(new InvocationTimeoutException(function, timeoutMillis))) {
+                    running.cancel(true);
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+            running.whenComplete((r, failure) -> {
+                timeout.cancel(false);
+                if (failure != null) {
+                    timed.completeExceptionally(failure);
+                } else {
+                    timed.complete(r);
+                }
+            });
+        } else {
+            timed = running;
+        }
+
+        timed.whenComplete((r, failure) -> {
+            Throwable cause = failure != null ? unwrap(failure) : null;
+            if (cause == null || cause instanceof InvocationTimeoutException) {
+                // timed out attempts are recorded with their timeout, so the adaptive timeout can grow again
+                latencies(function).record(System.nanoTime() - start);
+            }
+            if (cause == null) {
+                result.complete(r);
+                return;
+            }
+            if (cause instanceof CancellationException || result.isDone()
+                    || attemptNumber >= policy.getMaxAttempts() || !policy.isRetriable(cause)) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            metrics.invocationRetried(provider, function, attemptNumber + 1, cause);
+            Timer.SCHEDULER.schedule(() -> attemptAsync(provider, function, policy, attemptNumber + 1, result, attempt),
+                    policy.backoffMillis(attemptNumber + 1), TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private LatencyWindow latencies(String function) {
+        return latencies.get(function, f -> new LatencyWindow(LATENCY_WINDOW_MILLIS, LATENCY_WINDOW_SLICES));
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            return failure.getCause();
+        }
+        return failure;
+    }
+
+    private static IOException asIOException(Throwable failure) {
+        if (failure instanceof IOException) {
+            return (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        return new IOException(failure);
+    }
+
+    /**
+     * Timer thread of all engines, created on first use.
+     */
+    private static class Timer {
+        private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jFaaS-retry-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
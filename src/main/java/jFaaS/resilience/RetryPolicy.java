@@ -0,0 +1,282 @@
+package jFaaS.resilience;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import com.google.api.client.http.HttpResponseException;
+import jFaaS.invokers.HttpStatusException;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * Timeout and retry settings of invocations, configured with the fluent setters before the policy is used.
+ *
+ * By default an invocation is attempted up to 3 times without timeout. Retries are delayed with exponential backoff
+ * and full jitter. The timeout is either fixed or derived from the recent latencies of the function, see
+ * {@link #withAdaptiveTimeout(double, double, long, long)}.
+ */
+public class RetryPolicy {
+
+    private int maxAttempts = 3;
+    private long initialBackoffMillis = 100;
+    private long maxBackoffMillis = 10 * 1000;
+    private double backoffMultiplier = 2;
+    private double jitter = 1;
+    private long timeoutMillis;
+    private boolean retryOnTimeout = true;
+    private boolean adaptiveTimeout;
+    private double timeoutPercentile = 99;
+    private double timeoutFactor = 3;
+    private long minTimeoutMillis = 1000;
+    private long maxTimeoutMillis = 15 * 60 * 1000;
+    private int minSamples = 20;
+    private Predicate<Throwable> retriable = RetryPolicy::isRetriableByDefault;
+
+    /**
+     * Returns a policy attempting each invocation once without timeout.
+     *
+     * @return the policy
+     */
+    public static RetryPolicy noRetries() {
+        return new RetryPolicy().withMaxAttempts(1);
+    }
+
+    /**
+     * Set the maximum number of attempts, including the first one.
+     *
+     * @param maxAttempts at least 1
+     *
+     * @return this policy
+     */
+    public RetryPolicy withMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt is required");
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * Set the exponential backoff between attempts.
+     *
+     * @param initialBackoffMillis maximum delay before the first retry
+     * @param maxBackoffMillis     upper bound of the delay
+     * @param multiplier           growth of the delay per retry
+     *
+     * @return this policy
+     */
+    public RetryPolicy withBackoff(long initialBackoffMillis, long maxBackoffMillis, double multiplier) {
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.backoffMultiplier = multiplier;
+        return this;
+    }
+
+    /**
+     * Set the share of the backoff which is randomized. With 1 (full jitter) the delay is uniformly distributed
+     * between 0 and the backoff, with 0 the delay is exactly the backoff.
+     *
+     * @param jitter between 0 and 1
+     *
+     * @return this policy
+     */
+    public RetryPolicy withJitter(double jitter) {
+        this.jitter = Math.min(1, Math.max(0, jitter));
+        return this;
+    }
+
+    /**
+     * Set a fixed timeout per attempt. If adaptive timeouts are enabled, it is used until enough latencies have been
+     * recorded.
+     *
+     * @param timeoutMillis timeout per attempt, 0 for none
+     *
+     * @return this policy
+     */
+    public RetryPolicy withTimeout(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    /**
+     * Set whether attempts which timed out are retried.
+     *
+     * @param retryOnTimeout true to retry timed out attempts
+     *
+     * @return this policy
+     */
+    public RetryPolicy withRetryOnTimeout(boolean retryOnTimeout) {
+        this.retryOnTimeout = retryOnTimeout;
+        return this;
+    }
+
+    /**
+     * Derive the timeout from the recent latencies of the function: the given percentile times the factor, bounded by
+     * the minimum and maximum. Until 20 latencies have been recorded, the fixed timeout applies.
+     *
+     * @param percentile       of the recent latencies, e.g. 99
+     * @param factor           applied to the percentile, e.g. 3
+     * @param minTimeoutMillis lower bound of the timeout
+     * @param maxTimeoutMillis upper bound of the timeout
+     *
+     * @return this policy
+     */
+    public RetryPolicy withAdaptiveTimeout(double percentile, double factor, long minTimeoutMillis, long maxTimeoutMillis) {
+        this.adaptiveTimeout = true;
+        this.timeoutPercentile = percentile;
+        this.timeoutFactor = factor;
+        this.minTimeoutMillis = minTimeoutMillis;
+        this.maxTimeoutMillis = maxTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Set the number of recorded latencies required before the adaptive timeout applies.
+     *
+     * @param minSamples number of latencies
+     *
+     * @return this policy
+     */
+    public RetryPolicy withMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+        return this;
+    }
+
+    /**
+     * Set which failures are retried, replacing the default classification of {@link #isRetriableByDefault(Throwable)}.
+     *
+     * @param retriable returning true for failures to retry
+     *
+     * @return this policy
+     */
+    public RetryPolicy withRetriable(Predicate<Throwable> retriable) {
+        this.retriable = retriable;
+        return this;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public boolean isAdaptiveTimeout() {
+        return adaptiveTimeout;
+    }
+
+    /**
+     * Returns the timeout of the next attempt.
+     *
+     * @param latencies recent latencies of the function
+     *
+     * @return the timeout in milliseconds, 0 for none
+     */
+    long timeoutMillis(LatencyWindow latencies) {
+        if (adaptiveTimeout && latencies.getCount() >= minSamples) {
+            long percentileMillis = latencies.getPercentile(timeoutPercentile) / 1000000;
+            long timeout = (long) (percentileMillis * timeoutFactor);
+            return Math.min(maxTimeoutMillis, Math.max(minTimeoutMillis, timeout));
+        }
+        return timeoutMillis;
+    }
+
+    /**
+     * Returns the delay before the given attempt.
+     *
+     * @param attempt number of the upcoming attempt, starting with 2 for the first retry
+     *
+     * @return the delay in milliseconds
+     */
+    long backoffMillis(int attempt) {
+        double backoff = initialBackoffMillis * Math.pow(backoffMultiplier, attempt - 2);
+        long bounded = (long) Math.min(maxBackoffMillis, backoff);
+        return bounded - (long) (bounded * jitter * ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * Returns whether the failure is retried.
+     *
+     * @param failure of the previous attempt
+     *
+     * @return true to retry
+     */
+    boolean isRetriable(Throwable failure) {
+        if (failure instanceof InvocationTimeoutException) {
+            return retryOnTimeout;
+        }
+        return retriable.test(failure);
+    }
+
+    /**
+     * Default classification of retriable failures: throttling (HTTP 429) and server errors (HTTP 5xx) of all
+     * providers, AWS client errors caused by a failed connection or socket timeout, and refused connections. Other AWS
+     * client errors, e.g. missing credentials or invalid parameters, are not transient and are not retried.
+     *
+     * @param failure of an attempt
+     *
+     * @return true if the failure is transient
+     */
+    public static boolean isRetriableByDefault(Throwable failure) {
+        if (failure instanceof HttpStatusException) {
+            return isRetriableStatus(((HttpStatusException) failure).getStatusCode());
+        }
+        if (failure instanceof HttpResponseException) {
+            return isRetriableStatus(((HttpResponseException) failure).getStatusCode());
+        }
+        if (failure instanceof AmazonServiceException) {
+            return isRetriableStatus(((AmazonServiceException) failure).getStatusCode()) || isThrottling(failure);
+        }
+        if (failure instanceof SdkClientException) {
+            return isConnectionFailure(failure.getCause());
+        }
+        return failure instanceof ConnectException;
+    }
+
+    /**
+     * Returns whether the failure or one of its causes is a failed, reset or timed out connection.
+     */
+    private static boolean isConnectionFailure(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause() != cause ? cause.getCause() : null) {
+            if (cause instanceof SocketException || cause instanceof SocketTimeoutException
+                    || cause instanceof ConnectTimeoutException || cause instanceof NoHttpResponseException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the failure signals that the provider throttled the invocation, i.e. HTTP 429 or an AWS
+     * throttling error.
+     *
+     * @param failure of an attempt
+     *
+     * @return true if the invocation was throttled
+     */
+    public static boolean isThrottling(Throwable failure) {
+        if (failure instanceof HttpStatusException) {
+            return ((HttpStatusException) failure).getStatusCode() == 429;
+        }
+        if (failure instanceof HttpResponseException) {
+            return ((HttpResponseException) failure).getStatusCode() == 429;
+        }
+        if (failure instanceof AmazonServiceException) {
+            AmazonServiceException serviceException = (AmazonServiceException) failure;
+            String errorCode = serviceException.getErrorCode();
+            return serviceException.getStatusCode() == 429
+                    || (errorCode != null && (errorCode.contains("Throttl") || errorCode.contains("TooManyRequests")));
+        }
+        return false;
+    }
+
+    private static boolean isRetriableStatus(int statusCode) {
+        return statusCode == 429 || statusCode >= 500;
+    }
+}
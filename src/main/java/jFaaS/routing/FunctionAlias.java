@@ -0,0 +1,233 @@
+package jFaaS.routing;
+
+import jFaaS.resilience.LatencyWindow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Logical function deployed to several providers, e.g. to the same function on Lambda, Google and IBM. The gateway
+ * invokes the deployments in the order of the routing strategy and fails over to the next deployment on error.
+ *
+ * The round trip times of successful invocations are kept per deployment for the latency strategies. Deployments
+ * without recent invocations are tried first, and 5 % of the invocations try a random deployment first, so the
+ * latencies of all deployments stay current. A deployment which failed is tried last during the failure cooldown.
+ */
+public class FunctionAlias {
+
+    private static final long LATENCY_WINDOW_MILLIS = 5 * 60 * 1000;
+    private static final int LATENCY_WINDOW_SLICES = 5;
+    private static final double EXPLORATION_RATE = 0.05;
+
+    private final String name;
+    private final RoutingStrategy strategy;
+    private final List<Deployment> deployments = new CopyOnWriteArrayList<>();
+    private final AtomicInteger nextDeployment = new AtomicInteger();
+    private volatile long failureCooldownMillis = 30 * 1000;
+
+    /**
+     * Create an alias without deployments.
+     *
+     * @param name     of the alias, passed to the gateway instead of a function identifier
+     * @param strategy ordering the deployments
+     */
+    public FunctionAlias(String name, RoutingStrategy strategy) {
+        this.name = name;
+        this.strategy = strategy;
+    }
+
+    /**
+     * Add a deployment.
+     *
+     * @param function identifier of the deployed function
+     *
+     * @return this alias
+     */
+    public FunctionAlias withDeployment(String function) {
+        return withDeployment(function, 0);
+    }
+
+    /**
+     * Add a deployment with its cost, used by {@link RoutingStrategy#CHEAPEST}.
+     *
+     * @param function          identifier of the deployed function
+     * @param costPerInvocation cost of an invocation in any currency, the same for all deployments
+     *
+     * @return this alias
+     */
+    public FunctionAlias withDeployment(String function, double costPerInvocation) {
+        deployments.add(new Deployment(function, costPerInvocation));
+        return this;
+    }
+
+    /**
+     * Set how long a failed deployment is tried last.
+     *
+     * @param failureCooldownMillis duration after a failure
+     *
+     * @return this alias
+     */
+    public FunctionAlias withFailureCooldown(long failureCooldownMillis) {
+        this.failureCooldownMillis = failureCooldownMillis;
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public RoutingStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Returns the deployments in the order they were added.
+     *
+     * @return the identifiers of the deployed functions
+     */
+    public List<String> getDeployments() {
+        List<String> functions = new ArrayList<>();
+        for (Deployment deployment : deployments) {
+            functions.add(deployment.function);
+        }
+        return functions;
+    }
+
+    /**
+     * Returns the deployments in the order they should be tried. Unavailable deployments and deployments in their
+     * failure cooldown are moved to the end.
+     *
+     * @param available returning false for deployments which currently fail, e.g. with an open circuit breaker
+     *
+     * @return the identifiers of the deployed functions
+     */
+    public List<String> candidates(Predicate<String> available) {
+        List<Deployment> ordered = new ArrayList<>(deployments);
+        if (ordered.isEmpty()) {
+            return Collections.emptyList();
+        }
+        switch (strategy) {
+            case LOWEST_P50:
+                sortByLatency(ordered, 50);
+                break;
+            case LOWEST_P99:
+                sortByLatency(ordered, 99);
+                break;
+            case ROUND_ROBIN:
+                Collections.rotate(ordered, -Math.floorMod(nextDeployment.getAndIncrement(), ordered.size()));
+                break;
+            case CHEAPEST:
+                ordered.sort(Comparator.comparingDouble(deployment -> deployment.costPerInvocation));
+                break;
+            default:
+                break;
+        }
+        List<String> preferred = new ArrayList<>(ordered.size());
+        List<String> deferred = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Deployment deployment : ordered) {
+            if (deployment.isCoolingDown(now, failureCooldownMillis) || !available.test(deployment.function)) {
+                deferred.add(deployment.function);
+            } else {
+                preferred.add(deployment.function);
+            }
+        }
+        preferred.addAll(deferred);
+        return preferred;
+    }
+
+    /**
+     * Record a successful invocation of a deployment.
+     *
+     * @param function  identifier of the deployed function
+     * @param rttMillis round trip time of the invocation
+     */
+    public void recordSuccess(String function, Long rttMillis) {
+        Deployment deployment = find(function);
+        if (deployment != null) {
+            deployment.failedAt = 0;
+            if (rttMillis != null) {
+                deployment.latencies.record(TimeUnit.MILLISECONDS.toNanos(rttMillis));
+            }
+        }
+    }
+
+    /**
+     * Record a failed invocation of a deployment, which starts its failure cooldown.
+     *
+     * @param function identifier of the deployed function
+     */
+    public void recordFailure(String function) {
+        Deployment deployment = find(function);
+        if (deployment != null) {
+            deployment.failedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Returns a percentile of the recent round trip times of a deployment.
+     *
+     * @param function   identifier of the deployed function
+     * @param percentile between 0 and 100
+     *
+     * @return the round trip time in milliseconds, -1 if the deployment was not invoked recently
+     */
+    public long getLatencyMillis(String function, double percentile) {
+        Deployment deployment = find(function);
+        if (deployment == null || deployment.latencies.getCount() == 0) {
+            return -1;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(deployment.latencies.getPercentile(percentile));
+    }
+
+    private void sortByLatency(List<Deployment> ordered, double percentile) {
+        Map<Deployment, Long> latencies = new HashMap<>();
+        for (Deployment deployment : ordered) {
+            // deployments without recent invocations come first, so their latency is measured
+            latencies.put(deployment, deployment.latencies.getCount() == 0 ? 0 : deployment.latencies.getPercentile(percentile));
+        }
+        ordered.sort(Comparator.comparingLong(latencies::get));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (ordered.size() > 1 && random.nextDouble() < EXPLORATION_RATE) {
+            Collections.swap(ordered, 0, 1 + random.nextInt(ordered.size() - 1));
+        }
+    }
+
+    private Deployment find(String function) {
+        for (Deployment deployment : deployments) {
+            if (deployment.function.equals(function)) {
+                return deployment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Deployment of the alias with its recent round trip times.
+     */
+    private static class Deployment {
+        private final String function;
+        private final double costPerInvocation;
+        private final LatencyWindow latencies = new LatencyWindow(LATENCY_WINDOW_MILLIS, LATENCY_WINDOW_SLICES);
+        private volatile long failedAt;
+
+        private Deployment(String function, double costPerInvocation) {
+            this.function = function;
+            this.costPerInvocation = costPerInvocation;
+        }
+
+        private boolean isCoolingDown(long now, long cooldownMillis) {
+            long failed = failedAt;
+            return failed != 0 && now - failed < TimeUnit.MILLISECONDS.toNanos(cooldownMillis);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package jFaaS.routing;
+
+import jFaaS.invokers.FaaSInvoker;
+
+import java.util.Collections;
+
+/**
+ * FaaS provider which can be registered at the gateway.
+ */
+public interface FunctionProvider extends AutoCloseable {
+
+    /**
+     * Returns the name of the provider, e.g. used for concurrency limits.
+     *
+     * @return the name of the provider
+     */
+    String getName();
+
+    /**
+     * Check whether the function is hosted by this provider.
+     *
+     * @param function identifier of the function
+     *
+     * @return true if the provider invokes the function
+     */
+    boolean matches(String function);
+
+    /**
+     * Parse the function identifier. The result is cached by the registry, so expensive parsing happens once per
+     * function.
+     *
+     * @param function identifier of a function matched by this provider
+     *
+     * @return the resolved function
+     */
+    default ResolvedFunction resolve(String function) {
+        return new ResolvedFunction(this, function, function, Collections.emptyMap());
+    }
+
+    /**
+     * Returns the invoker for a resolved function.
+     *
+     * @param function resolved by this provider
+     *
+     * @return the invoker
+     */
+    FaaSInvoker getInvoker(ResolvedFunction function);
+
+    /**
+     * Release the invokers created by the provider.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,189 @@
+package jFaaS.routing;
+
+import com.amazonaws.regions.Regions;
+import jFaaS.completion.CompletionChannel;
+import jFaaS.invokers.FaaSInvoker;
+import jFaaS.invokers.LambdaInvoker;
+import jFaaS.utils.BoundedCache;
+import jFaaS.utils.PairResult;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * AWS Lambda provider. Functions are identified by their ARN, the region is parsed once when the ARN is resolved and
+ * Lambda clients are cached per region. Every invocation leases the client of its region, so idle clients are closed
+ * but clients of running invocations are not.
+ */
+public class LambdaProvider implements FunctionProvider {
+
+    /**
+     * Key of the region in the metadata of resolved functions.
+     */
+    public static final String REGION = "region";
+
+    private static final int MAX_LAMBDA_CLIENTS = 32;
+    private static final long LAMBDA_CLIENT_IDLE_MILLIS = 10 * 60 * 1000;
+
+    private final String awsAccessKey;
+    private final String awsSecretKey;
+    private final String awsSessionToken;
+    private final BoundedCache<String, LambdaInvoker> lambdaInvokers =
+            new BoundedCache<>(MAX_LAMBDA_CLIENTS, LAMBDA_CLIENT_IDLE_MILLIS, LambdaInvoker::close);
+    private final Map<String, RegionInvoker> regionInvokers = new ConcurrentHashMap<>();
+    private volatile CompletionChannel completionChannel;
+
+    /**
+     * Create the AWS Lambda provider.
+     *
+     * @param awsAccessKey    aws access key
+     * @param awsSecretKey    aws secret key
+     * @param awsSessionToken aws session token, may be null
+     */
+    public LambdaProvider(String awsAccessKey, String awsSecretKey, String awsSessionToken) {
+        this.awsAccessKey = awsAccessKey;
+        this.awsSecretKey = awsSecretKey;
+        this.awsSessionToken = awsSessionToken;
+    }
+
+    /**
+     * Detect aws lambda region
+     *
+     * @param function arn
+     *
+     * @return region
+     */
+    private static Regions detectRegion(String function) {
+        String regionName;
+        int searchIndex = function.indexOf("lambda:");
+        if (searchIndex != -1) {
+            regionName = function.substring(searchIndex + "lambda:".length());
+            regionName = regionName.split(":")[0];
+            try {
+                return Regions.fromName(regionName);
+            } catch (Exception e) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "aws";
+    }
+
+    @Override
+    public boolean matches(String function) {
+        return function.contains("arn:");
+    }
+
+    @Override
+    public ResolvedFunction resolve(String function) {
+        Regions region = detectRegion(function);
+        return new ResolvedFunction(this, function, function,
+                region != null ? Collections.singletonMap(REGION, region.getName()) : Collections.emptyMap());
+    }
+
+    @Override
+    public FaaSInvoker getInvoker(ResolvedFunction function) {
+        String regionName = function.getMetadata().get(REGION);
+        return regionInvokers.computeIfAbsent(regionName + ":" + awsAccessKey, key -> new RegionInvoker(key, regionName));
+    }
+
+    /**
+     * Returns the assigned memory of a function.
+     *
+     * @param function resolved by this provider
+     *
+     * @return the amount of memory in MB
+     */
+    public Integer getAssignedMemory(ResolvedFunction function) {
+        String regionName = function.getMetadata().get(REGION);
+        try (BoundedCache.Lease<LambdaInvoker> lease = lease(regionName + ":" + awsAccessKey, regionName)) {
+            return lease.get().getAssignedMemory(function.getTarget());
+        }
+    }
+
+    /**
+     * Lease the cached Lambda invoker of the region, creating it on first use.
+     */
+    private BoundedCache.Lease<LambdaInvoker> lease(String key, String regionName) {
+        return lambdaInvokers.acquire(key, k -> {
+            Regions region = regionName != null ? Regions.fromName(regionName) : null;
+            LambdaInvoker invoker = new LambdaInvoker(awsAccessKey, awsSecretKey, awsSessionToken, region);
+            invoker.setCompletionChannel(completionChannel);
+            return invoker;
+        });
+    }
+
+    /**
+     * Invoke the functions of this provider with invocation type Event and collect their results over the channel,
+     * see {@link LambdaInvoker#setCompletionChannel(CompletionChannel)}.
+     *
+     * @param completionChannel over which the functions report their results, null for RequestResponse invocations
+     */
+    public void setCompletionChannel(CompletionChannel completionChannel) {
+        this.completionChannel = completionChannel;
+        lambdaInvokers.forEach(invoker -> invoker.setCompletionChannel(completionChannel));
+    }
+
+    @Override
+    public void close() {
+        lambdaInvokers.invalidateAll();
+    }
+
+    /**
+     * Invoker of a region leasing the cached Lambda invoker for each invocation. The lease of an asynchronous
+     * invocation is released when it completes.
+     */
+    private class RegionInvoker implements FaaSInvoker {
+        private final String key;
+        private final String regionName;
+
+        private RegionInvoker(String key, String regionName) {
+            this.key = key;
+            this.regionName = regionName;
+        }
+
+        @Override
+        public PairResult<String, Long> invokeFunction(String function, Map<String, Object> functionInputs) throws IOException {
+            try (BoundedCache.Lease<LambdaInvoker> lease = lease(key, regionName)) {
+                return lease.get().invokeFunction(function, functionInputs);
+            }
+        }
+
+        @Override
+        public PairResult<byte[], Long> invokeFunctionRaw(String function, Map<String, Object> functionInputs) throws IOException {
+            try (BoundedCache.Lease<LambdaInvoker> lease = lease(key, regionName)) {
+                return lease.get().invokeFunctionRaw(function, functionInputs);
+            }
+        }
+
+        @Override
+        public CompletableFuture<PairResult<String, Long>> invokeFunctionAsync(String function, Map<String, Object> functionInputs, Executor executor) {
+            BoundedCache.Lease<LambdaInvoker> lease = lease(key, regionName);
+            CompletableFuture<PairResult<String, Long>> future;
+            try {
+                future = lease.get().invokeFunctionAsync(function, functionInputs, executor);
+            } catch (RuntimeException e) {
+                lease.close();
+                throw e;
+            }
+            future.whenComplete((result, failure) -> lease.close());
+            return future;
+        }
+
+        /**
+         * The clients are closed with the provider.
+         */
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package jFaaS.routing;
+
+import jFaaS.utils.BoundedCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Ordered registry of FaaS providers. A function is routed to the first provider matching its identifier and the
+ * resolved function is cached, so repeated invocations of a function skip matching and parsing.
+ */
+public class ProviderRegistry implements AutoCloseable {
+
+    private final static Logger LOGGER = Logger.getLogger(ProviderRegistry.class.getName());
+    private static final int MAX_RESOLVED_FUNCTIONS = 10000;
+    private static final long RESOLVED_FUNCTION_IDLE_MILLIS = 60 * 60 * 1000;
+
+    private final List<FunctionProvider> providers = new CopyOnWriteArrayList<>();
+    private final BoundedCache<String, ResolvedFunction> resolvedFunctions =
+            new BoundedCache<>(MAX_RESOLVED_FUNCTIONS, RESOLVED_FUNCTION_IDLE_MILLIS, null);
+
+    /**
+     * Register a provider with lower precedence than all registered providers.
+     *
+     * @param provider to register
+     */
+    public void register(FunctionProvider provider) {
+        providers.add(provider);
+        resolvedFunctions.invalidateAll();
+    }
+
+    /**
+     * Register a provider with higher precedence than all registered providers.
+     *
+     * @param provider to register
+     */
+    public void registerFirst(FunctionProvider provider) {
+        providers.add(0, provider);
+        resolvedFunctions.invalidateAll();
+    }
+
+    /**
+     * Remove a provider and close it.
+     *
+     * @param provider to remove
+     */
+    public void unregister(FunctionProvider provider) {
+        if (providers.remove(provider)) {
+            resolvedFunctions.invalidateAll();
+            provider.close();
+        }
+    }
+
+    /**
+     * Returns the registered providers in the order of their precedence.
+     *
+     * @return the providers
+     */
+    public List<FunctionProvider> getProviders() {
+        return new ArrayList<>(providers);
+    }
+
+    /**
+     * Returns the registered provider with the name.
+     *
+     * @param name of the provider
+     *
+     * @return the provider or null
+     */
+    public FunctionProvider getProvider(String name) {
+        for (FunctionProvider provider : providers) {
+            if (provider.getName().equals(name)) {
+                return provider;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolve the function to the first matching provider.
+     *
+     * @param function identifier of the function
+     *
+     * @return the resolved function or null if no provider matches
+     */
+    public ResolvedFunction resolve(String function) {
+        return resolvedFunctions.get(function, key -> {
+            for (FunctionProvider provider : providers) {
+                if (provider.matches(key)) {
+                    return provider.resolve(key);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Close all registered providers.
+     */
+    @Override
+    public void close() {
+        resolvedFunctions.invalidateAll();
+        for (FunctionProvider provider : providers) {
+            try {
+                provider.close();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Could not close provider " + provider.getName() + ".", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package jFaaS.routing;
+
+import jFaaS.invokers.FaaSInvoker;
+
+import java.util.Map;
+
+/**
+ * Function identifier resolved to its provider with the metadata parsed from the identifier.
+ */
+public class ResolvedFunction {
+
+    private final FunctionProvider provider;
+
+    private final String function;
+
+    private final String target;
+
+    private final Map<String, String> metadata;
+
+    /**
+     * Create a resolved function.
+     *
+     * @param provider hosting the function
+     * @param function identifier of the function as passed to the gateway
+     * @param target   identifier of the function as passed to the invoker
+     * @param metadata parsed from the identifier, e.g. the region
+     */
+    public ResolvedFunction(FunctionProvider provider, String function, String target, Map<String, String> metadata) {
+        this.provider = provider;
+        this.function = function;
+        this.target = target;
+        this.metadata = metadata;
+    }
+
+    public FunctionProvider getProvider() {
+        return provider;
+    }
+
+    public String getFunction() {
+        return function;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public Map<String, String> getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Returns the invoker of the function.
+     *
+     * @return the invoker provided by the provider
+     */
+    public FaaSInvoker getInvoker() {
+        return provider.getInvoker(this);
+    }
+}
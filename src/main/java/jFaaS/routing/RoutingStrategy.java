@@ -0,0 +1,33 @@
+package jFaaS.routing;
+
+/**
+ * Order in which the deployments of a {@link FunctionAlias} are tried. With every strategy, an invocation which fails
+ * is retried on the next deployment.
+ */
+public enum RoutingStrategy {
+
+    /**
+     * Lowest median round trip time of the recent invocations first.
+     */
+    LOWEST_P50,
+
+    /**
+     * Lowest 99th percentile round trip time of the recent invocations first.
+     */
+    LOWEST_P99,
+
+    /**
+     * Deployments in turn.
+     */
+    ROUND_ROBIN,
+
+    /**
+     * Lowest cost per invocation first.
+     */
+    CHEAPEST,
+
+    /**
+     * Deployments in the order they were added, later deployments are only used if the earlier ones fail.
+     */
+    FAILOVER
+}
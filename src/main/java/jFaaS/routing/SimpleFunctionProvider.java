@@ -0,0 +1,85 @@
+package jFaaS.routing;
+
+import jFaaS.invokers.FaaSInvoker;
+
+import java.util.Collections;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Provider using a single invoker for all of its functions. The invoker is created on first use.
+ */
+public class SimpleFunctionProvider implements FunctionProvider {
+
+    private final String name;
+    private final Predicate<String> matcher;
+    private final UnaryOperator<String> targetMapper;
+    private final Supplier<? extends FaaSInvoker> invokerFactory;
+    private volatile FaaSInvoker invoker;
+
+    /**
+     * Create a provider passing the function identifier unchanged to the invoker.
+     *
+     * @param name           of the provider
+     * @param matcher        checking whether a function is hosted by the provider
+     * @param invokerFactory creating the invoker
+     */
+    public SimpleFunctionProvider(String name, Predicate<String> matcher, Supplier<? extends FaaSInvoker> invokerFactory) {
+        this(name, matcher, UnaryOperator.identity(), invokerFactory);
+    }
+
+    /**
+     * Create a provider.
+     *
+     * @param name           of the provider
+     * @param matcher        checking whether a function is hosted by the provider
+     * @param targetMapper   mapping the function identifier to the identifier passed to the invoker
+     * @param invokerFactory creating the invoker
+     */
+    public SimpleFunctionProvider(String name, Predicate<String> matcher, UnaryOperator<String> targetMapper,
+                                  Supplier<? extends FaaSInvoker> invokerFactory) {
+        this.name = name;
+        this.matcher = matcher;
+        this.targetMapper = targetMapper;
+        this.invokerFactory = invokerFactory;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean matches(String function) {
+        return matcher.test(function);
+    }
+
+    @Override
+    public ResolvedFunction resolve(String function) {
+        return new ResolvedFunction(this, function, targetMapper.apply(function), Collections.emptyMap());
+    }
+
+    @Override
+    public FaaSInvoker getInvoker(ResolvedFunction function) {
+        FaaSInvoker current = invoker;
+        if (current == null) {
+            synchronized (this) {
+                current = invoker;
+                if (current == null) {
+                    current = invokerFactory.get();
+                    invoker = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (invoker != null) {
+            invoker.close();
+            invoker = null;
+        }
+    }
+}
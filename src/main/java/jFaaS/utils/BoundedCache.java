@@ -0,0 +1,292 @@
+package jFaaS.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Thread-safe cache with a maximum size and eviction of entries which have not been accessed for a given time.
+ *
+ * When the cache is full the least recently accessed entry is evicted. Evicted values are passed to the removal
+ * listener, e.g. to close clients held by the cache. Values which are in use have to be taken with {@link #acquire}:
+ * leased entries are neither expired nor evicted, and a leased value which is invalidated is passed to the removal
+ * listener only after its last lease was released.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+public class BoundedCache<K, V> {
+
+    private static final long CLEAN_UP_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int maximumSize;
+    private final long expireAfterAccessNanos;
+    private final Consumer<? super V> removalListener;
+    private volatile long lastCleanUp = System.nanoTime();
+
+    /**
+     * Create a cache.
+     *
+     * @param maximumSize             maximum number of entries
+     * @param expireAfterAccessMillis time after which an entry which has not been accessed is evicted, 0 to disable
+     * @param removalListener         called with every evicted or invalidated value, may be null
+     */
+    public BoundedCache(int maximumSize, long expireAfterAccessMillis, Consumer<? super V> removalListener) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.expireAfterAccessNanos = expireAfterAccessMillis * 1_000_000L;
+        this.removalListener = removalListener;
+    }
+
+    /**
+     * Returns the value of the key, computing it with the loader if it is absent. Concurrent calls for the same
+     * absent key load the value only once.
+     *
+     * @param key    of the value
+     * @param loader computing the value of an absent key
+     *
+     * @return the cached or loaded value
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        boolean[] loaded = new boolean[1];
+        Entry<V> entry = entries.computeIfAbsent(key, k -> {
+            loaded[0] = true;
+            return new Entry<>(loader.apply(k));
+        });
+        entry.lastAccess = System.nanoTime();
+        cleanUpIfDue(loaded[0], entry.lastAccess);
+        return entry.value;
+    }
+
+    /**
+     * Lease the value of the key, computing it with the loader if it is absent. The entry is not evicted and the value
+     * is not passed to the removal listener until the lease is released.
+     *
+     * @param key    of the value
+     * @param loader computing the value of an absent key
+     *
+     * @return the lease of the cached or loaded value, which has to be closed after use
+     */
+    public Lease<V> acquire(K key, Function<? super K, ? extends V> loader) {
+        while (true) {
+            boolean[] loaded = new boolean[1];
+            Entry<V> entry = entries.computeIfAbsent(key, k -> {
+                loaded[0] = true;
+                return new Entry<>(loader.apply(k));
+            });
+            synchronized (entry) {
+                if (entry.removed) {
+                    // evicted since it was looked up, the next lookup loads a new value
+                    continue;
+                }
+                entry.leases++;
+            }
+            entry.lastAccess = System.nanoTime();
+            cleanUpIfDue(loaded[0], entry.lastAccess);
+            return new Lease<>(this, entry);
+        }
+    }
+
+    /**
+     * Returns the value of the key if it is cached.
+     *
+     * @param key of the value
+     *
+     * @return the cached value or null
+     */
+    public V getIfPresent(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        entry.lastAccess = System.nanoTime();
+        return entry.value;
+    }
+
+    /**
+     * Add or replace the value of the key.
+     *
+     * @param key   of the value
+     * @param value to cache
+     */
+    public void put(K key, V value) {
+        Entry<V> previous = entries.put(key, new Entry<>(value));
+        if (previous != null && previous.value != value) {
+            boolean unused;
+            synchronized (previous) {
+                previous.removed = true;
+                unused = previous.leases == 0;
+            }
+            if (unused) {
+                notifyRemoval(previous.value);
+            }
+        }
+        if (entries.size() > maximumSize) {
+            cleanUp();
+        }
+    }
+
+    /**
+     * Remove the value of the key.
+     *
+     * @param key of the value
+     */
+    public void invalidate(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            remove(key, entry, true);
+        }
+    }
+
+    /**
+     * Remove all values.
+     */
+    public void invalidateAll() {
+        for (K key : entries.keySet()) {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * Pass every cached value to the action without counting it as access.
+     *
+     * @param action called with the values
+     */
+    public void forEach(Consumer<? super V> action) {
+        for (Entry<V> entry : entries.values()) {
+            action.accept(entry.value);
+        }
+    }
+
+    /**
+     * Returns the number of cached values.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Evict expired entries and, if the cache is full, the least recently accessed entries. Leased entries are kept,
+     * so the cache may exceed its maximum size while all entries are leased.
+     */
+    public synchronized void cleanUp() {
+        long now = System.nanoTime();
+        lastCleanUp = now;
+        if (expireAfterAccessNanos > 0) {
+            for (Map.Entry<K, Entry<V>> entry : entries.entrySet()) {
+                Entry<V> value = entry.getValue();
+                if (value.leases == 0 && now - value.lastAccess > expireAfterAccessNanos) {
+                    remove(entry.getKey(), value, false);
+                }
+            }
+        }
+        while (entries.size() > maximumSize) {
+            Map.Entry<K, Entry<V>> eldest = null;
+            for (Map.Entry<K, Entry<V>> entry : entries.entrySet()) {
+                if (entry.getValue().leases == 0
+                        && (eldest == null || entry.getValue().lastAccess - eldest.getValue().lastAccess < 0)) {
+                    eldest = entry;
+                }
+            }
+            if (eldest == null) {
+                return;
+            }
+            remove(eldest.getKey(), eldest.getValue(), false);
+        }
+    }
+
+    private void cleanUpIfDue(boolean loaded, long now) {
+        if (loaded && entries.size() > maximumSize || now - lastCleanUp > CLEAN_UP_INTERVAL_NANOS) {
+            cleanUp();
+        }
+    }
+
+    /**
+     * Removes the entry if it is still mapped to the key. The value is passed to the removal listener at once if it is
+     * not leased, otherwise when its last lease is released.
+     *
+     * @param force whether a leased entry is removed as well
+     */
+    private void remove(K key, Entry<V> entry, boolean force) {
+        boolean unused;
+        synchronized (entry) {
+            if (entry.removed || !force && entry.leases > 0 || !entries.remove(key, entry)) {
+                return;
+            }
+            entry.removed = true;
+            unused = entry.leases == 0;
+        }
+        if (unused) {
+            notifyRemoval(entry.value);
+        }
+    }
+
+    private void release(Entry<V> entry) {
+        boolean unused;
+        synchronized (entry) {
+            entry.leases--;
+            unused = entry.removed && entry.leases == 0;
+        }
+        entry.lastAccess = System.nanoTime();
+        if (unused) {
+            notifyRemoval(entry.value);
+        }
+    }
+
+    private void notifyRemoval(V value) {
+        if (removalListener != null && value != null) {
+            removalListener.accept(value);
+        }
+    }
+
+    /**
+     * Lease of a cached value, see {@link #acquire(Object, Function)}.
+     *
+     * @param <V> type of the value
+     */
+    public static final class Lease<V> implements AutoCloseable {
+        private final BoundedCache<?, V> cache;
+        private final Entry<V> entry;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(BoundedCache<?, V> cache, Entry<V> entry) {
+            this.cache = cache;
+            this.entry = entry;
+        }
+
+        public V get() {
+            return entry.value;
+        }
+
+        /**
+         * Release the lease, releasing it again has no effect.
+         */
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                cache.release(entry);
+            }
+        }
+    }
+
+    /**
+     * Cached value, its lease count and removed flag are guarded by the entry.
+     */
+    private static class Entry<V> {
+        private final V value;
+        private volatile long lastAccess = System.nanoTime();
+        private volatile int leases;
+        private boolean removed;
+
+        private Entry(V value) {
+            this.value = value;
+        }
+    }
+}
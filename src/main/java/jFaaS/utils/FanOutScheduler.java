@@ -0,0 +1,189 @@
+package jFaaS.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Starts asynchronous tasks while bounding the number of running tasks in total and per provider.
+ *
+ * Tasks exceeding a limit are queued without blocking a thread and are started as soon as a running task completes.
+ * Queued tasks of different providers are started in turns, so a saturated provider does not hold back the others.
+ */
+public class FanOutScheduler {
+
+    private final static Logger LOGGER = Logger.getLogger(FanOutScheduler.class.getName());
+
+    private final Object lock = new Object();
+    private final Map<String, Integer> providerLimits = new LinkedHashMap<>();
+    private final Map<String, Integer> providerRunning = new LinkedHashMap<>();
+    private final Map<String, Deque<Supplier<? extends CompletableFuture<?>>>> queued = new LinkedHashMap<>();
+    private int limit;
+    private int running;
+    private boolean draining;
+    private boolean redrain;
+
+    /**
+     * Create a scheduler.
+     *
+     * @param limit maximum number of running tasks in total
+     */
+    public FanOutScheduler(int limit) {
+        setLimit(limit);
+    }
+
+    /**
+     * Set the maximum number of running tasks in total.
+     *
+     * @param limit maximum number of running tasks
+     */
+    public void setLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        synchronized (lock) {
+            this.limit = limit;
+        }
+        startQueued();
+    }
+
+    /**
+     * Set the maximum number of running tasks of a provider.
+     *
+     * @param provider name of the provider
+     * @param limit    maximum number of running tasks of the provider
+     */
+    public void setLimit(String provider, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        synchronized (lock) {
+            providerLimits.put(provider, limit);
+        }
+        startQueued();
+    }
+
+    /**
+     * Start the task now if the limits allow it, otherwise queue it.
+     *
+     * @param provider name of the provider executing the task
+     * @param task     starting the task and returning its future
+     */
+    public void submit(String provider, Supplier<? extends CompletableFuture<?>> task) {
+        synchronized (lock) {
+            if (!tryReserve(provider)) {
+                queued.computeIfAbsent(provider, p -> new ArrayDeque<>()).add(task);
+                return;
+            }
+        }
+        start(provider, task);
+    }
+
+    /**
+     * Returns the number of running tasks.
+     *
+     * @return the number of running tasks
+     */
+    public int getRunning() {
+        synchronized (lock) {
+            return running;
+        }
+    }
+
+    /**
+     * Returns the number of queued tasks.
+     *
+     * @return the number of queued tasks
+     */
+    public int getQueued() {
+        synchronized (lock) {
+            int count = 0;
+            for (Deque<?> tasks : queued.values()) {
+                count += tasks.size();
+            }
+            return count;
+        }
+    }
+
+    private boolean tryReserve(String provider) {
+        int providerCount = providerRunning.getOrDefault(provider, 0);
+        if (running >= limit || providerCount >= providerLimits.getOrDefault(provider, Integer.MAX_VALUE)) {
+            return false;
+        }
+        running++;
+        providerRunning.put(provider, providerCount + 1);
+        return true;
+    }
+
+    private void start(String provider, Supplier<? extends CompletableFuture<?>> task) {
+        CompletableFuture<?> future;
+        try {
+            future = task.get();
+        } catch (RuntimeException e) {
+            release(provider);
+            throw e;
+        }
+        future.whenComplete((result, failure) -> release(provider));
+    }
+
+    private void release(String provider) {
+        synchronized (lock) {
+            running--;
+            providerRunning.put(provider, providerRunning.get(provider) - 1);
+        }
+        startQueued();
+    }
+
+    private void startQueued() {
+        synchronized (lock) {
+            if (draining) {
+                // tasks completing synchronously must not start the next tasks recursively
+                redrain = true;
+                return;
+            }
+            draining = true;
+        }
+        while (true) {
+            List<String> providers = new ArrayList<>();
+            List<Supplier<? extends CompletableFuture<?>>> tasks = new ArrayList<>();
+            synchronized (lock) {
+                boolean started = true;
+                while (started && running < limit) {
+                    started = false;
+                    Iterator<Map.Entry<String, Deque<Supplier<? extends CompletableFuture<?>>>>> iterator = queued.entrySet().iterator();
+                    while (iterator.hasNext()) {
+                        Map.Entry<String, Deque<Supplier<? extends CompletableFuture<?>>>> entry = iterator.next();
+                        if (tryReserve(entry.getKey())) {
+                            providers.add(entry.getKey());
+                            tasks.add(entry.getValue().poll());
+                            started = true;
+                            if (entry.getValue().isEmpty()) {
+                                iterator.remove();
+                            }
+                        }
+                    }
+                }
+                if (tasks.isEmpty() && !redrain) {
+                    draining = false;
+                    return;
+                }
+                redrain = false;
+            }
+            for (int i = 0; i < tasks.size(); i++) {
+                try {
+                    start(providers.get(i), tasks.get(i));
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Could not start queued task of provider " + providers.get(i) + ".", e);
+                }
+            }
+        }
+    }
+}
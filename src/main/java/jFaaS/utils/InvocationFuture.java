@@ -0,0 +1,156 @@
+package jFaaS.utils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Future of an asynchronous function invocation.
+ *
+ * Invokers register abort actions (e.g. aborting the HTTP request or disconnecting the SSH session) which are
+ * executed when the future is cancelled, so a cancelled invocation releases its connection immediately.
+ *
+ * @param <T> type of the invocation result
+ */
+public class InvocationFuture<T> extends CompletableFuture<T> {
+
+    private final static Logger LOGGER = Logger.getLogger(InvocationFuture.class.getName());
+
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "jFaaS-invoker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private final List<Runnable> abortActions = new CopyOnWriteArrayList<>();
+    private final Object workerLock = new Object();
+    private Thread worker;
+
+    /**
+     * Task executed by an invocation future.
+     *
+     * @param <T> type of the invocation result
+     */
+    @FunctionalInterface
+    public interface Invocation<T> {
+
+        /**
+         * Run the invocation.
+         *
+         * @param future the future of this invocation, used to register abort actions
+         *
+         * @return the invocation result
+         *
+         * @throws Exception on failure
+         */
+        T call(InvocationFuture<T> future) throws Exception;
+    }
+
+    /**
+     * Run an invocation on the given executor.
+     *
+     * @param executor   executing the invocation
+     * @param invocation to run
+     * @param <T>        type of the invocation result
+     *
+     * @return the future of the invocation
+     */
+    public static <T> InvocationFuture<T> run(Executor executor, Invocation<T> invocation) {
+        InvocationFuture<T> future = new InvocationFuture<>();
+        try {
+            executor.execute(() -> future.execute(invocation));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Returns the executor used when no executor is passed to an asynchronous invocation.
+     *
+     * @return shared cached thread pool with daemon threads
+     */
+    public static ExecutorService sharedExecutor() {
+        return DefaultExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * Register an action which is executed when the invocation is cancelled. If the future is already cancelled the
+     * action is executed immediately. Each action is executed at most once, even if the registration races with
+     * the cancellation.
+     *
+     * @param action to abort the running invocation
+     */
+    public void onAbort(Runnable action) {
+        AtomicBoolean executed = new AtomicBoolean();
+        Runnable once = () -> {
+            if (executed.compareAndSet(false, true)) {
+                action.run();
+            }
+        };
+        abortActions.add(once);
+        if (isCancelled()) {
+            once.run();
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            for (Runnable action : abortActions) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Could not abort the cancelled invocation.", e);
+                }
+            }
+            if (mayInterruptIfRunning) {
+                synchronized (workerLock) {
+                    if (worker != null) {
+                        worker.interrupt();
+                    }
+                }
+            }
+        }
+        return cancelled;
+    }
+
+    private void execute(Invocation<T> invocation) {
+        if (isDone()) {
+            return;
+        }
+        synchronized (workerLock) {
+            worker = Thread.currentThread();
+        }
+        try {
+            complete(invocation.call(this));
+        } catch (Throwable t) {
+            completeExceptionally(t);
+        } finally {
+            synchronized (workerLock) {
+                worker = null;
+                // do not leak an interrupt of a cancelled invocation into the next task of the pool thread
+                Thread.interrupted();
+            }
+        }
+    }
+
+    private static class DefaultExecutorHolder {
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(THREAD_FACTORY);
+    }
+}
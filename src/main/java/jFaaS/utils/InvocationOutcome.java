@@ -0,0 +1,70 @@
+package jFaaS.utils;
+
+/**
+ * Outcome of a function invocation of a batch, either a result or a failure.
+ */
+public class InvocationOutcome {
+
+    private final int index;
+
+    private final InvocationRequest request;
+
+    private final PairResult<String, Long> result;
+
+    private final Throwable failure;
+
+    private final long elapsedMillis;
+
+    /**
+     * Create an invocation outcome.
+     *
+     * @param index         of the request in the batch
+     * @param request       the invocation request
+     * @param result        of a successful invocation, null on failure
+     * @param failure       cause of a failed invocation, null on success
+     * @param elapsedMillis time from dispatching the request until its completion
+     */
+    public InvocationOutcome(int index, InvocationRequest request, PairResult<String, Long> result, Throwable failure, long elapsedMillis) {
+        this.index = index;
+        this.request = request;
+        this.result = result;
+        this.failure = failure;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public InvocationRequest getRequest() {
+        return request;
+    }
+
+    public PairResult<String, Long> getResult() {
+        return result;
+    }
+
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public boolean isSuccess() {
+        return failure == null;
+    }
+
+    /**
+     * Returns the round trip time measured by the invoker, or the elapsed time if the invocation failed.
+     *
+     * @return the round trip time in milliseconds
+     */
+    public long getRTT() {
+        if (result != null && result.getRTT() != null) {
+            return result.getRTT();
+        }
+        return elapsedMillis;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
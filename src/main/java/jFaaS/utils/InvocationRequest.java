@@ -0,0 +1,32 @@
+package jFaaS.utils;
+
+import java.util.Map;
+
+/**
+ * Function invocation of a batch.
+ */
+public class InvocationRequest {
+
+    private final String function;
+
+    private final Map<String, Object> functionInputs;
+
+    /**
+     * Create an invocation request.
+     *
+     * @param function       identifier of the function
+     * @param functionInputs input parameters
+     */
+    public InvocationRequest(String function, Map<String, Object> functionInputs) {
+        this.function = function;
+        this.functionInputs = functionInputs;
+    }
+
+    public String getFunction() {
+        return function;
+    }
+
+    public Map<String, Object> getFunctionInputs() {
+        return functionInputs;
+    }
+}
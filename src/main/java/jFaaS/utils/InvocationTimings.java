@@ -0,0 +1,168 @@
+package jFaaS.utils;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nanosecond durations of the phases of an invocation.
+ *
+ * Invokers measure the phases consecutively with {@link #mark(Phase)}, which attributes the time since the previous
+ * mark to the given phase. A phase an invoker cannot observe separately is folded into the phase containing it, e.g.
+ * the AWS SDK does not expose connection setup, so for Lambda it is part of {@link Phase#SERVER}.
+ */
+public class InvocationTimings {
+
+    /**
+     * Phases of an invocation.
+     */
+    public enum Phase {
+        /**
+         * Resolving the provider and invoker of the function.
+         */
+        ROUTING,
+        /**
+         * Serializing the function inputs and building the request.
+         */
+        SERIALIZATION,
+        /**
+         * Acquiring a connection from the pool or establishing it, including the TLS or SSH handshake.
+         */
+        CONNECTION,
+        /**
+         * Fetching or computing authentication tokens.
+         */
+        AUTH,
+        /**
+         * Sending the request until the response headers are received, i.e. network and function execution time.
+         */
+        SERVER,
+        /**
+         * Reading the response body.
+         */
+        RESPONSE_READ,
+        /**
+         * Decoding and validating the response.
+         */
+        PARSE
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final long[] nanos = new long[PHASES.length];
+    private long lastMark;
+
+    /**
+     * Create timings, starting the first phase now.
+     */
+    public InvocationTimings() {
+        lastMark = System.nanoTime();
+    }
+
+    /**
+     * Returns a copy of the durations and the mark. The timings are not thread-safe, so timings shared by several
+     * callers are copied for each of them.
+     *
+     * @return the copy
+     */
+    public InvocationTimings copy() {
+        InvocationTimings copy = new InvocationTimings();
+        System.arraycopy(nanos, 0, copy.nanos, 0, nanos.length);
+        copy.lastMark = lastMark;
+        return copy;
+    }
+
+    /**
+     * Attribute the time since the previous mark, or since creation, to the phase.
+     *
+     * @param phase which ended now
+     *
+     * @return the attributed duration in nanoseconds
+     */
+    public long mark(Phase phase) {
+        long now = System.nanoTime();
+        long duration = now - lastMark;
+        nanos[phase.ordinal()] += duration;
+        lastMark = now;
+        return duration;
+    }
+
+    /**
+     * Add a separately measured duration to the phase without changing the mark.
+     *
+     * @param phase    to add the duration to
+     * @param duration in nanoseconds
+     */
+    public void add(Phase phase, long duration) {
+        nanos[phase.ordinal()] += duration;
+    }
+
+    /**
+     * Start the next phase now, e.g. after waiting for the caller, without attributing the elapsed time to a phase.
+     */
+    public void restart() {
+        lastMark = System.nanoTime();
+    }
+
+    /**
+     * Returns the duration of the phase.
+     *
+     * @param phase of the invocation
+     *
+     * @return the duration in nanoseconds
+     */
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * Returns the duration of the phase in the given unit.
+     *
+     * @param phase of the invocation
+     * @param unit  of the returned duration
+     *
+     * @return the duration, truncated to the unit
+     */
+    public long get(Phase phase, TimeUnit unit) {
+        return unit.convert(nanos[phase.ordinal()], TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the sum of all phases.
+     *
+     * @return the total duration in nanoseconds
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (long duration : nanos) {
+            total += duration;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the durations of all phases.
+     *
+     * @return unmodifiable map from phase to duration in nanoseconds
+     */
+    public Map<Phase, Long> toMap() {
+        Map<Phase, Long> map = new EnumMap<>(Phase.class);
+        for (Phase phase : PHASES) {
+            map.put(phase, nanos[phase.ordinal()]);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("InvocationTimings{");
+        for (Phase phase : PHASES) {
+            if (phase.ordinal() > 0) {
+                builder.append(", ");
+            }
+            builder.append(phase).append('=').append(nanos[phase.ordinal()]).append("ns");
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -6,11 +6,27 @@ public class PairResult<String, Long> {
 
     private Long RTT;
 
+    private InvocationTimings timings;
+
     public PairResult(String result, Long RTT) {
         this.result = result;
         this.RTT = RTT;
     }
 
+    /**
+     * Create a result with the durations of the invocation phases.
+     *
+     * @param result  of the invocation
+     * @param RTT     round trip time in milliseconds from sending the request until the response was read, excluding
+     *                serialization and authentication
+     * @param timings durations of the invocation phases, may be null
+     */
+    public PairResult(String result, Long RTT, InvocationTimings timings) {
+        this.result = result;
+        this.RTT = RTT;
+        this.timings = timings;
+    }
+
     public String getResult() {
         return result;
     }
@@ -26,4 +42,26 @@ public class PairResult<String, Long> {
     public void setRTT(Long RTT) {
         this.RTT = RTT;
     }
+
+    /**
+     * Returns the nanosecond durations of the invocation phases.
+     *
+     * @return the timings, null if the invoker does not record them
+     */
+    public InvocationTimings getTimings() {
+        return timings;
+    }
+
+    public void setTimings(InvocationTimings timings) {
+        this.timings = timings;
+    }
+
+    /**
+     * Returns a copy with its own timings, e.g. for callers sharing the result of one invocation.
+     *
+     * @return the copy
+     */
+    public PairResult<String, Long> copy() {
+        return new PairResult<>(result, RTT, timings != null ? timings.copy() : null);
+    }
 }
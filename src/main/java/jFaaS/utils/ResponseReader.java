@@ -0,0 +1,126 @@
+package jFaaS.utils;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads function responses into memory with a reusable per-thread buffer.
+ *
+ * Responses are read as bytes and decoded once, instead of line by line, and JSON is validated with a streaming
+ * parser instead of being parsed into a tree and serialized again.
+ */
+public final class ResponseReader {
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[INITIAL_BUFFER_SIZE]);
+
+    private ResponseReader() {
+    }
+
+    /**
+     * Read the stream to its end and close it.
+     *
+     * @param inputStream to read
+     *
+     * @return the content of the stream
+     *
+     * @throws IOException on failure
+     */
+    public static byte[] readBytes(InputStream inputStream) throws IOException {
+        byte[] buffer = BUFFER.get();
+        int length = 0;
+        try {
+            int read;
+            while ((read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+                length += read;
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+        } finally {
+            inputStream.close();
+        }
+        byte[] content = Arrays.copyOf(buffer, length);
+        if (buffer.length <= MAX_RETAINED_BUFFER_SIZE) {
+            BUFFER.set(buffer);
+        }
+        return content;
+    }
+
+    /**
+     * Read the stream to its end as UTF-8 string and close it.
+     *
+     * @param inputStream to read
+     *
+     * @return the content of the stream
+     *
+     * @throws IOException on failure
+     */
+    public static String readString(InputStream inputStream) throws IOException {
+        return new String(readBytes(inputStream), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the stream to its end as JSON object and close it.
+     *
+     * @param inputStream to read
+     * @param validate    whether the content is validated to be a JSON object
+     *
+     * @return the JSON object as string
+     *
+     * @throws IOException         on failure
+     * @throws JsonSyntaxException if the content is validated and not a JSON object
+     */
+    public static String readJsonObject(InputStream inputStream, boolean validate) throws IOException {
+        String json = readString(inputStream);
+        if (validate) {
+            validateJsonObject(json);
+        }
+        return json;
+    }
+
+    /**
+     * Returns the remaining bytes of the buffer without changing its position.
+     *
+     * @param byteBuffer to read
+     *
+     * @return the remaining bytes
+     */
+    public static byte[] toBytes(ByteBuffer byteBuffer) {
+        ByteBuffer duplicate = byteBuffer.duplicate();
+        byte[] content = new byte[duplicate.remaining()];
+        duplicate.get(content);
+        return content;
+    }
+
+    /**
+     * Check that the string is a single JSON object, using the streaming parser without building a tree.
+     *
+     * @param json to validate
+     *
+     * @throws JsonSyntaxException if the string is not a JSON object
+     */
+    public static void validateJsonObject(String json) {
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.setLenient(true);
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                throw new JsonSyntaxException("Expected a JSON object but was " + reader.peek());
+            }
+            reader.skipValue();
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonSyntaxException("Expected the end of the JSON object but was " + reader.peek());
+            }
+        } catch (IOException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+}
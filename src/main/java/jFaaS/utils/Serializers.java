@@ -0,0 +1,210 @@
+package jFaaS.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared, thread-safe serializers.
+ *
+ * Gson and Jackson instances cache type adapters and serializers, creating them per invocation throws these caches
+ * away. Function inputs are written as UTF-8 directly into a reusable per-thread buffer instead of building an
+ * intermediate string.
+ */
+public final class Serializers {
+
+    private static final Gson GSON = new Gson();
+    private static final ObjectMapper YAML_MAPPER = new ObjectMapper(new YAMLFactory());
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+    private static final ThreadLocal<JsonBuffer> JSON_BUFFER = ThreadLocal.withInitial(JsonBuffer::new);
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(Serializers::newSha256);
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private Serializers() {
+    }
+
+    /**
+     * Returns the shared Gson instance.
+     *
+     * @return the Gson instance
+     */
+    public static Gson gson() {
+        return GSON;
+    }
+
+    /**
+     * Returns the shared YAML object mapper.
+     *
+     * @return the YAML object mapper
+     */
+    public static ObjectMapper yamlMapper() {
+        return YAML_MAPPER;
+    }
+
+    /**
+     * Serialize the value as UTF-8 encoded JSON.
+     *
+     * @param value to serialize, e.g. the function inputs
+     *
+     * @return the JSON bytes
+     */
+    public static byte[] toJsonBytes(Object value) {
+        JsonBuffer buffer = JSON_BUFFER.get();
+        try {
+            buffer.bytes.reset();
+            GSON.toJson(value, buffer.writer);
+            buffer.writer.flush();
+            byte[] json = buffer.bytes.toByteArray();
+            if (buffer.bytes.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                JSON_BUFFER.remove();
+            }
+            return json;
+        } catch (IOException | RuntimeException e) {
+            // the writer may still hold characters of the failed value
+            JSON_BUFFER.remove();
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * Serialize the value as UTF-8 encoded JSON to the stream. The stream is flushed but not closed.
+     *
+     * @param value        to serialize, e.g. the function inputs
+     * @param outputStream to write to
+     *
+     * @throws IOException on failure
+     */
+    public static void writeJson(Object value, OutputStream outputStream) throws IOException {
+        Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+        try {
+            GSON.toJson(value, writer);
+        } catch (JsonIOException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Returns the SHA-256 hash of the canonical JSON of the value, in which the members of all objects are sorted by
+     * name. Equal function inputs have the same hash regardless of the order of their map entries.
+     *
+     * @param value to hash, e.g. the function inputs
+     *
+     * @return the hash as lowercase hex string
+     */
+    public static String canonicalHash(Object value) {
+        JsonElement canonical = canonicalize(GSON.toJsonTree(value));
+        return sha256Hex(GSON.toJson(canonical).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the SHA-256 hash of the bytes.
+     *
+     * @param bytes to hash
+     *
+     * @return the hash as lowercase hex string
+     */
+    public static String sha256Hex(byte[] bytes) {
+        return toHex(SHA_256.get().digest(bytes));
+    }
+
+    /**
+     * Returns the SHA-256 hash of the stream, which is read to its end and closed.
+     *
+     * @param inputStream to hash, e.g. of a file
+     *
+     * @return the hash as lowercase hex string
+     *
+     * @throws IOException if the stream cannot be read
+     */
+    public static String sha256Hex(InputStream inputStream) throws IOException {
+        MessageDigest digest = SHA_256.get();
+        digest.reset();
+        try (InputStream input = inputStream) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (IOException | RuntimeException e) {
+            digest.reset();
+            throw e;
+        }
+        return toHex(digest.digest());
+    }
+
+    private static String toHex(byte[] hash) {
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    private static JsonElement canonicalize(JsonElement element) {
+        if (element.isJsonObject()) {
+            List<Map.Entry<String, JsonElement>> members = new ArrayList<>(element.getAsJsonObject().entrySet());
+            Collections.sort(members, Map.Entry.comparingByKey());
+            JsonObject sorted = new JsonObject();
+            for (Map.Entry<String, JsonElement> member : members) {
+                sorted.add(member.getKey(), canonicalize(member.getValue()));
+            }
+            return sorted;
+        }
+        if (element.isJsonArray()) {
+            JsonArray array = new JsonArray();
+            for (JsonElement item : element.getAsJsonArray()) {
+                array.add(canonicalize(item));
+            }
+            return array;
+        }
+        return element;
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class JsonBuffer {
+        private final ExposedByteArrayOutputStream bytes = new ExposedByteArrayOutputStream();
+        private final Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+
+        private ExposedByteArrayOutputStream() {
+            super(1024);
+        }
+
+        private int capacity() {
+            return buf.length;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package jFaaS.utils;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * De-duplicates concurrent calls with the same key: the first caller executes the call, callers arriving while it is
+ * in flight receive its result. The key is forgotten once the call completes, so later callers execute it again.
+ *
+ * Each asynchronous caller receives its own future. Cancelling it detaches the caller, and the shared call is only
+ * cancelled once all of its callers cancelled; callers arriving afterwards start a new call. Mutable results are
+ * copied for every caller, so callers do not see each other's changes.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the results
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, Flight> flights = new ConcurrentHashMap<>();
+    private final AtomicLong shared = new AtomicLong();
+    private final UnaryOperator<V> copier;
+
+    /**
+     * Create a single flight passing the same result to all callers, for immutable results.
+     */
+    public SingleFlight() {
+        this(UnaryOperator.identity());
+    }
+
+    /**
+     * Create a single flight passing its own copy of the result to every caller.
+     *
+     * @param copier copying a non-null result, e.g. {@code PairResult::copy}
+     */
+    public SingleFlight(UnaryOperator<V> copier) {
+        this.copier = copier;
+    }
+
+    /**
+     * Functional interface of a synchronous call.
+     *
+     * @param <V> type of the result
+     */
+    @FunctionalInterface
+    public interface Call<V> {
+        V call() throws IOException;
+    }
+
+    /**
+     * Execute the call in the calling thread, or wait for the call with the same key in flight.
+     *
+     * @param key  of the call
+     * @param call to execute if no call with the key is in flight
+     *
+     * @return the result of the call
+     *
+     * @throws IOException the failure of the call
+     */
+    public V execute(K key, Call<V> call) throws IOException {
+        Flight flight = new Flight(key);
+        // the executing caller cannot detach, so the shared call is never cancelled
+        flight.callers = 1;
+        CompletableFuture<V> joined = joinOrRegister(key, flight);
+        if (joined != null) {
+            return await(joined);
+        }
+        try {
+            V result = call.call();
+            // copied before it is shared, the shared result is only read by the copier
+            V own = result != null ? copier.apply(result) : null;
+            flight.shared.complete(result);
+            return own;
+        } catch (IOException | RuntimeException | Error e) {
+            flight.shared.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Start the asynchronous call, or join the call with the same key in flight.
+     *
+     * @param key  of the call
+     * @param call starting the call if no call with the key is in flight
+     *
+     * @return future of the result, cancelling it detaches this caller
+     */
+    public CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> call) {
+        Flight flight = new Flight(key);
+        flight.callers = 1;
+        CompletableFuture<V> joined = joinOrRegister(key, flight);
+        if (joined != null) {
+            return joined;
+        }
+        CompletableFuture<V> caller = flight.newCaller();
+        flight.shared.whenComplete((result, failure) -> flights.remove(key, flight));
+        CompletableFuture<V> started;
+        try {
+            started = call.get();
+        } catch (RuntimeException e) {
+            flight.shared.completeExceptionally(e);
+            return caller;
+        }
+        flight.started = started;
+        started.whenComplete((result, failure) -> {
+            if (failure != null) {
+                flight.shared.completeExceptionally(unwrap(failure));
+            } else {
+                flight.shared.complete(result);
+            }
+        });
+        if (flight.shared.isCancelled()) {
+            // all callers cancelled before the call was started
+            started.cancel(true);
+        }
+        return caller;
+    }
+
+    /**
+     * Join the flight of the key, or register the new flight if no flight of the key is in flight.
+     *
+     * @param key    of the call
+     * @param flight to register, with the registering caller counted
+     *
+     * @return future of the joined caller, null if the new flight was registered
+     */
+    private CompletableFuture<V> joinOrRegister(K key, Flight flight) {
+        while (true) {
+            Flight inFlight = flights.putIfAbsent(key, flight);
+            if (inFlight == null) {
+                return null;
+            }
+            CompletableFuture<V> caller = inFlight.join();
+            if (caller != null) {
+                shared.incrementAndGet();
+                return caller;
+            }
+            // all callers of the flight cancelled and it was removed, so the next attempt registers a new flight
+        }
+    }
+
+    /**
+     * Returns the number of calls in flight.
+     *
+     * @return the number of keys with a running call
+     */
+    public int getInFlight() {
+        return flights.size();
+    }
+
+    /**
+     * Returns the number of callers which received the result of a call in flight instead of executing it.
+     *
+     * @return the number of de-duplicated calls
+     */
+    public long getSharedCount() {
+        return shared.get();
+    }
+
+    private V await(CompletableFuture<V> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a call in flight", e);
+        } catch (CancellationException e) {
+            throw new IOException("The call in flight was cancelled", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            return failure.getCause();
+        }
+        return failure;
+    }
+
+    /**
+     * Call in flight with its callers.
+     */
+    private class Flight {
+        private final K key;
+        private final CompletableFuture<V> shared = new CompletableFuture<>();
+        private volatile CompletableFuture<V> started;
+        private int callers;
+        private boolean dead;
+
+        private Flight(K key) {
+            this.key = key;
+        }
+
+        /**
+         * Add a caller to the flight.
+         *
+         * @return future of the caller, null if all previous callers cancelled and the flight is dead
+         */
+        private CompletableFuture<V> join() {
+            synchronized (this) {
+                if (dead) {
+                    return null;
+                }
+                callers++;
+            }
+            return newCaller();
+        }
+
+        /**
+         * Create the future of a counted caller.
+         *
+         * @return future completed with the caller's copy of the result, cancelling it detaches the caller
+         */
+        private CompletableFuture<V> newCaller() {
+            CompletableFuture<V> caller = new CompletableFuture<>();
+            shared.whenComplete((result, failure) -> {
+                if (failure != null) {
+                    caller.completeExceptionally(failure);
+                    return;
+                }
+                try {
+                    caller.complete(result != null ? copier.apply(result) : null);
+                } catch (RuntimeException e) {
+                    caller.completeExceptionally(e);
+                }
+            });
+            caller.whenComplete((result, failure) -> {
+                if (caller.isCancelled()) {
+                    detach();
+                }
+            });
+            return caller;
+        }
+
+        private void detach() {
+            synchronized (this) {
+                if (--callers > 0) {
+                    return;
+                }
+                // removed before it is cancelled, so no caller joins a flight which is going to be cancelled
+                dead = true;
+                flights.remove(key, this);
+            }
+            if (shared.cancel(true)) {
+                CompletableFuture<V> call = started;
+                if (call != null) {
+                    call.cancel(true);
+                }
+            }
+        }
+    }
+}
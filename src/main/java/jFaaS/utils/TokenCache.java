@@ -0,0 +1,203 @@
+package jFaaS.utils;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache of expiring authentication tokens, keyed e.g. by the target audience of the token.
+ *
+ * Tokens are reused until they expire. Within the refresh window before expiry the cached token is still returned and
+ * a new token is fetched in the background. Concurrent fetches for the same key are coalesced, so a burst of calls
+ * with an empty or expired cache results in a single fetch.
+ */
+public class TokenCache {
+
+    private final static Logger LOGGER = Logger.getLogger(TokenCache.class.getName());
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final TokenLoader loader;
+    private final long refreshBeforeExpiryMillis;
+    private final Executor refreshExecutor;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Fetches a new token.
+     */
+    @FunctionalInterface
+    public interface TokenLoader {
+
+        /**
+         * Fetch a new token.
+         *
+         * @param key of the token
+         *
+         * @return the token
+         *
+         * @throws IOException on failure
+         */
+        Token load(String key) throws IOException;
+    }
+
+    /**
+     * Token value with its expiration time.
+     */
+    public static class Token {
+        private final String value;
+        private final long expirationTimeMillis;
+
+        /**
+         * Create a token.
+         *
+         * @param value                of the token
+         * @param expirationTimeMillis epoch time in milliseconds at which the token expires
+         */
+        public Token(String value, long expirationTimeMillis) {
+            this.value = value;
+            this.expirationTimeMillis = expirationTimeMillis;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public long getExpirationTimeMillis() {
+            return expirationTimeMillis;
+        }
+    }
+
+    /**
+     * Create a token cache.
+     *
+     * @param loader                    fetching new tokens
+     * @param refreshBeforeExpiryMillis time before expiry in which tokens are refreshed in the background
+     * @param refreshExecutor           executing background refreshes
+     */
+    public TokenCache(TokenLoader loader, long refreshBeforeExpiryMillis, Executor refreshExecutor) {
+        this.loader = loader;
+        this.refreshBeforeExpiryMillis = refreshBeforeExpiryMillis;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    /**
+     * Returns a valid token for the key, fetching it if no valid token is cached.
+     *
+     * @param key of the token
+     *
+     * @return the token value
+     *
+     * @throws IOException if the token cannot be fetched
+     */
+    public String getToken(String key) throws IOException {
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+        Token token = entry.token;
+        long now = System.currentTimeMillis();
+        if (token != null && now < token.expirationTimeMillis) {
+            hits.increment();
+            if (now >= token.expirationTimeMillis - refreshBeforeExpiryMillis) {
+                refreshInBackground(key, entry);
+            }
+            return token.value;
+        }
+
+        misses.increment();
+        CompletableFuture<Token> refresh;
+        boolean owner = false;
+        synchronized (entry) {
+            refresh = entry.refresh;
+            if (refresh == null) {
+                refresh = new CompletableFuture<>();
+                entry.refresh = refresh;
+                owner = true;
+            }
+        }
+        if (owner) {
+            load(key, entry, refresh);
+        }
+        try {
+            return refresh.get().value;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for token", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Could not fetch token", e.getCause());
+        }
+    }
+
+    /**
+     * Remove the cached token of the key, e.g. after it has been rejected.
+     *
+     * @param key of the token
+     */
+    public void invalidate(String key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Returns the number of calls answered with a cached token.
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of calls which had to wait for a token to be fetched.
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private void refreshInBackground(String key, Entry entry) {
+        CompletableFuture<Token> refresh;
+        synchronized (entry) {
+            if (entry.refresh != null) {
+                return;
+            }
+            refresh = new CompletableFuture<>();
+            entry.refresh = refresh;
+        }
+        try {
+            refreshExecutor.execute(() -> load(key, entry, refresh));
+        } catch (RejectedExecutionException e) {
+            synchronized (entry) {
+                entry.refresh = null;
+            }
+            refresh.completeExceptionally(e);
+        }
+    }
+
+    private void load(String key, Entry entry, CompletableFuture<Token> refresh) {
+        try {
+            Token token = loader.load(key);
+            entry.token = token;
+            refresh.complete(token);
+        } catch (Throwable t) {
+            LOGGER.log(Level.WARNING, "Could not fetch token for " + key, t);
+            refresh.completeExceptionally(t);
+        } finally {
+            synchronized (entry) {
+                entry.refresh = null;
+            }
+        }
+    }
+
+    private static class Entry {
+        private volatile Token token;
+        private CompletableFuture<Token> refresh;
+    }
+}
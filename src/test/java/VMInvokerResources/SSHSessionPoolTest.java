@@ -0,0 +1,134 @@
+package VMInvokerResources;
+
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class SSHSessionPoolTest {
+
+    private final AtomicInteger connects = new AtomicInteger();
+    private volatile RuntimeException connectFailure;
+    private SSHSessionPool pool;
+
+    @After
+    public void close() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    /**
+     * Pool handing out sessions which report to be connected without a server.
+     */
+    private SSHSessionPool newPool(int maxSessionsPerHost, int maxChannelsPerSession) {
+        return new SSHSessionPool(maxSessionsPerHost, maxChannelsPerSession, 60000, 50) {
+            @Override
+            Session connect(String publicIP, int port, String username, String keyFilePath) {
+                connects.incrementAndGet();
+                if (connectFailure != null) {
+                    throw connectFailure;
+                }
+                try {
+                    Session session = new JSch().getSession(username, publicIP, port);
+                    Field connected = Session.class.getDeclaredField("isConnected");
+                    connected.setAccessible(true);
+                    connected.setBoolean(session, true);
+                    return session;
+                } catch (JSchException | ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    @Test
+    public void sharesSessionUpToChannelLimit() throws IOException {
+        pool = newPool(1, 2);
+        Session first = pool.acquire("10.0.0.1", 22, "ubuntu", "key");
+        Session second = pool.acquire("10.0.0.1", 22, "ubuntu", "key");
+        assertSame(first, second);
+
+        try {
+            pool.acquire("10.0.0.1", 22, "ubuntu", "key");
+            fail();
+        } catch (IOException e) {
+            // the only session has no channel left
+        }
+
+        pool.release(first);
+        assertSame(first, pool.acquire("10.0.0.1", 22, "ubuntu", "key"));
+        assertEquals(1, connects.get());
+    }
+
+    @Test
+    public void invalidatedSessionIsDisconnectedAfterLastRelease() throws IOException {
+        pool = newPool(1, 2);
+        Session first = pool.acquire("10.0.0.1", 22, "ubuntu", "key");
+        Session second = pool.acquire("10.0.0.1", 22, "ubuntu", "key");
+
+        pool.invalidate(first);
+        assertEquals(1, pool.getSessionCount());
+
+        pool.release(second);
+        assertEquals(0, pool.getSessionCount());
+        assertFalse(second.isConnected());
+
+        Session next = pool.acquire("10.0.0.1", 22, "ubuntu", "key");
+        assertNotSame(first, next);
+        assertEquals(2, connects.get());
+    }
+
+    @Test
+    public void failedConnectReleasesReservedSlot() throws IOException {
+        pool = newPool(1, 2);
+        connectFailure = new IllegalStateException("connect failed");
+        try {
+            pool.acquire("10.0.0.1", 22, "ubuntu", "key");
+            fail();
+        } catch (IllegalStateException e) {
+            assertSame(connectFailure, e);
+        }
+
+        connectFailure = null;
+        pool.acquire("10.0.0.1", 22, "ubuntu", "key");
+        assertEquals(2, connects.get());
+        assertEquals(1, pool.getSessionCount());
+    }
+
+    @Test
+    public void extraChannelsAreCappedBySessionBudget() throws IOException {
+        pool = newPool(1, 4);
+        Session session = pool.acquire("10.0.0.1", 22, "ubuntu", "key");
+        assertEquals(3, pool.tryAcquireChannels(session, 8));
+        assertEquals(0, pool.tryAcquireChannels(session, 1));
+
+        pool.releaseChannels(session, 3);
+        assertEquals(2, pool.tryAcquireChannels(session, 2));
+        pool.releaseChannels(session, 2);
+        pool.release(session);
+    }
+
+    @Test
+    public void brokenSessionGetsNoExtraChannels() throws IOException {
+        pool = newPool(1, 4);
+        Session session = pool.acquire("10.0.0.1", 22, "ubuntu", "key");
+        Session other = pool.acquire("10.0.0.1", 22, "ubuntu", "key");
+        pool.invalidate(session);
+
+        assertEquals(0, pool.tryAcquireChannels(other, 2));
+        pool.release(other);
+        assertEquals(0, pool.getSessionCount());
+    }
+}
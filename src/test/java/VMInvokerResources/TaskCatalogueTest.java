@@ -0,0 +1,50 @@
+package VMInvokerResources;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TaskCatalogueTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path write(String yaml) throws IOException {
+        Path path = folder.getRoot().toPath().resolve("Tasks.yaml");
+        Files.write(path, yaml.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    @Test
+    public void firstTaskOfDuplicateIdIsUsed() throws IOException {
+        TaskCatalogue catalogue = new TaskCatalogue(write("- id: 0\n  taskName: first.sh\n"
+                + "- id: 0\n  taskName: second.sh\n"
+                + "- id: 1\n  taskName: other.sh\n"));
+
+        assertEquals("first.sh", catalogue.getTask(0).getTaskName());
+        assertEquals("other.sh", catalogue.getTask(1).getTaskName());
+        assertEquals(2, catalogue.getTasks().size());
+    }
+
+    @Test
+    public void previousTasksAreKeptWhileFileIsMissing() throws Exception {
+        Path path = write("- id: 0\n  taskName: task.sh\n");
+        TaskCatalogue catalogue = new TaskCatalogue(path);
+        assertEquals("task.sh", catalogue.getTask(0).getTaskName());
+
+        Files.delete(path);
+        // the file is checked at most once per second
+        Thread.sleep(1100);
+
+        assertEquals("task.sh", catalogue.getTask(0).getTaskName());
+        assertNull(catalogue.getTask(1));
+    }
+}
@@ -0,0 +1,128 @@
+package VMInvokerResources;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class VMSchedulerTest {
+
+    @Test
+    public void queuesTasksAboveSlots() throws Exception {
+        VMScheduler scheduler = new VMScheduler();
+        scheduler.addHost("10.0.0.1", OperatingSystem.UBUNTU, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            CompletableFuture<String> first = scheduler.submit(null, OperatingSystem.UBUNTU, executor, (host, future) -> {
+                release.await();
+                return host.getPublicIP();
+            });
+            CompletableFuture<String> second = scheduler.submit(null, OperatingSystem.UBUNTU, executor,
+                    (host, future) -> host.getPublicIP());
+
+            assertEquals(1, scheduler.getQueuedCount());
+            assertFalse(second.isDone());
+
+            release.countDown();
+            assertEquals("10.0.0.1", first.get(5, TimeUnit.SECONDS));
+            assertEquals("10.0.0.1", second.get(5, TimeUnit.SECONDS));
+            assertEquals(0, scheduler.getQueuedCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cancelledTaskLeavesQueue() {
+        VMScheduler scheduler = new VMScheduler();
+        scheduler.addHost("10.0.0.1", OperatingSystem.UBUNTU, 1);
+        scheduler.submit(null, OperatingSystem.UBUNTU, runnable -> { }, (host, future) -> null);
+        CompletableFuture<Object> queued = scheduler.submit(null, OperatingSystem.UBUNTU, Runnable::run,
+                (host, future) -> null);
+
+        assertEquals(1, scheduler.getQueuedCount());
+        queued.cancel(true);
+        assertEquals(0, scheduler.getQueuedCount());
+    }
+
+    @Test
+    public void rejectsTaskWithoutEligibleHost() {
+        VMScheduler scheduler = new VMScheduler();
+        scheduler.addHost("10.0.0.1", OperatingSystem.UBUNTU, 1);
+        CompletableFuture<Object> task = scheduler.submit(null, OperatingSystem.CENTOS, Runnable::run,
+                (host, future) -> null);
+
+        assertFailed(task);
+    }
+
+    @Test
+    public void rejectsTargetedTaskWithOtherOperatingSystem() {
+        VMScheduler scheduler = new VMScheduler();
+        scheduler.addHost("10.0.0.1", OperatingSystem.UBUNTU, 1);
+        CompletableFuture<Object> task = scheduler.submit("10.0.0.1", OperatingSystem.CENTOS, Runnable::run,
+                (host, future) -> null);
+
+        assertFailed(task);
+        assertEquals(OperatingSystem.UBUNTU, scheduler.getHosts().get(0).getOperatingSystem());
+    }
+
+    @Test
+    public void removingLastHostFailsQueuedTasks() {
+        VMScheduler scheduler = new VMScheduler();
+        scheduler.addHost("10.0.0.1", OperatingSystem.UBUNTU, 1);
+        scheduler.addHost("10.0.0.2", OperatingSystem.CENTOS, 1);
+        scheduler.submit(null, OperatingSystem.UBUNTU, runnable -> { }, (host, future) -> null);
+        CompletableFuture<Object> wildcard = scheduler.submit(null, OperatingSystem.UBUNTU, Runnable::run,
+                (host, future) -> null);
+        CompletableFuture<Object> targeted = scheduler.submit("10.0.0.1", OperatingSystem.UBUNTU, Runnable::run,
+                (host, future) -> null);
+        assertEquals(2, scheduler.getQueuedCount());
+
+        scheduler.removeHost("10.0.0.2");
+        assertFalse(wildcard.isDone());
+
+        scheduler.removeHost("10.0.0.1");
+        assertFailed(wildcard);
+        assertFailed(targeted);
+        assertEquals(0, scheduler.getQueuedCount());
+    }
+
+    @Test
+    public void changingOperatingSystemFailsStrandedTasks() {
+        VMScheduler scheduler = new VMScheduler();
+        scheduler.addHost("10.0.0.1", OperatingSystem.UBUNTU, 1);
+        scheduler.submit(null, OperatingSystem.UBUNTU, runnable -> { }, (host, future) -> null);
+        CompletableFuture<Object> wildcard = scheduler.submit(null, OperatingSystem.UBUNTU, Runnable::run,
+                (host, future) -> null);
+
+        CompletableFuture<Object> targeted = scheduler.submit("10.0.0.1", OperatingSystem.UBUNTU, Runnable::run,
+                (host, future) -> null);
+
+        scheduler.addHost("10.0.0.1", OperatingSystem.CENTOS, 1);
+        assertFailed(wildcard);
+        assertFailed(targeted);
+    }
+
+    private static void assertFailed(CompletableFuture<?> task) {
+        assertTrue(task.isDone());
+        try {
+            task.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
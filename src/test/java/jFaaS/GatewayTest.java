@@ -0,0 +1,76 @@
+package jFaaS;
+
+import com.amazonaws.AmazonServiceException;
+import jFaaS.invokers.FaaSInvoker;
+import jFaaS.routing.FunctionAlias;
+import jFaaS.routing.RoutingStrategy;
+import jFaaS.routing.SimpleFunctionProvider;
+import jFaaS.utils.PairResult;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class GatewayTest {
+
+    private static final String LAMBDA = "arn:aws:lambda:eu-central-1:123456789012:function:hello";
+    private static final String BACKUP = "https://backup.example.com/hello";
+
+    private final AmazonServiceException throttled = newServiceException();
+
+    /**
+     * Invoker failing like the AWS Lambda client, which throws runtime exceptions instead of IOExceptions.
+     */
+    private final FaaSInvoker lambda = (function, functionInputs) -> {
+        throw throttled;
+    };
+
+    private static AmazonServiceException newServiceException() {
+        AmazonServiceException e = new AmazonServiceException("Rate exceeded");
+        e.setStatusCode(400);
+        return e;
+    }
+
+    private Gateway newGateway(FaaSInvoker backup) {
+        Gateway gateway = new Gateway();
+        gateway.registerProvider(new SimpleFunctionProvider("lambda-stub", LAMBDA::equals, () -> lambda));
+        gateway.registerProvider(new SimpleFunctionProvider("backup-stub", BACKUP::equals, () -> backup));
+        return gateway;
+    }
+
+    @Test
+    public void aliasFailsOverOnRuntimeException() throws IOException {
+        Gateway gateway = newGateway((function, functionInputs) -> new PairResult<>("{\"from\":\"backup\"}", 1L));
+        FunctionAlias alias = new FunctionAlias("hello", RoutingStrategy.FAILOVER)
+                .withDeployment(LAMBDA)
+                .withDeployment(BACKUP);
+        gateway.addAlias(alias);
+
+        PairResult<String, Long> result = gateway.invokeFunction("hello", Collections.emptyMap());
+
+        assertEquals("{\"from\":\"backup\"}", result.getResult());
+        assertEquals(Arrays.asList(BACKUP, LAMBDA), alias.candidates(function -> true));
+    }
+
+    @Test
+    public void aliasRethrowsRuntimeExceptionOfLastDeployment() throws IOException {
+        Gateway gateway = newGateway((function, functionInputs) -> {
+            throw new IOException("unavailable");
+        });
+        gateway.addAlias(new FunctionAlias("hello", RoutingStrategy.FAILOVER)
+                .withDeployment(BACKUP)
+                .withDeployment(LAMBDA));
+
+        try {
+            gateway.invokeFunction("hello", Collections.emptyMap());
+            fail();
+        } catch (AmazonServiceException e) {
+            assertSame(throttled, e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package jFaaS.cache;
+
+import jFaaS.utils.InvocationTimings;
+import jFaaS.utils.InvocationTimings.Phase;
+import jFaaS.utils.PairResult;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class ResultCacheTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Map<String, Object> inputs = Collections.singletonMap("n", 1);
+    private final AtomicInteger invocations = new AtomicInteger();
+
+    @Test
+    public void returnsCachedResultAfterMiss() throws Exception {
+        ResultCache cache = new ResultCache(100, 60000);
+        PairResult<String, Long> first = cache.get("function", inputs, () -> invoke("{\"n\":1}"));
+        PairResult<String, Long> second = cache.get("function", inputs, () -> invoke("other"));
+
+        assertEquals("{\"n\":1}", first.getResult());
+        assertEquals("{\"n\":1}", second.getResult());
+        assertEquals(1, invocations.get());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void expiredResultIsInvokedAgain() throws Exception {
+        ResultCache cache = new ResultCache(100, 1);
+        cache.get("function", inputs, () -> invoke("{}"));
+        Thread.sleep(5);
+        cache.get("function", inputs, () -> invoke("{}"));
+
+        assertEquals(2, invocations.get());
+    }
+
+    @Test
+    public void unlimitedTimeToLiveDoesNotExpire() throws Exception {
+        ResultCache cache = new ResultCache(100, Long.MAX_VALUE);
+        cache.get("function", inputs, () -> invoke("{}"));
+        cache.get("function", inputs, () -> invoke("{}"));
+
+        assertEquals(1, invocations.get());
+    }
+
+    @Test
+    public void diskTierDeletesLeastRecentlyUsedFiles() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        ResultCache cache = new ResultCache(100, 60000).withDiskTier(directory, 2);
+        cache.get("first", inputs, () -> invoke("{}"));
+        cache.get("second", inputs, () -> invoke("{}"));
+        cache.get("third", inputs, () -> invoke("{}"));
+        assertEquals(2, countFiles(directory));
+
+        ResultCache restarted = new ResultCache(100, 60000).withDiskTier(directory, 2);
+        restarted.get("third", inputs, () -> invoke("{}"));
+        restarted.get("first", inputs, () -> invoke("{}"));
+        assertEquals(1, restarted.getDiskHitCount());
+        assertEquals(4, invocations.get());
+        assertEquals(2, countFiles(directory));
+    }
+
+    @Test
+    public void concurrentMissesInvokeOnceWithOwnCopies() throws Exception {
+        ResultCache cache = new ResultCache(100, 60000);
+        CompletableFuture<PairResult<String, Long>> invocation = new CompletableFuture<>();
+        List<CompletableFuture<PairResult<String, Long>>> callers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            callers.add(cache.getAsync("function", inputs, () -> {
+                invocations.incrementAndGet();
+                return invocation;
+            }));
+        }
+        InvocationTimings timings = new InvocationTimings();
+        invocation.complete(new PairResult<>("{}", 1L, timings));
+
+        assertEquals(1, invocations.get());
+        PairResult<String, Long> first = callers.get(0).get();
+        for (int i = 1; i < callers.size(); i++) {
+            PairResult<String, Long> other = callers.get(i).get();
+            assertEquals("{}", other.getResult());
+            assertNotSame(first, other);
+            assertNotSame(first.getTimings(), other.getTimings());
+        }
+        first.getTimings().add(Phase.ROUTING, 1000);
+        assertEquals(0, callers.get(1).get().getTimings().getNanos(Phase.ROUTING));
+    }
+
+    @Test
+    public void keepsFrequentlyUsedResults() throws Exception {
+        ResultCache cache = new ResultCache(100, 60000);
+        for (int round = 0; round < 12; round++) {
+            cache.get("hot", inputs, () -> invoke("{}"));
+        }
+        for (int i = 0; i < 150; i++) {
+            cache.get("cold" + i, inputs, () -> invoke("{}"));
+        }
+        int before = invocations.get();
+        cache.get("hot", inputs, () -> invoke("{}"));
+
+        assertEquals(before, invocations.get());
+        assertTrue(cache.size() <= 100);
+    }
+
+    private static long countFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private PairResult<String, Long> invoke(String result) {
+        invocations.incrementAndGet();
+        return new PairResult<>(result, 1L);
+    }
+}
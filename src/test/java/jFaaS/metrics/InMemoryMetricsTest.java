@@ -0,0 +1,129 @@
+package jFaaS.metrics;
+
+import jFaaS.invokers.FaaSInvoker;
+import jFaaS.utils.PairResult;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InMemoryMetricsTest {
+
+    private final InMemoryMetrics metrics = new InMemoryMetrics();
+
+    @Test
+    public void meteredInvokerRecordsSuccessesAndFailures() throws IOException {
+        MeteredInvoker invoker = new MeteredInvoker((function, functionInputs) -> {
+            if (function.equals("failing")) {
+                throw new IOException("failed");
+            }
+            return new PairResult<>("{}", 1L);
+        }, "aws", metrics);
+
+        invoker.invokeFunction("working", Collections.emptyMap());
+        try {
+            invoker.invokeFunction("failing", Collections.emptyMap());
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+
+        InvocationStats stats = metrics.getProviderStats("aws");
+        assertEquals(2, stats.getInvocations());
+        assertEquals(1, stats.getSuccesses());
+        assertEquals(1, stats.getErrors());
+        assertEquals(Long.valueOf(1), stats.getErrorsByType().get("IOException"));
+        assertEquals(0, stats.getInFlight());
+        assertEquals(2, stats.getLatency().getCount());
+        assertEquals(1, metrics.getFunctionStats("working").getSuccesses());
+    }
+
+    @Test
+    public void resetKeepsRunningInvocations() {
+        CompletableFuture<PairResult<String, Long>> running = new CompletableFuture<>();
+        MeteredInvoker invoker = new MeteredInvoker(new AsyncInvoker(running), "aws", metrics);
+        CompletableFuture<PairResult<String, Long>> result = invoker.invokeFunctionAsync("function",
+                Collections.emptyMap(), Runnable::run);
+        assertEquals(1, metrics.getProviderStats("aws").getInFlight());
+
+        metrics.reset();
+        assertEquals(0, metrics.getProviderStats("aws").getInvocations());
+        assertEquals(1, metrics.getProviderStats("aws").getInFlight());
+        assertEquals(1, metrics.getFunctionStats("function").getInFlight());
+
+        running.complete(new PairResult<>("{}", 1L));
+        assertTrue(result.isDone());
+        assertEquals(0, metrics.getProviderStats("aws").getInFlight());
+        assertEquals(0, metrics.getFunctionStats("function").getInFlight());
+        assertEquals(1, metrics.getProviderStats("aws").getSuccesses());
+    }
+
+    @Test
+    public void resetClearsUnresolvedFunctions() {
+        metrics.functionUnresolved("function");
+        assertEquals(Long.valueOf(1), metrics.getUnresolved().get("function"));
+        metrics.reset();
+        assertTrue(metrics.getUnresolved().isEmpty());
+    }
+
+    @Test
+    public void histogramKeepsRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), histogram.getMax());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), histogram.getPercentile(100));
+        long p50 = histogram.getPercentile(50);
+        assertTrue(p50 >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(p50 <= TimeUnit.MILLISECONDS.toNanos(50) * 1.0625);
+        assertEquals(50.5, histogram.getMean() / TimeUnit.MILLISECONDS.toNanos(1), 0.001);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void histogramsAreMerged() {
+        LatencyHistogram fast = new LatencyHistogram();
+        LatencyHistogram slow = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            fast.record(1000);
+        }
+        slow.record(1000000);
+
+        assertEquals(1000, LatencyHistogram.percentileOf(99, fast, slow), 1000 * 0.0625);
+        assertEquals(1000000, LatencyHistogram.percentileOf(100, fast, slow));
+    }
+
+    private static class AsyncInvoker implements FaaSInvoker {
+
+        private final CompletableFuture<PairResult<String, Long>> result;
+
+        AsyncInvoker(CompletableFuture<PairResult<String, Long>> result) {
+            this.result = result;
+        }
+
+        @Override
+        public PairResult<String, Long> invokeFunction(String function, Map<String, Object> functionInputs) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<PairResult<String, Long>> invokeFunctionAsync(String function,
+                Map<String, Object> functionInputs, Executor executor) {
+            return result;
+        }
+    }
+}
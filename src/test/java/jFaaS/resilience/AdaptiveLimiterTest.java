@@ -0,0 +1,93 @@
+package jFaaS.resilience;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdaptiveLimiterTest {
+
+    @Test
+    public void grantsQueuedPermitsInOrder() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 1, 1, 10, 0.5, 10, 0);
+        CompletableFuture<Void> first = limiter.acquireAsync();
+        CompletableFuture<Void> second = limiter.acquireAsync();
+        CompletableFuture<Void> third = limiter.acquireAsync();
+
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+        assertEquals(2, limiter.getQueued());
+
+        limiter.onIgnore();
+        assertTrue(second.isDone());
+        assertFalse(third.isDone());
+
+        limiter.onIgnore();
+        assertTrue(third.isDone());
+        assertEquals(1, limiter.getInFlight());
+        assertEquals(0, limiter.getQueued());
+    }
+
+    @Test
+    public void shedsWhenQueueIsFull() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 1, 1, 10, 0.5, 1, 0);
+        limiter.acquireAsync();
+        limiter.acquireAsync();
+        CompletableFuture<Void> shed = limiter.acquireAsync();
+
+        try {
+            shed.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof LimitExceededException);
+        }
+        assertEquals(1, limiter.getShedCount());
+    }
+
+    @Test
+    public void cancelledWaiterLeavesQueue() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 1, 1, 10, 0.5, 1, 0);
+        limiter.acquireAsync();
+        CompletableFuture<Void> cancelled = limiter.acquireAsync();
+        cancelled.cancel(false);
+
+        assertEquals(0, limiter.getQueued());
+        CompletableFuture<Void> next = limiter.acquireAsync();
+        assertFalse(next.isCompletedExceptionally());
+        assertEquals(0, limiter.getShedCount());
+
+        limiter.onIgnore();
+        assertTrue(next.isDone());
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    public void throttlingLowersLimitToMinimum() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 8, 2, 10, 0.5, 10, 0);
+        limiter.acquireAsync();
+        limiter.onDropped();
+        assertEquals(4, limiter.getLimit());
+
+        limiter.acquireAsync();
+        limiter.onDropped();
+        limiter.acquireAsync();
+        limiter.onDropped();
+        assertEquals(2, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void successRaisesLimitUpToMaximum() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 1, 1, 2, 0.5, 10, 0);
+        for (int i = 0; i < 5; i++) {
+            limiter.acquireAsync();
+            limiter.onSuccess(1000);
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+}
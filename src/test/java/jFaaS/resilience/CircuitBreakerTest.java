@@ -0,0 +1,98 @@
+package jFaaS.resilience;
+
+import jFaaS.resilience.CircuitBreaker.State;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CircuitBreakerTest {
+
+    private final List<State> transitions = new ArrayList<>();
+
+    private CircuitBreaker newBreaker() {
+        CircuitBreakerConfig config = new CircuitBreakerConfig().withWindow(4, 4).withOpenDuration(50)
+                .withHalfOpenCalls(1);
+        return new CircuitBreaker("endpoint", config, (endpoint, from, to) -> transitions.add(to));
+    }
+
+    @Test
+    public void opensAtFailureRate() {
+        CircuitBreaker breaker = newBreaker();
+        breaker.onSuccess(0);
+        breaker.onSuccess(0);
+        breaker.onError(0, new IOException("failed"));
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(-1, breaker.getFailureRate(), 0);
+
+        breaker.onError(0, new IOException("failed"));
+        assertEquals(State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+        try {
+            breaker.acquirePermission();
+            fail();
+        } catch (CircuitOpenException e) {
+            assertTrue(breaker.getRemainingOpenMillis() > 0);
+        }
+    }
+
+    @Test
+    public void closesAfterSuccessfulProbe() throws InterruptedException {
+        CircuitBreaker breaker = open(newBreaker());
+        Thread.sleep(60);
+
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+
+        breaker.onSuccess(0);
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getBufferedCalls());
+        assertEquals(3, transitions.size());
+        assertEquals(State.CLOSED, transitions.get(2));
+    }
+
+    @Test
+    public void reopensAfterFailedProbe() throws InterruptedException {
+        CircuitBreaker breaker = open(newBreaker());
+        Thread.sleep(60);
+
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onError(0, new IOException("failed"));
+        assertEquals(State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void releasedProbeFreesItsPlace() throws InterruptedException {
+        CircuitBreaker breaker = open(newBreaker());
+        Thread.sleep(60);
+
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.release();
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void sheddingIsNotRecorded() {
+        CircuitBreaker breaker = newBreaker();
+        for (int i = 0; i < 4; i++) {
+            breaker.onError(0, new LimitExceededException("shed"));
+        }
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getBufferedCalls());
+    }
+
+    private static CircuitBreaker open(CircuitBreaker breaker) {
+        for (int i = 0; i < 4; i++) {
+            breaker.onError(0, new IOException("failed"));
+        }
+        assertEquals(State.OPEN, breaker.getState());
+        return breaker;
+    }
+}
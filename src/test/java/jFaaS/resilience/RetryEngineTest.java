@@ -0,0 +1,93 @@
+package jFaaS.resilience;
+
+import com.amazonaws.SdkClientException;
+import jFaaS.invokers.FaaSInvoker;
+import jFaaS.invokers.HttpStatusException;
+import jFaaS.metrics.InMemoryMetrics;
+import jFaaS.utils.PairResult;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RetryEngineTest {
+
+    private final InMemoryMetrics metrics = new InMemoryMetrics();
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    private RetryEngine newEngine() {
+        RetryEngine engine = new RetryEngine(new RetryPolicy().withBackoff(1, 1, 1));
+        engine.setMetrics(metrics);
+        return engine;
+    }
+
+    @Test
+    public void retriesServerErrorsUntilSuccess() throws IOException {
+        FaaSInvoker invoker = (function, functionInputs) -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new HttpStatusException(function, 503, "unavailable");
+            }
+            return new PairResult<>("{}", 1L);
+        };
+
+        PairResult<String, Long> result = newEngine().invokeFunction("aws", invoker, "function",
+                Collections.emptyMap(), Runnable::run);
+        assertEquals("{}", result.getResult());
+        assertEquals(3, attempts.get());
+        assertEquals(2, metrics.getProviderStats("aws").getRetries());
+        assertEquals(2, metrics.getFunctionStats("function").getRetries());
+    }
+
+    @Test
+    public void doesNotRetryClientErrors() {
+        FaaSInvoker invoker = (function, functionInputs) -> {
+            attempts.incrementAndGet();
+            throw new HttpStatusException(function, 400, "bad request");
+        };
+
+        try {
+            newEngine().invokeFunction("aws", invoker, "function", Collections.emptyMap(), Runnable::run);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e instanceof HttpStatusException);
+        }
+        assertEquals(1, attempts.get());
+        assertNull(metrics.getProviderStats("aws"));
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        FaaSInvoker invoker = (function, functionInputs) -> {
+            attempts.incrementAndGet();
+            throw new HttpStatusException(function, 429, "throttled");
+        };
+
+        try {
+            newEngine().invokeFunction("aws", invoker, "function", Collections.emptyMap(), Runnable::run);
+            fail();
+        } catch (IOException e) {
+            assertEquals(429, ((HttpStatusException) e).getStatusCode());
+        }
+        assertEquals(3, attempts.get());
+        assertEquals(2, metrics.getProviderStats("aws").getRetries());
+    }
+
+    @Test
+    public void retriesOnlyConnectionFailuresOfAwsClient() {
+        assertTrue(RetryPolicy.isRetriableByDefault(new SdkClientException("failed",
+                new ConnectException("refused"))));
+        assertTrue(RetryPolicy.isRetriableByDefault(new SdkClientException("failed",
+                new IOException("wrapped", new SocketTimeoutException("timed out")))));
+        assertFalse(RetryPolicy.isRetriableByDefault(new SdkClientException("Unable to load credentials")));
+        assertTrue(RetryPolicy.isRetriableByDefault(new ConnectException("refused")));
+    }
+}
@@ -0,0 +1,89 @@
+package jFaaS.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedCacheTest {
+
+    private final List<String> removed = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void evictsLeastRecentlyAccessedEntry() throws InterruptedException {
+        BoundedCache<String, String> cache = new BoundedCache<>(2, 0, removed::add);
+        cache.get("a", key -> "A");
+        Thread.sleep(2);
+        cache.get("b", key -> "B");
+        Thread.sleep(2);
+        cache.get("a", key -> "other");
+        cache.get("c", key -> "C");
+
+        assertEquals(Collections.singletonList("B"), removed);
+        assertEquals("A", cache.getIfPresent("a"));
+        assertNull(cache.getIfPresent("b"));
+    }
+
+    @Test
+    public void expiresIdleEntries() throws InterruptedException {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 1, removed::add);
+        cache.get("a", key -> "A");
+        Thread.sleep(5);
+        cache.cleanUp();
+
+        assertEquals(0, cache.size());
+        assertEquals(Collections.singletonList("A"), removed);
+    }
+
+    @Test
+    public void keepsLeasedEntriesUntilReleased() throws InterruptedException {
+        BoundedCache<String, String> cache = new BoundedCache<>(1, 1, removed::add);
+        BoundedCache.Lease<String> lease = cache.acquire("a", key -> "A");
+        Thread.sleep(5);
+        cache.get("b", key -> "B");
+        cache.cleanUp();
+
+        assertSame("A", lease.get());
+        assertEquals("A", cache.getIfPresent("a"));
+        assertTrue(removed.isEmpty() || !removed.contains("A"));
+
+        lease.close();
+        Thread.sleep(5);
+        cache.cleanUp();
+        assertTrue(removed.contains("A"));
+    }
+
+    @Test
+    public void notifiesInvalidatedLeasedValueOnLastRelease() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 0, removed::add);
+        BoundedCache.Lease<String> first = cache.acquire("a", key -> "A");
+        BoundedCache.Lease<String> second = cache.acquire("a", key -> "other");
+        cache.invalidateAll();
+
+        first.close();
+        first.close();
+        assertTrue(removed.isEmpty());
+
+        second.close();
+        assertEquals(Collections.singletonList("A"), removed);
+    }
+
+    @Test
+    public void loadsNewValueAfterInvalidation() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 0, removed::add);
+        try (BoundedCache.Lease<String> lease = cache.acquire("a", key -> "A")) {
+            cache.invalidate("a");
+            try (BoundedCache.Lease<String> next = cache.acquire("a", key -> "A2")) {
+                assertEquals("A2", next.get());
+            }
+            assertEquals("A", lease.get());
+        }
+        assertEquals(Collections.singletonList("A"), removed);
+    }
+}
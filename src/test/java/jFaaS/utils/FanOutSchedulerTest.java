@@ -0,0 +1,76 @@
+package jFaaS.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+
+public class FanOutSchedulerTest {
+
+    @Test
+    public void queuesTasksAboveTotalLimit() {
+        FanOutScheduler scheduler = new FanOutScheduler(2);
+        List<CompletableFuture<String>> tasks = submit(scheduler, "aws", 3);
+
+        assertEquals(2, scheduler.getRunning());
+        assertEquals(1, scheduler.getQueued());
+        assertEquals(2, countStarted(tasks));
+
+        tasks.get(0).complete("done");
+        assertEquals(2, scheduler.getRunning());
+        assertEquals(0, scheduler.getQueued());
+
+        tasks.get(1).complete("done");
+        tasks.get(2).completeExceptionally(new RuntimeException("failed"));
+        assertEquals(0, scheduler.getRunning());
+    }
+
+    @Test
+    public void providerLimitDoesNotBlockOtherProviders() {
+        FanOutScheduler scheduler = new FanOutScheduler(10);
+        scheduler.setLimit("aws", 1);
+        List<CompletableFuture<String>> aws = submit(scheduler, "aws", 2);
+        List<CompletableFuture<String>> google = submit(scheduler, "google", 2);
+
+        assertEquals(3, scheduler.getRunning());
+        assertEquals(1, scheduler.getQueued());
+        assertEquals(1, countStarted(aws));
+        assertEquals(2, countStarted(google));
+
+        scheduler.setLimit("aws", 2);
+        assertEquals(2, countStarted(aws));
+        assertEquals(0, scheduler.getQueued());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveLimit() {
+        new FanOutScheduler(0);
+    }
+
+    private static List<CompletableFuture<String>> submit(FanOutScheduler scheduler, String provider, int count) {
+        List<CompletableFuture<String>> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tasks.add(null);
+            int index = i;
+            scheduler.submit(provider, () -> {
+                CompletableFuture<String> task = new CompletableFuture<>();
+                tasks.set(index, task);
+                return task;
+            });
+        }
+        return tasks;
+    }
+
+    private static int countStarted(List<CompletableFuture<String>> tasks) {
+        int started = 0;
+        for (CompletableFuture<String> task : tasks) {
+            if (task != null) {
+                started++;
+            }
+        }
+        return started;
+    }
+}
@@ -0,0 +1,40 @@
+package jFaaS.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class InvocationFutureTest {
+
+    @Test
+    public void abortActionRunsWhenRegisteredAfterCancel() {
+        InvocationFuture<String> future = new InvocationFuture<>();
+        AtomicInteger aborts = new AtomicInteger();
+        future.cancel(true);
+        future.onAbort(aborts::incrementAndGet);
+
+        assertEquals(1, aborts.get());
+    }
+
+    @Test
+    public void abortActionRunsOnceWhenRacingWithCancel() throws InterruptedException {
+        for (int i = 0; i < 1000; i++) {
+            InvocationFuture<String> future = new InvocationFuture<>();
+            AtomicInteger aborts = new AtomicInteger();
+            CountDownLatch ready = new CountDownLatch(1);
+            Thread registering = new Thread(() -> {
+                ready.countDown();
+                future.onAbort(aborts::incrementAndGet);
+            });
+            registering.start();
+            ready.await();
+            future.cancel(true);
+            registering.join();
+
+            assertEquals(1, aborts.get());
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package jFaaS.utils;
+
+import jFaaS.utils.InvocationTimings.Phase;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+    @Test
+    public void concurrentCallersShareOneCallWithOwnCopies() throws Exception {
+        SingleFlight<String, PairResult<String, Long>> singleFlight = new SingleFlight<>(PairResult::copy);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<PairResult<String, Long>>> results = new ArrayList<>();
+            results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                release.join();
+                return new PairResult<>("{}", 1L, new InvocationTimings());
+            })));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                    calls.incrementAndGet();
+                    return null;
+                })));
+            }
+            while (singleFlight.getSharedCount() < 3) {
+                Thread.sleep(1);
+            }
+            release.complete(null);
+
+            List<PairResult<String, Long>> received = new ArrayList<>();
+            for (Future<PairResult<String, Long>> result : results) {
+                received.add(result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, calls.get());
+            for (int i = 1; i < received.size(); i++) {
+                assertNotSame(received.get(0), received.get(i));
+                assertNotSame(received.get(0).getTimings(), received.get(i).getTimings());
+            }
+            received.get(0).getTimings().add(Phase.ROUTING, 1000);
+            assertEquals(0, received.get(1).getTimings().getNanos(Phase.ROUTING));
+            assertEquals(0, singleFlight.getInFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failureIsPassedToAllCallers() throws InterruptedException {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.executeAsync("key", () -> call);
+        CompletableFuture<String> second = singleFlight.executeAsync("key", () -> {
+            throw new AssertionError("joined call started again");
+        });
+        call.completeExceptionally(new IOException("failed"));
+
+        for (CompletableFuture<String> caller : Arrays.asList(first, second)) {
+            try {
+                caller.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+        assertEquals(0, singleFlight.getInFlight());
+    }
+
+    @Test
+    public void sharedCallIsCancelledOnlyWhenAllCallersCancelled() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.executeAsync("key", () -> call);
+        CompletableFuture<String> second = singleFlight.executeAsync("key", CompletableFuture::new);
+
+        first.cancel(true);
+        assertFalse(call.isCancelled());
+
+        second.cancel(true);
+        assertTrue(call.isCancelled());
+    }
+
+    @Test
+    public void callerAfterCancellationStartsNewCall() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CompletableFuture<String> cancelledCall = new CompletableFuture<>();
+        CompletableFuture<String> newCall = new CompletableFuture<>();
+        singleFlight.executeAsync("key", () -> cancelledCall).cancel(true);
+        CompletableFuture<String> caller = singleFlight.executeAsync("key", () -> newCall);
+
+        assertTrue(cancelledCall.isCancelled());
+        assertFalse(caller.isDone());
+        newCall.complete("{}");
+        assertEquals("{}", caller.get());
+    }
+
+    @Test
+    public void waitingCallerFailsWithIOExceptionWhenCallIsCancelled() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CompletableFuture<String> call = new CompletableFuture<>();
+        singleFlight.executeAsync("key", () -> call);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> waiting = executor.submit(() -> singleFlight.execute("key", () -> {
+                throw new AssertionError("joined call started again");
+            }));
+            while (singleFlight.getSharedCount() < 1) {
+                Thread.sleep(1);
+            }
+            call.cancel(true);
+
+            try {
+                waiting.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void joinedCallersShareResultByDefault() throws Exception {
+        SingleFlight<String, Object> singleFlight = new SingleFlight<>();
+        Object result = new Object();
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> first = singleFlight.executeAsync("key", () -> call);
+        CompletableFuture<Object> second = singleFlight.executeAsync("key", CompletableFuture::new);
+        call.complete(result);
+
+        assertSame(result, first.get());
+        assertSame(result, second.get());
+    }
+}